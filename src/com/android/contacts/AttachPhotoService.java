@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts;
+
+import com.android.contacts.model.ExchangeSource;
+import com.android.contacts.model.GoogleSource;
+import com.android.contacts.util.PhotoEncoder;
+import com.google.android.collect.Maps;
+import com.google.android.collect.Sets;
+
+import android.app.IntentService;
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.content.Intent;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.RemoteException;
+import android.provider.ContactsContract;
+import android.provider.ContactsContract.Data;
+import android.provider.ContactsContract.RawContacts;
+import android.provider.ContactsContract.CommonDataKinds.Photo;
+import android.util.Log;
+import android.widget.Toast;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Encodes a photo and attaches it to a set of raw contacts (usually all raw contacts of
+ * an aggregate) in a single batch, away from the UI thread.
+ * <p>
+ * Google and Exchange accounts only allow one photo per raw contact, so an existing photo
+ * is updated there. All other accounts get a new photo row.
+ */
+public class AttachPhotoService extends IntentService {
+    private static final String TAG = "AttachPhotoService";
+
+    /** The {@link Bitmap} to attach. */
+    public static final String EXTRA_PHOTO = "photo";
+    /** long[] of the {@link RawContacts} to attach the photo to. */
+    public static final String EXTRA_RAW_CONTACT_IDS = "rawContactIds";
+
+    /**
+     * Number of times to rebuild the batch if a concurrent change made an assertion fail.
+     */
+    private static final int MAX_ATTEMPTS = 2;
+
+    private interface RawContactsQuery {
+        final String[] PROJECTION = new String[] {
+                RawContacts._ID,
+                RawContacts.ACCOUNT_TYPE,
+        };
+
+        final int _ID = 0;
+        final int ACCOUNT_TYPE = 1;
+    }
+
+    private interface PhotoQuery {
+        final String[] PROJECTION = new String[] {
+                Data._ID,
+                Data.RAW_CONTACT_ID,
+        };
+
+        final int _ID = 0;
+        final int RAW_CONTACT_ID = 1;
+    }
+
+    private final Handler mHandler = new Handler();
+
+    public AttachPhotoService() {
+        super(TAG);
+    }
+
+    /**
+     * Starts the service to attach the given photo to the given raw contacts.
+     */
+    public static void attachPhoto(Context context, Bitmap photo, long[] rawContactIds) {
+        final Intent intent = new Intent(context, AttachPhotoService.class);
+        intent.putExtra(EXTRA_PHOTO, photo);
+        intent.putExtra(EXTRA_RAW_CONTACT_IDS, rawContactIds);
+        context.startService(intent);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        final Bitmap photo = intent.getParcelableExtra(EXTRA_PHOTO);
+        final long[] rawContactIds = intent.getLongArrayExtra(EXTRA_RAW_CONTACT_IDS);
+        if (photo == null || rawContactIds == null || rawContactIds.length == 0) {
+            Log.w(TAG, "Nothing to attach");
+            return;
+        }
+
+        // Encode once, no matter how many raw contacts get the photo
+        final byte[] photoBytes = PhotoEncoder.encode(photo, PhotoEncoder.DEFAULT_MAX_BYTES);
+
+        final ContentResolver resolver = getContentResolver();
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                resolver.applyBatch(ContactsContract.AUTHORITY,
+                        buildOperations(resolver, rawContactIds, photoBytes));
+                return;
+            } catch (RemoteException e) {
+                Log.e(TAG, "Problem attaching photo", e);
+                break;
+            } catch (OperationApplicationException e) {
+                // Photos were added or removed while we were building the batch
+                Log.w(TAG, "Photos changed while attaching, attempt " + attempt, e);
+            }
+        }
+
+        // The user has left the picker already, let them know the photo is gone
+        mHandler.post(new Runnable() {
+            public void run() {
+                Toast.makeText(AttachPhotoService.this, R.string.attachPhotoErrorToast,
+                        Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    /**
+     * Builds one batch that attaches the photo to all given raw contacts, asserting that
+     * the photo rows we based our decisions on haven't changed in the meantime.
+     */
+    private ArrayList<ContentProviderOperation> buildOperations(ContentResolver resolver,
+            long[] rawContactIds, byte[] photoBytes) {
+        final String idList = joinIds(rawContactIds);
+
+        // Find out which raw contacts allow only a single photo
+        final HashSet<Long> singlePhotoRawContacts = Sets.newHashSet();
+        Cursor cursor = resolver.query(RawContacts.CONTENT_URI, RawContactsQuery.PROJECTION,
+                RawContacts._ID + " IN (" + idList + ")", null, null);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    final String accountType = cursor.getString(RawContactsQuery.ACCOUNT_TYPE);
+                    if (GoogleSource.ACCOUNT_TYPE.equals(accountType)
+                            || ExchangeSource.ACCOUNT_TYPE.equals(accountType)) {
+                        singlePhotoRawContacts.add(cursor.getLong(RawContactsQuery._ID));
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        // Find the existing photos of those
+        final HashMap<Long, Long> existingPhotos = Maps.newHashMap();
+        if (!singlePhotoRawContacts.isEmpty()) {
+            cursor = resolver.query(Data.CONTENT_URI, PhotoQuery.PROJECTION,
+                    Data.MIMETYPE + "=? AND " + Data.RAW_CONTACT_ID + " IN (" + idList + ")",
+                    new String[] { Photo.CONTENT_ITEM_TYPE }, null);
+            if (cursor != null) {
+                try {
+                    while (cursor.moveToNext()) {
+                        final long rawContactId = cursor.getLong(PhotoQuery.RAW_CONTACT_ID);
+                        if (singlePhotoRawContacts.contains(rawContactId)) {
+                            existingPhotos.put(rawContactId, cursor.getLong(PhotoQuery._ID));
+                        }
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+        }
+
+        final ArrayList<ContentProviderOperation> operations =
+                new ArrayList<ContentProviderOperation>();
+        for (long rawContactId : rawContactIds) {
+            final Uri rawContactDataUri = Uri.withAppendedPath(
+                    ContentUris.withAppendedId(RawContacts.CONTENT_URI, rawContactId),
+                    RawContacts.Data.CONTENT_DIRECTORY);
+            final Long existingPhotoId = existingPhotos.get(rawContactId);
+
+            if (singlePhotoRawContacts.contains(rawContactId)) {
+                // Make sure the number of photos is still what we saw above
+                operations.add(ContentProviderOperation.newAssertQuery(rawContactDataUri)
+                        .withSelection(Data.MIMETYPE + "=?",
+                                new String[] { Photo.CONTENT_ITEM_TYPE })
+                        .withExpectedCount(existingPhotoId == null ? 0 : 1)
+                        .build());
+            }
+
+            if (existingPhotoId != null) {
+                operations.add(ContentProviderOperation.newUpdate(
+                        ContentUris.withAppendedId(Data.CONTENT_URI, existingPhotoId))
+                        .withValue(Photo.PHOTO, photoBytes)
+                        .withValue(Photo.IS_SUPER_PRIMARY, 1)
+                        .build());
+            } else {
+                operations.add(ContentProviderOperation.newInsert(Data.CONTENT_URI)
+                        .withValue(Data.RAW_CONTACT_ID, rawContactId)
+                        .withValue(Data.MIMETYPE, Photo.CONTENT_ITEM_TYPE)
+                        .withValue(Photo.PHOTO, photoBytes)
+                        .withValue(Photo.IS_SUPER_PRIMARY, 1)
+                        .build());
+            }
+        }
+        return operations;
+    }
+
+    private static String joinIds(long[] ids) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < ids.length; i++) {
+            if (i != 0) sb.append(',');
+            sb.append(ids[i]);
+        }
+        return sb.toString();
+    }
+}
@@ -19,24 +19,17 @@ package com.android.contacts;
 import com.android.internal.telephony.CallerInfo;
 
 import android.app.ListActivity;
-import android.content.ContentResolver;
-import android.content.ContentUris;
 import android.content.Context;
 import android.content.Intent;
+import android.content.Loader;
 import android.content.res.Resources;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
-import android.provider.CallLog;
 import android.provider.CallLog.Calls;
 import android.provider.ContactsContract.Contacts;
-import android.provider.ContactsContract.PhoneLookup;
-import android.provider.ContactsContract.CommonDataKinds.Phone;
 import android.provider.Contacts.Intents.Insert;
-import android.telephony.PhoneNumberUtils;
 import android.telephony.TelephonyManager;
 import android.text.TextUtils;
-import android.text.format.DateUtils;
 import android.view.KeyEvent;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -54,7 +47,8 @@ import java.util.List;
  * Displays the details of a specific call log entry.
  */
 public class CallDetailActivity extends ListActivity implements
-        AdapterView.OnItemClickListener {
+        AdapterView.OnItemClickListener,
+        Loader.OnLoadCompleteListener<CallDetailLoader.Result> {
     private static final String TAG = "CallDetail";
 
     private TextView mCallType;
@@ -67,30 +61,22 @@ public class CallDetailActivity extends ListActivity implements
     /* package */ LayoutInflater mInflater;
     /* package */ Resources mResources;
 
-    static final String[] CALL_LOG_PROJECTION = new String[] {
-        CallLog.Calls.DATE,
-        CallLog.Calls.DURATION,
-        CallLog.Calls.NUMBER,
-        CallLog.Calls.TYPE,
-    };
-
-    static final int DATE_COLUMN_INDEX = 0;
-    static final int DURATION_COLUMN_INDEX = 1;
-    static final int NUMBER_COLUMN_INDEX = 2;
-    static final int CALL_TYPE_COLUMN_INDEX = 3;
-
-    static final String[] PHONES_PROJECTION = new String[] {
-        PhoneLookup._ID,
-        PhoneLookup.DISPLAY_NAME,
-        PhoneLookup.TYPE,
-        PhoneLookup.LABEL,
-        PhoneLookup.NUMBER,
-    };
-    static final int COLUMN_INDEX_ID = 0;
-    static final int COLUMN_INDEX_NAME = 1;
-    static final int COLUMN_INDEX_TYPE = 2;
-    static final int COLUMN_INDEX_LABEL = 3;
-    static final int COLUMN_INDEX_NUMBER = 4;
+    /**
+     * Optional extras with caller info the launching activity has already resolved for the
+     * number of this call. If present, the reverse lookup is skipped on the first load.
+     */
+    public static final String EXTRA_CACHED_PERSON_ID =
+            "com.android.contacts.extra.CACHED_PERSON_ID";
+    public static final String EXTRA_CACHED_NAME = "com.android.contacts.extra.CACHED_NAME";
+    public static final String EXTRA_CACHED_NUMBER_TYPE =
+            "com.android.contacts.extra.CACHED_NUMBER_TYPE";
+    public static final String EXTRA_CACHED_NUMBER_LABEL =
+            "com.android.contacts.extra.CACHED_NUMBER_LABEL";
+    public static final String EXTRA_CACHED_NUMBER = "com.android.contacts.extra.CACHED_NUMBER";
+
+    private static final int LOADER_CALL_DETAIL = 1;
+
+    private CallDetailLoader mLoader;
 
     @Override
     protected void onCreate(Bundle icicle) {
@@ -107,12 +93,41 @@ public class CallDetailActivity extends ListActivity implements
         mCallDuration = (TextView) findViewById(R.id.duration);
 
         getListView().setOnItemClickListener(this);
+
+        mLoader = new CallDetailLoader(this, getIntent().getData());
+        mLoader.setCachedCallerInfo(getCachedCallerInfo(getIntent()));
+        mLoader.registerListener(LOADER_CALL_DETAIL, this);
     }
 
     @Override
     public void onResume() {
         super.onResume();
-        updateData(getIntent().getData());
+        // Reload every time we come back, the contact might have been created or edited
+        mLoader.forceLoad();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mLoader.unregisterListener(this);
+        mLoader.destroy();
+    }
+
+    private static CallDetailLoader.CachedCallerInfo getCachedCallerInfo(Intent intent) {
+        final long personId = intent.getLongExtra(EXTRA_CACHED_PERSON_ID, -1);
+        if (personId <= 0) {
+            return null;
+        }
+        return new CallDetailLoader.CachedCallerInfo(personId,
+                intent.getStringExtra(EXTRA_CACHED_NAME),
+                intent.getIntExtra(EXTRA_CACHED_NUMBER_TYPE, 0),
+                intent.getStringExtra(EXTRA_CACHED_NUMBER_LABEL),
+                intent.getStringExtra(EXTRA_CACHED_NUMBER));
+    }
+
+    public void onLoadComplete(Loader<CallDetailLoader.Result> loader,
+            CallDetailLoader.Result data) {
+        bindData(data);
     }
 
     @Override
@@ -135,136 +150,102 @@ public class CallDetailActivity extends ListActivity implements
     }
 
     /**
-     * Update user interface with details of given call.
-     *
-     * @param callUri Uri into {@link CallLog.Calls}
+     * Update user interface with details of a call that was loaded by
+     * {@link CallDetailLoader}.
      */
-    private void updateData(Uri callUri) {
-        ContentResolver resolver = getContentResolver();
-        Cursor callCursor = resolver.query(callUri, CALL_LOG_PROJECTION, null, null, null);
-        try {
-            if (callCursor != null && callCursor.moveToFirst()) {
-                // Read call log specifics
-                mNumber = callCursor.getString(NUMBER_COLUMN_INDEX);
-                long date = callCursor.getLong(DATE_COLUMN_INDEX);
-                long duration = callCursor.getLong(DURATION_COLUMN_INDEX);
-                int callType = callCursor.getInt(CALL_TYPE_COLUMN_INDEX);
-
-                // Pull out string in format [relative], [date]
-                CharSequence dateClause = DateUtils.formatDateRange(this, date, date,
-                        DateUtils.FORMAT_SHOW_TIME | DateUtils.FORMAT_SHOW_DATE |
-                        DateUtils.FORMAT_SHOW_WEEKDAY | DateUtils.FORMAT_SHOW_YEAR);
-                mCallTime.setText(dateClause);
-
-                // Set the duration
-                if (callType == Calls.MISSED_TYPE) {
-                    mCallDuration.setVisibility(View.GONE);
-                } else {
-                    mCallDuration.setVisibility(View.VISIBLE);
-                    mCallDuration.setText(formatDuration(duration));
-                }
+    private void bindData(CallDetailLoader.Result data) {
+        if (data == CallDetailLoader.Result.NOT_FOUND) {
+            // Something went wrong reading in our primary data, so we're going to
+            // bail out and show error to users.
+            Toast.makeText(this, R.string.toast_call_detail_error,
+                    Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
 
-                // Set the call type icon and caption
-                String callText = null;
-                switch (callType) {
-                    case Calls.INCOMING_TYPE:
-                        mCallTypeIcon.setImageResource(R.drawable.ic_call_log_header_incoming_call);
-                        mCallType.setText(R.string.type_incoming);
-                        callText = getString(R.string.callBack);
-                        break;
-
-                    case Calls.OUTGOING_TYPE:
-                        mCallTypeIcon.setImageResource(R.drawable.ic_call_log_header_outgoing_call);
-                        mCallType.setText(R.string.type_outgoing);
-                        callText = getString(R.string.callAgain);
-                        break;
-
-                    case Calls.MISSED_TYPE:
-                        mCallTypeIcon.setImageResource(R.drawable.ic_call_log_header_missed_call);
-                        mCallType.setText(R.string.type_missed);
-                        callText = getString(R.string.returnCall);
-                        break;
-                }
+        mNumber = data.getNumber();
+        final int callType = data.getCallType();
 
-                if (mNumber.equals(CallerInfo.UNKNOWN_NUMBER) ||
-                        mNumber.equals(CallerInfo.PRIVATE_NUMBER)) {
-                    // List is empty, let the empty view show instead.
-                    TextView emptyText = (TextView) findViewById(R.id.emptyText);
-                    if (emptyText != null) {
-                        emptyText.setText(mNumber.equals(CallerInfo.PRIVATE_NUMBER)
-                                ? R.string.private_num : R.string.unknown);
-                    }
-                } else {
-                    // Perform a reverse-phonebook lookup to find the PERSON_ID
-                    String callLabel = null;
-                    Uri personUri = null;
-                    Uri phoneUri = Uri.withAppendedPath(PhoneLookup.CONTENT_FILTER_URI,
-                            Uri.encode(mNumber));
-                    Cursor phonesCursor = resolver.query(phoneUri, PHONES_PROJECTION, null, null, null);
-                    try {
-                        if (phonesCursor != null && phonesCursor.moveToFirst()) {
-                            long personId = phonesCursor.getLong(COLUMN_INDEX_ID);
-                            personUri = ContentUris.withAppendedId(
-                                    Contacts.CONTENT_URI, personId);
-                            callText = getString(R.string.recentCalls_callNumber,
-                                    phonesCursor.getString(COLUMN_INDEX_NAME));
-                            mNumber = PhoneNumberUtils.formatNumber(
-                                    phonesCursor.getString(COLUMN_INDEX_NUMBER));
-                            callLabel = Phone.getDisplayLabel(this,
-                                    phonesCursor.getInt(COLUMN_INDEX_TYPE),
-                                    phonesCursor.getString(COLUMN_INDEX_LABEL)).toString();
-                        } else {
-                            mNumber = PhoneNumberUtils.formatNumber(mNumber);
-                        }
-                    } finally {
-                        if (phonesCursor != null) phonesCursor.close();
-                    }
-
-                    // Build list of various available actions
-                    List<ViewEntry> actions = new ArrayList<ViewEntry>();
+        mCallTime.setText(data.getDateText());
 
-                    Intent callIntent = new Intent(Intent.ACTION_CALL_PRIVILEGED,
-                            Uri.fromParts("tel", mNumber, null));
-                    ViewEntry entry = new ViewEntry(android.R.drawable.sym_action_call, callText,
-                            callIntent);
-                    entry.number = mNumber;
-                    entry.label = callLabel;
-                    actions.add(entry);
-
-                    Intent smsIntent = new Intent(Intent.ACTION_SENDTO,
-                            Uri.fromParts("sms", mNumber, null));
-                    actions.add(new ViewEntry(R.drawable.sym_action_sms,
-                            getString(R.string.menu_sendTextMessage), smsIntent));
-
-                    // Let user view contact details if they exist, otherwise add option
-                    // to create new contact from this number.
-                    if (personUri != null) {
-                        Intent viewIntent = new Intent(Intent.ACTION_VIEW, personUri);
-                        actions.add(new ViewEntry(R.drawable.sym_action_view_contact,
-                                getString(R.string.menu_viewContact), viewIntent));
-                    } else {
-                        Intent createIntent = new Intent(Intent.ACTION_INSERT_OR_EDIT);
-                        createIntent.setType(Contacts.CONTENT_ITEM_TYPE);
-                        createIntent.putExtra(Insert.PHONE, mNumber);
-                        actions.add(new ViewEntry(R.drawable.sym_action_add,
-                                getString(R.string.recentCalls_addToContact), createIntent));
-                    }
-
-                    ViewAdapter adapter = new ViewAdapter(this, actions);
-                    setListAdapter(adapter);
-                }
-            } else {
-                // Something went wrong reading in our primary data, so we're going to
-                // bail out and show error to users.
-                Toast.makeText(this, R.string.toast_call_detail_error,
-                        Toast.LENGTH_SHORT).show();
-                finish();
-            }
-        } finally {
-            if (callCursor != null) {
-                callCursor.close();
+        // Set the duration
+        if (callType == Calls.MISSED_TYPE) {
+            mCallDuration.setVisibility(View.GONE);
+        } else {
+            mCallDuration.setVisibility(View.VISIBLE);
+            mCallDuration.setText(formatDuration(data.getDuration()));
+        }
+
+        // Set the call type icon and caption
+        String callText = null;
+        switch (callType) {
+            case Calls.INCOMING_TYPE:
+                mCallTypeIcon.setImageResource(R.drawable.ic_call_log_header_incoming_call);
+                mCallType.setText(R.string.type_incoming);
+                callText = getString(R.string.callBack);
+                break;
+
+            case Calls.OUTGOING_TYPE:
+                mCallTypeIcon.setImageResource(R.drawable.ic_call_log_header_outgoing_call);
+                mCallType.setText(R.string.type_outgoing);
+                callText = getString(R.string.callAgain);
+                break;
+
+            case Calls.MISSED_TYPE:
+                mCallTypeIcon.setImageResource(R.drawable.ic_call_log_header_missed_call);
+                mCallType.setText(R.string.type_missed);
+                callText = getString(R.string.returnCall);
+                break;
+        }
+
+        if (data.isUnknownOrPrivate()) {
+            // List is empty, let the empty view show instead.
+            TextView emptyText = (TextView) findViewById(R.id.emptyText);
+            if (emptyText != null) {
+                emptyText.setText(mNumber.equals(CallerInfo.PRIVATE_NUMBER)
+                        ? R.string.private_num : R.string.unknown);
             }
+            return;
+        }
+
+        final Uri personUri = data.getPersonUri();
+        if (personUri != null) {
+            callText = getString(R.string.recentCalls_callNumber, data.getName());
+        }
+        mNumber = data.getFormattedNumber();
+
+        // Build list of various available actions
+        List<ViewEntry> actions = new ArrayList<ViewEntry>();
+
+        Intent callIntent = new Intent(Intent.ACTION_CALL_PRIVILEGED,
+                Uri.fromParts("tel", mNumber, null));
+        ViewEntry entry = new ViewEntry(android.R.drawable.sym_action_call, callText,
+                callIntent);
+        entry.number = mNumber;
+        entry.label = data.getNumberLabel();
+        actions.add(entry);
+
+        Intent smsIntent = new Intent(Intent.ACTION_SENDTO,
+                Uri.fromParts("sms", mNumber, null));
+        actions.add(new ViewEntry(R.drawable.sym_action_sms,
+                getString(R.string.menu_sendTextMessage), smsIntent));
+
+        // Let user view contact details if they exist, otherwise add option
+        // to create new contact from this number.
+        if (personUri != null) {
+            Intent viewIntent = new Intent(Intent.ACTION_VIEW, personUri);
+            actions.add(new ViewEntry(R.drawable.sym_action_view_contact,
+                    getString(R.string.menu_viewContact), viewIntent));
+        } else {
+            Intent createIntent = new Intent(Intent.ACTION_INSERT_OR_EDIT);
+            createIntent.setType(Contacts.CONTENT_ITEM_TYPE);
+            createIntent.putExtra(Insert.PHONE, mNumber);
+            actions.add(new ViewEntry(R.drawable.sym_action_add,
+                    getString(R.string.recentCalls_addToContact), createIntent));
         }
+
+        ViewAdapter adapter = new ViewAdapter(this, actions);
+        setListAdapter(adapter);
     }
 
     private String formatDuration(long elapsedSeconds) {
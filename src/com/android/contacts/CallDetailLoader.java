@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts;
+
+import com.android.internal.telephony.CallerInfo;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.content.Loader;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.provider.CallLog.Calls;
+import android.provider.ContactsContract.Contacts;
+import android.provider.ContactsContract.PhoneLookup;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.telephony.PhoneNumberUtils;
+import android.text.format.DateUtils;
+import android.util.Log;
+
+/**
+ * Loads a single call log entry together with the contact it belongs to. All queries and
+ * all formatting happen on a background thread, so that the result can be bound to the
+ * views of {@link CallDetailActivity} in a single pass.
+ */
+public class CallDetailLoader extends Loader<CallDetailLoader.Result> {
+    private static final String TAG = "CallDetailLoader";
+
+    private final Uri mCallUri;
+    private Result mResult;
+    private boolean mDestroyed;
+
+    /**
+     * The most recently started load. Only its result is delivered, so that an older load
+     * that happens to finish later can't overwrite fresher data.
+     */
+    private LoadCallTask mLoadTask;
+
+    /**
+     * Caller info handed over by the caller (usually the call log, which has already
+     * resolved the number). Only used for the first load; reloads always query the provider
+     * to pick up contacts that were created or edited in the meantime.
+     */
+    private CachedCallerInfo mCachedCallerInfo;
+
+    /**
+     * Caller info that has already been resolved elsewhere and may be used instead of a
+     * {@link PhoneLookup} query.
+     */
+    public static final class CachedCallerInfo {
+        public final long personId;
+        public final String name;
+        public final int type;
+        public final String label;
+        public final String number;
+
+        public CachedCallerInfo(long personId, String name, int type, String label,
+                String number) {
+            this.personId = personId;
+            this.name = name;
+            this.type = type;
+            this.label = label;
+            this.number = number;
+        }
+    }
+
+    /**
+     * The result of a load operation. Contains all data necessary to display the call.
+     */
+    public static final class Result {
+        /**
+         * Singleton instance that represents "Call not found"
+         */
+        public static final Result NOT_FOUND = new Result();
+
+        private final String mNumber;
+        private final String mFormattedNumber;
+        private final int mCallType;
+        private final long mDuration;
+        private final CharSequence mDateText;
+        private final Uri mPersonUri;
+        private final String mName;
+        private final String mNumberLabel;
+
+        private Result() {
+            mNumber = null;
+            mFormattedNumber = null;
+            mCallType = 0;
+            mDuration = 0;
+            mDateText = null;
+            mPersonUri = null;
+            mName = null;
+            mNumberLabel = null;
+        }
+
+        private Result(String number, String formattedNumber, int callType, long duration,
+                CharSequence dateText, Uri personUri, String name, String numberLabel) {
+            mNumber = number;
+            mFormattedNumber = formattedNumber;
+            mCallType = callType;
+            mDuration = duration;
+            mDateText = dateText;
+            mPersonUri = personUri;
+            mName = name;
+            mNumberLabel = numberLabel;
+        }
+
+        /**
+         * The number as stored in the call log.
+         */
+        public String getNumber() {
+            return mNumber;
+        }
+        /**
+         * The number of the matching contact (or the call log number if there is none),
+         * formatted for display. Null for unknown and private numbers.
+         */
+        public String getFormattedNumber() {
+            return mFormattedNumber;
+        }
+        public int getCallType() {
+            return mCallType;
+        }
+        public long getDuration() {
+            return mDuration;
+        }
+        public CharSequence getDateText() {
+            return mDateText;
+        }
+        /**
+         * Uri of the matching contact or null if the number is not in the contacts.
+         */
+        public Uri getPersonUri() {
+            return mPersonUri;
+        }
+        public String getName() {
+            return mName;
+        }
+        public String getNumberLabel() {
+            return mNumberLabel;
+        }
+        public boolean isUnknownOrPrivate() {
+            return mNumber.equals(CallerInfo.UNKNOWN_NUMBER)
+                    || mNumber.equals(CallerInfo.PRIVATE_NUMBER);
+        }
+    }
+
+    private interface CallQuery {
+        final String[] PROJECTION = new String[] {
+                Calls.DATE,
+                Calls.DURATION,
+                Calls.NUMBER,
+                Calls.TYPE,
+        };
+
+        final int DATE = 0;
+        final int DURATION = 1;
+        final int NUMBER = 2;
+        final int TYPE = 3;
+    }
+
+    private interface PhoneQuery {
+        final String[] PROJECTION = new String[] {
+                PhoneLookup._ID,
+                PhoneLookup.DISPLAY_NAME,
+                PhoneLookup.TYPE,
+                PhoneLookup.LABEL,
+                PhoneLookup.NUMBER,
+        };
+
+        final int _ID = 0;
+        final int DISPLAY_NAME = 1;
+        final int TYPE = 2;
+        final int LABEL = 3;
+        final int NUMBER = 4;
+    }
+
+    private final class LoadCallTask extends AsyncTask<CachedCallerInfo, Void, Result> {
+
+        @Override
+        protected Result doInBackground(CachedCallerInfo... args) {
+            final Context context = getContext();
+            final ContentResolver resolver = context.getContentResolver();
+            final CachedCallerInfo cached = args[0];
+
+            final Cursor callCursor = resolver.query(mCallUri, CallQuery.PROJECTION, null, null,
+                    null);
+            if (callCursor == null) {
+                Log.e(TAG, "No cursor returned for " + mCallUri);
+                return Result.NOT_FOUND;
+            }
+
+            final String number;
+            final long date;
+            final long duration;
+            final int callType;
+            try {
+                if (!callCursor.moveToFirst()) {
+                    return Result.NOT_FOUND;
+                }
+                number = callCursor.getString(CallQuery.NUMBER);
+                date = callCursor.getLong(CallQuery.DATE);
+                duration = callCursor.getLong(CallQuery.DURATION);
+                callType = callCursor.getInt(CallQuery.TYPE);
+            } finally {
+                callCursor.close();
+            }
+
+            // Pull out string in format [relative], [date]
+            final CharSequence dateText = DateUtils.formatDateRange(context, date, date,
+                    DateUtils.FORMAT_SHOW_TIME | DateUtils.FORMAT_SHOW_DATE |
+                    DateUtils.FORMAT_SHOW_WEEKDAY | DateUtils.FORMAT_SHOW_YEAR);
+
+            if (number.equals(CallerInfo.UNKNOWN_NUMBER)
+                    || number.equals(CallerInfo.PRIVATE_NUMBER)) {
+                return new Result(number, null, callType, duration, dateText, null, null, null);
+            }
+
+            if (cached != null && cached.personId > 0) {
+                // The caller has already resolved this number, no need to ask again
+                return new Result(number, PhoneNumberUtils.formatNumber(cached.number), callType,
+                        duration, dateText,
+                        ContentUris.withAppendedId(Contacts.CONTENT_URI, cached.personId),
+                        cached.name, getDisplayLabel(context, cached.type, cached.label));
+            }
+
+            // Perform a reverse-phonebook lookup to find the PERSON_ID
+            final Uri phoneUri = Uri.withAppendedPath(PhoneLookup.CONTENT_FILTER_URI,
+                    Uri.encode(number));
+            final Cursor phonesCursor = resolver.query(phoneUri, PhoneQuery.PROJECTION, null,
+                    null, null);
+            try {
+                if (phonesCursor != null && phonesCursor.moveToFirst()) {
+                    final long personId = phonesCursor.getLong(PhoneQuery._ID);
+                    return new Result(number,
+                            PhoneNumberUtils.formatNumber(
+                                    phonesCursor.getString(PhoneQuery.NUMBER)),
+                            callType, duration, dateText,
+                            ContentUris.withAppendedId(Contacts.CONTENT_URI, personId),
+                            phonesCursor.getString(PhoneQuery.DISPLAY_NAME),
+                            getDisplayLabel(context, phonesCursor.getInt(PhoneQuery.TYPE),
+                                    phonesCursor.getString(PhoneQuery.LABEL)));
+                }
+            } finally {
+                if (phonesCursor != null) phonesCursor.close();
+            }
+
+            return new Result(number, PhoneNumberUtils.formatNumber(number), callType, duration,
+                    dateText, null, null, null);
+        }
+
+        private String getDisplayLabel(Context context, int type, String label) {
+            return Phone.getDisplayLabel(context, type, label).toString();
+        }
+
+        @Override
+        protected void onPostExecute(Result result) {
+            // The creator isn't interested in any further updates
+            if (mDestroyed) {
+                return;
+            }
+
+            // A newer load has been started meanwhile, its result will follow
+            if (mLoadTask != this) {
+                return;
+            }
+            mLoadTask = null;
+
+            mResult = result;
+            deliverResult(result);
+        }
+    }
+
+    public CallDetailLoader(Context context, Uri callUri) {
+        super(context);
+        mCallUri = callUri;
+    }
+
+    /**
+     * Supplies caller info that has already been resolved for the number of this call, so
+     * that the first load can skip the reverse lookup.
+     */
+    public void setCachedCallerInfo(CachedCallerInfo info) {
+        mCachedCallerInfo = info;
+    }
+
+    @Override
+    public void startLoading() {
+        if (mResult != null) {
+            deliverResult(mResult);
+        } else {
+            forceLoad();
+        }
+    }
+
+    @Override
+    public void forceLoad() {
+        final CachedCallerInfo cached = mCachedCallerInfo;
+        mCachedCallerInfo = null;
+        if (mLoadTask != null) {
+            mLoadTask.cancel(false);
+        }
+        mLoadTask = new LoadCallTask();
+        mLoadTask.execute(cached);
+    }
+
+    @Override
+    public void stopLoading() {
+        mResult = null;
+    }
+
+    @Override
+    public void destroy() {
+        mResult = null;
+        mDestroyed = true;
+        if (mLoadTask != null) {
+            mLoadTask.cancel(false);
+            mLoadTask = null;
+        }
+    }
+}
@@ -43,7 +43,7 @@ public class ContactNameHighlightingAnimation extends TextHighlightingAnimation
             View itemView = mListView.getChildAt(i);
             if (itemView instanceof ContactListItemView) {
                 final ContactListItemView view = (ContactListItemView)itemView;
-                view.getNameTextView().invalidate();
+                view.invalidateDisplayName();
             }
         }
     }
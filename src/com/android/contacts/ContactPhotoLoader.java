@@ -16,6 +16,7 @@
 
 package com.android.contacts;
 
+import com.android.contacts.util.PerformanceMetrics;
 import com.google.android.collect.Lists;
 
 import android.content.ContentResolver;
@@ -33,6 +34,7 @@ import android.widget.ImageView;
 
 import java.lang.ref.SoftReference;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -93,6 +95,13 @@ public class ContactPhotoLoader implements Callback {
     private final ConcurrentHashMap<ImageView, Long> mPendingRequests =
             new ConcurrentHashMap<ImageView, Long>();
 
+    /**
+     * Since when each view has been showing the placeholder, while
+     * {@link PerformanceMetrics} is recording. Only used on the UI thread.
+     */
+    private final HashMap<ImageView, Long> mPlaceholderShownSince =
+            new HashMap<ImageView, Long>();
+
     /**
      * Handler for messages sent to the UI thread.
      */
@@ -138,12 +147,17 @@ public class ContactPhotoLoader implements Callback {
             // No photo is needed
             view.setImageResource(mDefaultResourceId);
             mPendingRequests.remove(view);
+            mPlaceholderShownSince.remove(view);
         } else {
             boolean loaded = loadCachedPhoto(view, photoId);
             if (loaded) {
                 mPendingRequests.remove(view);
+                recordPlaceholderHidden(view);
             } else {
                 mPendingRequests.put(view, photoId);
+                if (PerformanceMetrics.isEnabled() && !mPlaceholderShownSince.containsKey(view)) {
+                    mPlaceholderShownSince.put(view, PerformanceMetrics.begin());
+                }
                 if (!mPaused) {
                     // Send a request to start loading photos
                     requestLoading();
@@ -166,12 +180,14 @@ public class ContactPhotoLoader implements Callback {
             // Null bitmap reference means that database contains no bytes for the photo
             if (holder.bitmapRef == null) {
                 view.setImageResource(mDefaultResourceId);
+                PerformanceMetrics.recordCacheLookup(PerformanceMetrics.PHOTO_CACHE, true);
                 return true;
             }
 
             Bitmap bitmap = holder.bitmapRef.get();
             if (bitmap != null) {
                 view.setImageBitmap(bitmap);
+                PerformanceMetrics.recordCacheLookup(PerformanceMetrics.PHOTO_CACHE, true);
                 return true;
             }
 
@@ -183,6 +199,7 @@ public class ContactPhotoLoader implements Callback {
         // The bitmap has not been loaded - should display the placeholder image.
         view.setImageResource(mDefaultResourceId);
         holder.state = BitmapHolder.NEEDED;
+        PerformanceMetrics.recordCacheLookup(PerformanceMetrics.PHOTO_CACHE, false);
         return false;
     }
 
@@ -198,11 +215,13 @@ public class ContactPhotoLoader implements Callback {
         }
 
         mPendingRequests.clear();
+        mPlaceholderShownSince.clear();
         mBitmapCache.clear();
     }
 
     public void clear() {
         mPendingRequests.clear();
+        mPlaceholderShownSince.clear();
         mBitmapCache.clear();
     }
 
@@ -276,6 +295,7 @@ public class ContactPhotoLoader implements Callback {
             boolean loaded = loadCachedPhoto(view, photoId);
             if (loaded) {
                 iterator.remove();
+                recordPlaceholderHidden(view);
             }
         }
 
@@ -284,6 +304,19 @@ public class ContactPhotoLoader implements Callback {
         }
     }
 
+    /**
+     * Records how long the given view showed the placeholder before its photo, if
+     * that was timed.
+     */
+    private void recordPlaceholderHidden(ImageView view) {
+        if (!mPlaceholderShownSince.isEmpty()) {
+            final Long start = mPlaceholderShownSince.remove(view);
+            if (start != null) {
+                PerformanceMetrics.end(PerformanceMetrics.PHOTO_PLACEHOLDER, start);
+            }
+        }
+    }
+
     /**
      * Stores the supplied bitmap in cache.
      */
@@ -296,7 +329,9 @@ public class ContactPhotoLoader implements Callback {
         holder.state = BitmapHolder.LOADED;
         if (bytes != null) {
             try {
+                final long start = PerformanceMetrics.begin();
                 Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, null);
+                PerformanceMetrics.end(PerformanceMetrics.PHOTO_DECODE, start);
                 holder.bitmapRef = new SoftReference<Bitmap>(bitmap);
             } catch (OutOfMemoryError e) {
                 // Do nothing - the photo will appear to be missing
@@ -389,11 +424,13 @@ public class ContactPhotoLoader implements Callback {
 
             Cursor cursor = null;
             try {
+                final long start = PerformanceMetrics.begin();
                 cursor = mResolver.query(Data.CONTENT_URI,
                         COLUMNS,
                         mStringBuilder.toString(),
                         mPhotoIdsAsStrings.toArray(EMPTY_STRING_ARRAY),
                         null);
+                PerformanceMetrics.end(PerformanceMetrics.PHOTO_QUERY, start);
 
                 if (cursor != null) {
                     while (cursor.moveToNext()) {
@@ -24,9 +24,17 @@ import android.provider.ContactsContract.StatusUpdates;
  * Define the contact present show policy in Contacts
  */
 public class ContactPresenceIconUtil {
+    /**
+     * Constant state of the presence icons, indexed by status. Filled lazily
+     * and shared by every view in the process, so that binding a row doesn't
+     * need to go through {@link android.content.res.Resources} again.
+     */
+    private static final Drawable.ConstantState[] sPresenceIcons =
+            new Drawable.ConstantState[StatusUpdates.AVAILABLE + 1];
+
     /**
      * Get the presence icon resource according the status.
-     * 
+     *
      * @return null means don't show the status icon.
      */
     public static Drawable getPresenceIcon (Context context, int status) {
@@ -37,8 +45,14 @@ public class ContactPresenceIconUtil {
             case StatusUpdates.AWAY:
             case StatusUpdates.DO_NOT_DISTURB:
             case StatusUpdates.INVISIBLE:
-                return context.getResources().getDrawable(
-                        StatusUpdates.getPresenceIconResourceId(status));
+                Drawable.ConstantState state = sPresenceIcons[status];
+                if (state == null) {
+                    // Racing threads would both store an equivalent state, so no need to lock
+                    state = context.getResources().getDrawable(
+                            StatusUpdates.getPresenceIconResourceId(status)).getConstantState();
+                    sPresenceIcons[status] = state;
+                }
+                return state.newDrawable(context.getResources());
             case StatusUpdates.OFFLINE:
             // The undefined status is treated as OFFLINE in getPresenceIconResourceId();
             default:
@@ -101,8 +101,8 @@ public class ContactsListActivity extends Activity implements View.OnCreateConte
     private int  mWritableSourcesCnt;
     private int  mReadOnlySourcesCnt;
 
-    private final String[] sLookupProjection = new String[] {
-            Contacts.LOOKUP_KEY
+    private final String[] sIdProjection = new String[] {
+            Contacts._ID
     };
     private class DeleteClickListener implements DialogInterface.OnClickListener {
         public void onClick(DialogInterface dialog, int which) {
@@ -676,33 +676,29 @@ public class ContactsListActivity extends Activity implements View.OnCreateConte
     }
 
     private void doShareVisibleContacts() {
-        final Cursor cursor = getContentResolver().query(Contacts.CONTENT_URI,
-                sLookupProjection, Contacts.IN_VISIBLE_GROUP + "!=0", null, null);
+        // Only check that there is anything to share
+        final Uri uri = Contacts.CONTENT_URI.buildUpon()
+                .appendQueryParameter("limit", "1")
+                .build();
+        final Cursor cursor = getContentResolver().query(uri, sIdProjection,
+                Contacts.IN_VISIBLE_GROUP + "!=0", null, null);
         try {
-            if (!cursor.moveToFirst()) {
+            if (cursor == null || !cursor.moveToFirst()) {
                 Toast.makeText(this, R.string.share_error, Toast.LENGTH_SHORT).show();
                 return;
             }
-
-            StringBuilder uriListBuilder = new StringBuilder();
-            int index = 0;
-            for (;!cursor.isAfterLast(); cursor.moveToNext()) {
-                if (index != 0)
-                    uriListBuilder.append(':');
-                uriListBuilder.append(cursor.getString(0));
-                index++;
-            }
-            Uri uri = Uri.withAppendedPath(
-                    Contacts.CONTENT_MULTI_VCARD_URI,
-                    Uri.encode(uriListBuilder.toString()));
-
-            final Intent intent = new Intent(Intent.ACTION_SEND);
-            intent.setType(Contacts.CONTENT_VCARD_TYPE);
-            intent.putExtra(Intent.EXTRA_STREAM, uri);
-            startActivity(intent);
         } finally {
-            cursor.close();
+            if (cursor != null) {
+                cursor.close();
+            }
         }
+
+        // The vCard is composed lazily while the receiver reads it, see VCardShareProvider
+        final Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType(Contacts.CONTENT_VCARD_TYPE);
+        intent.putExtra(Intent.EXTRA_STREAM, VCardShareProvider.VISIBLE_CONTACTS_URI);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        startActivity(intent);
     }
 
     private void handleImportRequest(int resId) {
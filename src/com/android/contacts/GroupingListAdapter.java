@@ -23,7 +23,6 @@ import android.database.ContentObserver;
 import android.database.Cursor;
 import android.database.DataSetObserver;
 import android.os.Handler;
-import android.util.SparseIntArray;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
@@ -79,10 +78,13 @@ public abstract class GroupingListAdapter extends BaseAdapter {
      */
     private long[] mGroupMetadata;
 
-    private SparseIntArray mPositionCache = new SparseIntArray();
-    private int mLastCachedListPosition;
-    private int mLastCachedCursorPosition;
-    private int mLastCachedGroup;
+    /**
+     * Binary indexed (Fenwick) tree, one-based, over the number of list items taken by
+     * each group together with the stand-alone items preceding it. A group takes one item
+     * when collapsed and size + 1 when expanded. Maps list positions to groups and
+     * follows expand/collapse in O(log n). Built lazily once the groups are known.
+     */
+    private int[] mGroupIndex;
 
     /**
      * A reusable temporary instance of PositionMetadata
@@ -137,15 +139,12 @@ public abstract class GroupingListAdapter extends BaseAdapter {
     protected abstract void bindChildView(View view, Context context, Cursor cursor);
 
     /**
-     * Cache should be reset whenever the cursor changes or groups are expanded or collapsed.
+     * Cache should be reset whenever the cursor changes.
      */
     private void resetCache() {
         mCount = -1;
-        mLastCachedListPosition = -1;
-        mLastCachedCursorPosition = -1;
-        mLastCachedGroup = -1;
+        mGroupIndex = null;
         mPositionMetadata.listPosition = -1;
-        mPositionCache.clear();
     }
 
     protected void onContentChanged() {
@@ -225,27 +224,54 @@ public abstract class GroupingListAdapter extends BaseAdapter {
             return mCount;
         }
 
-        int cursorPosition = 0;
+        ensureGroupIndex();
         int count = 0;
-        for (int i = 0; i < mGroupCount; i++) {
-            long metadata = mGroupMetadata[i];
+        for (int i = mGroupCount; i > 0; i -= i & -i) {
+            count += mGroupIndex[i];
+        }
+
+        int cursorPosition = mGroupCount == 0 ? 0 : getGroupEnd(mGroupCount - 1);
+        mCount = count + mCursor.getCount() - cursorPosition;
+        return mCount;
+    }
+
+    /**
+     * Returns the cursor position right after the last item of the specified group.
+     */
+    private int getGroupEnd(int group) {
+        long metadata = mGroupMetadata[group];
+        int offset = (int)(metadata & GROUP_OFFSET_MASK);
+        int size = (int)((metadata & GROUP_SIZE_MASK) >> 32);
+        return offset + size;
+    }
+
+    /**
+     * Builds the group index in a single pass: every node adds itself to its parent
+     * once it has received all of its own children.
+     */
+    private void ensureGroupIndex() {
+        if (mGroupIndex != null) {
+            return;
+        }
+
+        int[] index = new int[mGroupCount + 1];
+        int cursorPosition = 0;
+        for (int i = 1; i <= mGroupCount; i++) {
+            long metadata = mGroupMetadata[i - 1];
             int offset = (int)(metadata & GROUP_OFFSET_MASK);
             boolean expanded = (metadata & EXPANDED_GROUP_MASK) != 0;
             int size = (int)((metadata & GROUP_SIZE_MASK) >> 32);
 
-            count += (offset - cursorPosition);
+            index[i] += (offset - cursorPosition) + (expanded ? size + 1 : 1);
 
-            if (expanded) {
-                count += size + 1;
-            } else {
-                count++;
+            int parent = i + (i & -i);
+            if (parent <= mGroupCount) {
+                index[parent] += index[i];
             }
 
             cursorPosition = offset + size;
         }
-
-        mCount = count + mCursor.getCount() - cursorPosition;
-        return mCount;
+        mGroupIndex = index;
     }
 
     /**
@@ -260,113 +286,56 @@ public abstract class GroupingListAdapter extends BaseAdapter {
             return;
         }
 
+        ensureGroupIndex();
+
+        // Descend the tree to find how many groups, including the stand-alone items
+        // in front of them, end at or before the requested position.
+        int group = 0;
         int listPosition = 0;
-        int cursorPosition = 0;
-        int firstGroupToCheck = 0;
-
-        // Check cache for the supplied position.  What we are looking for is
-        // the group descriptor immediately preceding the supplied position.
-        // Once we have that, we will be able to tell whether the position
-        // is the header of the group, a member of the group or a standalone item.
-        if (mLastCachedListPosition != -1) {
-            if (position <= mLastCachedListPosition) {
-
-                // Have SparceIntArray do a binary search for us.
-                int index = mPositionCache.indexOfKey(position);
-
-                // If we get back a positive number, the position corresponds to
-                // a group header.
-                if (index < 0) {
-
-                    // We had a cache miss, but we did obtain valuable information anyway.
-                    // The negative number will allow us to compute the location of
-                    // the group header immediately preceding the supplied position.
-                    index = ~index - 1;
-
-                    if (index >= mPositionCache.size()) {
-                        index--;
-                    }
-                }
-
-                // A non-negative index gives us the position of the group header
-                // corresponding or preceding the position, so we can
-                // search for the group information at the supplied position
-                // starting with the cached group we just found
-                if (index >= 0) {
-                    listPosition = mPositionCache.keyAt(index);
-                    firstGroupToCheck = mPositionCache.valueAt(index);
-                    long descriptor = mGroupMetadata[firstGroupToCheck];
-                    cursorPosition = (int)(descriptor & GROUP_OFFSET_MASK);
-                }
-            } else {
-
-                // If we haven't examined groups beyond the supplied position,
-                // we will start where we left off previously
-                firstGroupToCheck = mLastCachedGroup;
-                listPosition = mLastCachedListPosition;
-                cursorPosition = mLastCachedCursorPosition;
+        for (int bit = Integer.highestOneBit(mGroupCount); bit != 0; bit >>= 1) {
+            int next = group + bit;
+            if (next <= mGroupCount && listPosition + mGroupIndex[next] <= position) {
+                group = next;
+                listPosition += mGroupIndex[next];
             }
         }
 
-        for (int i = firstGroupToCheck; i < mGroupCount; i++) {
-            long group = mGroupMetadata[i];
-            int offset = (int)(group & GROUP_OFFSET_MASK);
-
-            // Move pointers to the beginning of the group
-            listPosition += (offset - cursorPosition);
-            cursorPosition = offset;
-
-            if (i > mLastCachedGroup) {
-                mPositionCache.append(listPosition, i);
-                mLastCachedListPosition = listPosition;
-                mLastCachedCursorPosition = cursorPosition;
-                mLastCachedGroup = i;
-            }
-
-            // Now we have several possibilities:
-            // A) The requested position precedes the group
-            if (position < listPosition) {
-                metadata.itemType = ITEM_TYPE_STANDALONE;
-                metadata.cursorPosition = cursorPosition - (listPosition - position);
-                return;
-            }
+        // listPosition now corresponds to the cursor position right after the
+        // preceding group
+        int cursorPosition = group == 0 ? 0 : getGroupEnd(group - 1);
 
-            boolean expanded = (group & EXPANDED_GROUP_MASK) != 0;
-            int size = (int) ((group & GROUP_SIZE_MASK) >> 32);
-
-            // B) The requested position is a group header
-            if (position == listPosition) {
-                metadata.itemType = ITEM_TYPE_GROUP_HEADER;
-                metadata.groupPosition = i;
-                metadata.isExpanded = expanded;
-                metadata.childCount = size;
-                metadata.cursorPosition = offset;
-                return;
-            }
-
-            if (expanded) {
-                // C) The requested position is an element in the expanded group
-                if (position < listPosition + size + 1) {
-                    metadata.itemType = ITEM_TYPE_IN_GROUP;
-                    metadata.cursorPosition = cursorPosition + (position - listPosition) - 1;
-                    return;
-                }
+        // The required item is past the last group
+        if (group == mGroupCount) {
+            metadata.itemType = ITEM_TYPE_STANDALONE;
+            metadata.cursorPosition = cursorPosition + (position - listPosition);
+            return;
+        }
 
-                // D) The element is past the expanded group
-                listPosition += size + 1;
-            } else {
+        long descriptor = mGroupMetadata[group];
+        int offset = (int)(descriptor & GROUP_OFFSET_MASK);
+        int headerPosition = listPosition + (offset - cursorPosition);
 
-                // E) The element is past the collapsed group
-                listPosition++;
-            }
+        // A) The requested position precedes the group
+        if (position < headerPosition) {
+            metadata.itemType = ITEM_TYPE_STANDALONE;
+            metadata.cursorPosition = offset - (headerPosition - position);
+            return;
+        }
 
-            // Move cursor past the group
-            cursorPosition += size;
+        // B) The requested position is a group header
+        if (position == headerPosition) {
+            metadata.itemType = ITEM_TYPE_GROUP_HEADER;
+            metadata.groupPosition = group;
+            metadata.isExpanded = (descriptor & EXPANDED_GROUP_MASK) != 0;
+            metadata.childCount = (int) ((descriptor & GROUP_SIZE_MASK) >> 32);
+            metadata.cursorPosition = offset;
+            return;
         }
 
-        // The required item is past the last group
-        metadata.itemType = ITEM_TYPE_STANDALONE;
-        metadata.cursorPosition = cursorPosition + (position - listPosition);
+        // C) The requested position is an element in the group, which has to be expanded
+        // for the position to fall within it
+        metadata.itemType = ITEM_TYPE_IN_GROUP;
+        metadata.cursorPosition = offset + (position - headerPosition) - 1;
     }
 
     /**
@@ -397,12 +366,24 @@ public abstract class GroupingListAdapter extends BaseAdapter {
         }
 
 
+        int group = mPositionMetadata.groupPosition;
+        int delta;
         if (mPositionMetadata.isExpanded) {
-            mGroupMetadata[mPositionMetadata.groupPosition] &= ~EXPANDED_GROUP_MASK;
+            mGroupMetadata[group] &= ~EXPANDED_GROUP_MASK;
+            delta = -mPositionMetadata.childCount;
         } else {
-            mGroupMetadata[mPositionMetadata.groupPosition] |= EXPANDED_GROUP_MASK;
+            mGroupMetadata[group] |= EXPANDED_GROUP_MASK;
+            delta = mPositionMetadata.childCount;
         }
-        resetCache();
+
+        // Only the group itself changes size, so there is no need to rebuild the index
+        for (int i = group + 1; i <= mGroupCount; i += i & -i) {
+            mGroupIndex[i] += delta;
+        }
+        if (mCount != -1) {
+            mCount += delta;
+        }
+        mPositionMetadata.listPosition = -1;
         notifyDataSetChanged();
     }
 
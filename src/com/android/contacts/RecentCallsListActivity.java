@@ -16,6 +16,8 @@
 
 package com.android.contacts;
 
+import com.android.contacts.util.ListScrollSampler;
+import com.android.contacts.util.PerformanceMetrics;
 import com.android.internal.telephony.CallerInfo;
 import com.android.internal.telephony.ITelephony;
 
@@ -133,6 +135,7 @@ public class RecentCallsListActivity extends ListActivity
 
     RecentCallsAdapter mAdapter;
     private QueryHandler mQueryHandler;
+    private ListScrollSampler mScrollSampler;
     String mVoiceMailNumber;
 
     private boolean mScrollToTop;
@@ -233,6 +236,14 @@ public class RecentCallsListActivity extends ListActivity
             return true;
         }
 
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            final long start = PerformanceMetrics.begin();
+            final View view = super.getView(position, convertView, parent);
+            mScrollSampler.recordGetView(getItemViewType(position), start);
+            return view;
+        }
+
         private Handler mHandler = new Handler() {
             @Override
             public void handleMessage(Message msg) {
@@ -352,9 +363,15 @@ public class RecentCallsListActivity extends ListActivity
             ContactInfo info = mContactInfo.get(ciq.number);
             boolean needNotify = false;
             if (info != null && info != ContactInfo.EMPTY) {
+                PerformanceMetrics.recordCacheLookup(
+                        PerformanceMetrics.CALL_LOG_CONTACT_INFO_CACHE, true);
                 return true;
             } else {
+                PerformanceMetrics.recordCacheLookup(
+                        PerformanceMetrics.CALL_LOG_CONTACT_INFO_CACHE, false);
+
                 // Ok, do a fresh Contacts lookup for ciq.number.
+                final long start = PerformanceMetrics.begin();
                 boolean infoUpdated = false;
 
                 if (PhoneNumberUtils.isUriNumber(ciq.number)) {
@@ -441,6 +458,7 @@ public class RecentCallsListActivity extends ListActivity
                         phonesCursor.close();
                     }
                 }
+                PerformanceMetrics.end(PerformanceMetrics.CALL_LOG_CONTACT_INFO_QUERY, start);
 
                 if (infoUpdated) {
                     // New incoming phone number invalidates our formatted
@@ -842,7 +860,9 @@ public class RecentCallsListActivity extends ListActivity
         setDefaultKeyMode(DEFAULT_KEYS_DIALER);
 
         mAdapter = new RecentCallsAdapter();
+        mScrollSampler = new ListScrollSampler("RecentCallsList");
         getListView().setOnCreateContextMenuListener(this);
+        getListView().setOnScrollListener(mScrollSampler);
         setListAdapter(mAdapter);
 
         mVoiceMailNumber = ((TelephonyManager)getSystemService(Context.TELEPHONY_SERVICE))
@@ -878,6 +898,7 @@ public class RecentCallsListActivity extends ListActivity
     @Override
     protected void onPause() {
         super.onPause();
+        mScrollSampler.stopSampling();
 
         // Kill the requests thread
         mAdapter.stopRequestProcessing();
@@ -1262,6 +1283,21 @@ public class RecentCallsListActivity extends ListActivity
         } else {
             Intent intent = new Intent(this, CallDetailActivity.class);
             intent.setData(ContentUris.withAppendedId(CallLog.Calls.CONTENT_URI, id));
+
+            // Hand over what we already know about the caller, so that the details
+            // screen doesn't have to look up the number again
+            final Cursor cursor = (Cursor) mAdapter.getItem(position);
+            if (cursor != null) {
+                final ContactInfo info = mAdapter.getContactInfo(
+                        cursor.getString(NUMBER_COLUMN_INDEX));
+                if (info != null && info != ContactInfo.EMPTY) {
+                    intent.putExtra(CallDetailActivity.EXTRA_CACHED_PERSON_ID, info.personId);
+                    intent.putExtra(CallDetailActivity.EXTRA_CACHED_NAME, info.name);
+                    intent.putExtra(CallDetailActivity.EXTRA_CACHED_NUMBER_TYPE, info.type);
+                    intent.putExtra(CallDetailActivity.EXTRA_CACHED_NUMBER_LABEL, info.label);
+                    intent.putExtra(CallDetailActivity.EXTRA_CACHED_NUMBER, info.number);
+                }
+            }
             startActivity(intent);
         }
     }
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts;
+
+import com.android.internal.telephony.IccCard;
+import com.android.internal.telephony.TelephonyIntents;
+
+import android.content.BroadcastReceiver;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.util.Log;
+
+import java.util.ArrayList;
+
+/**
+ * Snapshot of the ADN (abbreviated dialing number) entries on the SIM, which the
+ * dialer uses to answer "N#" sequences. Reading the SIM can take seconds, so the
+ * snapshot is loaded in the background when the dialer is first used and kept until
+ * the SIM state or the ADN entries change.
+ * <p>
+ * This class is not thread safe, it is only used on the UI thread.
+ */
+/* package */ class SimAdnCache extends BroadcastReceiver {
+    private static final String TAG = "SimAdnCache";
+
+    private static final Uri ADN_URI = Uri.parse("content://icc/adn");
+
+    private static final String ADN_NAME_COLUMN_NAME = "name";
+    private static final String ADN_PHONE_NUMBER_COLUMN_NAME = "number";
+
+    /**
+     * Notified once a requested load has finished, successfully or not.
+     */
+    public interface Listener {
+        public void onAdnLoaded(SimAdnCache cache);
+    }
+
+    private static SimAdnCache sInstance;
+
+    private final ContentResolver mResolver;
+    private final ArrayList<Listener> mListeners = new ArrayList<Listener>();
+
+    /**
+     * Names and numbers by position on the SIM, or null while there is no snapshot.
+     */
+    private String[] mNames;
+    private String[] mNumbers;
+
+    private LoadTask mLoadTask;
+
+    /**
+     * Drops the snapshot when entries are added, edited or deleted on the SIM, which
+     * doesn't change the SIM state.
+     */
+    private final ContentObserver mAdnObserver = new ContentObserver(new Handler()) {
+        @Override
+        public void onChange(boolean selfChange) {
+            // Keep a snapshot that was in use up to date, the dialer may need it any time
+            invalidate(isLoaded() || mLoadTask != null || !mListeners.isEmpty());
+        }
+    };
+
+    public static SimAdnCache getInstance(Context context) {
+        if (sInstance == null) {
+            final Context applicationContext = context.getApplicationContext();
+            sInstance = new SimAdnCache(applicationContext);
+            applicationContext.registerReceiver(sInstance,
+                    new IntentFilter(TelephonyIntents.ACTION_SIM_STATE_CHANGED));
+            applicationContext.getContentResolver().registerContentObserver(ADN_URI, true,
+                    sInstance.mAdnObserver);
+        }
+        return sInstance;
+    }
+
+    private SimAdnCache(Context context) {
+        mResolver = context.getContentResolver();
+    }
+
+    public boolean isLoaded() {
+        return mNumbers != null;
+    }
+
+    public int getCount() {
+        return mNumbers == null ? 0 : mNumbers.length;
+    }
+
+    public String getName(int position) {
+        return mNames[position];
+    }
+
+    public String getNumber(int position) {
+        return mNumbers[position];
+    }
+
+    /**
+     * Starts loading the snapshot unless it is loaded or loading already. The given
+     * listener, if any, is notified when the load finishes.
+     */
+    public void load(Listener listener) {
+        if (listener != null) {
+            mListeners.add(listener);
+        }
+        if (isLoaded()) {
+            notifyListeners();
+        } else if (mLoadTask == null) {
+            mLoadTask = new LoadTask();
+            mLoadTask.execute();
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (isInitialStickyBroadcast()) {
+            // Only the current state, nothing changed since we started
+            return;
+        }
+
+        // The SIM was swapped, locked or its records were (re)loaded
+        final String state = intent.getStringExtra(IccCard.INTENT_KEY_ICC_STATE);
+        invalidate(IccCard.INTENT_VALUE_ICC_LOADED.equals(state) || !mListeners.isEmpty());
+    }
+
+    /**
+     * Drops the snapshot, and any load in progress, and optionally starts loading a new one.
+     */
+    private void invalidate(boolean reload) {
+        mNames = null;
+        mNumbers = null;
+        mLoadTask = null;
+
+        if (reload) {
+            load(null);
+        }
+    }
+
+    private void notifyListeners() {
+        final Listener[] listeners = mListeners.toArray(new Listener[mListeners.size()]);
+        mListeners.clear();
+        for (Listener listener : listeners) {
+            listener.onAdnLoaded(this);
+        }
+    }
+
+    private class LoadTask extends AsyncTask<Void, Void, String[][]> {
+        @Override
+        protected String[][] doInBackground(Void... params) {
+            final Cursor cursor;
+            try {
+                cursor = mResolver.query(ADN_URI, new String[] {
+                        ADN_NAME_COLUMN_NAME, ADN_PHONE_NUMBER_COLUMN_NAME }, null, null, null);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Unable to read the SIM", e);
+                return null;
+            }
+            if (cursor == null) {
+                return null;
+            }
+
+            try {
+                // The SIM provider may not honor the projection
+                final int nameColumn = cursor.getColumnIndexOrThrow(ADN_NAME_COLUMN_NAME);
+                final int numberColumn =
+                        cursor.getColumnIndexOrThrow(ADN_PHONE_NUMBER_COLUMN_NAME);
+                final int count = cursor.getCount();
+                final String[] names = new String[count];
+                final String[] numbers = new String[count];
+                for (int i = 0; cursor.moveToNext(); i++) {
+                    names[i] = cursor.getString(nameColumn);
+                    numbers[i] = cursor.getString(numberColumn);
+                }
+                return new String[][] { names, numbers };
+            } finally {
+                cursor.close();
+            }
+        }
+
+        @Override
+        protected void onPostExecute(String[][] result) {
+            if (mLoadTask != this) {
+                // The SIM or its entries changed while we were loading
+                return;
+            }
+            mLoadTask = null;
+
+            if (result != null) {
+                mNames = result[0];
+                mNumbers = result[1];
+            }
+            notifyListeners();
+        }
+    }
+}
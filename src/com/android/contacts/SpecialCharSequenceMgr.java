@@ -21,12 +21,9 @@ import com.android.internal.telephony.ITelephony;
 import android.app.AlertDialog;
 import android.app.KeyguardManager;
 import android.app.ProgressDialog;
-import android.content.AsyncQueryHandler;
-import android.content.ContentResolver;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.RemoteException;
 import android.os.ServiceManager;
@@ -104,8 +101,9 @@ public class SpecialCharSequenceMgr {
      * Handle ADN requests by filling in the SIM contact number into the requested
      * EditText.
      *
-     * This code works alongside the Asynchronous query handler {@link QueryHandler}
-     * and query cancel handler implemented in {@link SimContactQueryCookie}.
+     * The number is taken from the {@link SimAdnCache} snapshot. Only if that isn't
+     * loaded yet, a progress dialog is shown until it is, see
+     * {@link SimContactQueryCookie}.
      */
     static boolean handleAdnEntry(Context context, String input, EditText textField) {
         /* ADN entries are of the form "N(N)(N)#" */
@@ -133,15 +131,17 @@ public class SpecialCharSequenceMgr {
                 // around it.  Instead we fill in the the requested phone number into
                 // the dialer text field.
 
-                // create the async query handler
-                QueryHandler handler = new QueryHandler (context.getContentResolver());
+                // Answer right away if the SIM has been read already
+                final SimAdnCache adnCache = SimAdnCache.getInstance(context);
+                if (adnCache.isLoaded()) {
+                    fillAdnEntry(context, adnCache, index - 1, textField);
+                    return true;
+                }
 
                 // create the cookie object
-                SimContactQueryCookie sc = new SimContactQueryCookie(index - 1, handler,
-                        ADN_QUERY_TOKEN);
+                SimContactQueryCookie sc = new SimContactQueryCookie(index - 1, adnCache);
 
                 // setup the cookie fields
-                sc.contactNum = index - 1;
                 sc.setTextField(textField);
 
                 // create the progress dialog
@@ -157,9 +157,8 @@ public class SpecialCharSequenceMgr {
                 // display the progress dialog
                 sc.progressDialog.show();
 
-                // run the query.
-                handler.startQuery(ADN_QUERY_TOKEN, sc, Uri.parse("content://icc/adn"),
-                        new String[]{ADN_PHONE_NUMBER_COLUMN_NAME}, null, null, null);
+                // wait for the SIM to be read.
+                adnCache.load(sc);
                 return true;
             } catch (NumberFormatException ex) {
                 // Ignore
@@ -168,6 +167,30 @@ public class SpecialCharSequenceMgr {
         return false;
     }
 
+    /**
+     * Fills in the number of the given SIM contact and displays a toast with its name,
+     * if there is such a contact and the request hasn't been cancelled.
+     */
+    private static void fillAdnEntry(Context context, SimAdnCache adnCache, int position,
+            EditText text) {
+        if (text == null || position < 0 || position >= adnCache.getCount()) {
+            return;
+        }
+
+        final String number = adnCache.getNumber(position);
+        if (number == null) {
+            return;
+        }
+
+        // fill the text in.
+        text.getText().replace(0, 0, number);
+
+        // display the name as a toast
+        final String name = context.getString(R.string.menu_callNumber,
+                adnCache.getName(position));
+        Toast.makeText(context, name, Toast.LENGTH_SHORT).show();
+    }
+
     static boolean handlePinEntry(Context context, String input) {
         if ((input.startsWith("**04") || input.startsWith("**05")) && input.endsWith("#")) {
             try {
@@ -224,36 +247,27 @@ public class SpecialCharSequenceMgr {
         alert.getWindow().setType(WindowManager.LayoutParams.TYPE_PRIORITY_PHONE);
     }
 
-    /*******
-     * This code is used to handle SIM Contact queries
-     *******/
-    private static final String ADN_PHONE_NUMBER_COLUMN_NAME = "number";
-    private static final String ADN_NAME_COLUMN_NAME = "name";
-    private static final int ADN_QUERY_TOKEN = -1;
-
     /**
-     * Cookie object that contains everything we need to communicate to the
-     * handler's onQuery Complete, as well as what we need in order to cancel
-     * the query (if requested).
+     * Cookie object that contains everything we need once the {@link SimAdnCache}
+     * has been loaded, as well as what we need in order to cancel waiting for it
+     * (if requested).
      *
      * Note, access to the textField field is going to be synchronized, because
      * the user can request a cancel at any time through the UI.
      */
-    private static class SimContactQueryCookie implements DialogInterface.OnCancelListener{
+    private static class SimContactQueryCookie implements DialogInterface.OnCancelListener,
+            SimAdnCache.Listener {
         public ProgressDialog progressDialog;
         public int contactNum;
 
-        // Used to identify the query request.
-        private int mToken;
-        private QueryHandler mHandler;
+        private SimAdnCache mAdnCache;
 
         // The text field we're going to update
         private EditText textField;
 
-        public SimContactQueryCookie(int number, QueryHandler handler, int token) {
+        public SimContactQueryCookie(int number, SimAdnCache adnCache) {
             contactNum = number;
-            mHandler = handler;
-            mToken = token;
+            mAdnCache = adnCache;
         }
 
         /**
@@ -271,8 +285,8 @@ public class SpecialCharSequenceMgr {
         }
 
         /**
-         * Cancel the ADN query by stopping the operation and signaling
-         * the cookie that a cancel request is made.
+         * Cancel waiting for the ADN snapshot by signaling the cookie that a cancel
+         * request is made. The snapshot keeps loading for later requests.
          */
         public synchronized void onCancel(DialogInterface dialog) {
             // close the progress dialog
@@ -284,52 +298,19 @@ public class SpecialCharSequenceMgr {
             // updated.
             textField = null;
 
-            // Cancel the operation if possible.
-            mHandler.cancelOperation(mToken);
-        }
-    }
-
-    /**
-     * Asynchronous query handler that services requests to look up ADNs
-     *
-     * Queries originate from {@link handleAdnEntry}.
-     */
-    private static class QueryHandler extends AsyncQueryHandler {
-
-        public QueryHandler(ContentResolver cr) {
-            super(cr);
+            mAdnCache.removeListener(this);
         }
 
         /**
-         * Override basic onQueryComplete to fill in the textfield when
-         * we're handed the ADN cursor.
+         * Fill in the textfield once the SIM has been read.
          */
-        @Override
-        protected void onQueryComplete(int token, Object cookie, Cursor c) {
-            SimContactQueryCookie sc = (SimContactQueryCookie) cookie;
-
+        public void onAdnLoaded(SimAdnCache cache) {
             // close the progress dialog.
-            sc.progressDialog.dismiss();
-
-            // get the EditText to update or see if the request was cancelled.
-            EditText text = sc.getTextField();
-
-            // if the textview is valid, and the cursor is valid and postionable
-            // on the Nth number, then we update the text field and display a
-            // toast indicating the caller name.
-            if ((c != null) && (text != null) && (c.moveToPosition(sc.contactNum))) {
-                String name = c.getString(c.getColumnIndexOrThrow(ADN_NAME_COLUMN_NAME));
-                String number = c.getString(c.getColumnIndexOrThrow(ADN_PHONE_NUMBER_COLUMN_NAME));
-
-                // fill the text in.
-                text.getText().replace(0, 0, number);
-
-                // display the name as a toast
-                Context context = sc.progressDialog.getContext();
-                name = context.getString(R.string.menu_callNumber, name);
-                Toast.makeText(context, name, Toast.LENGTH_SHORT)
-                    .show();
-            }
+            progressDialog.dismiss();
+
+            // if the request wasn't cancelled and the SIM has an Nth contact, then we
+            // update the text field and display a toast indicating the caller name.
+            fillAdnEntry(progressDialog.getContext(), cache, contactNum, getTextField());
         }
     }
 }
@@ -210,6 +210,9 @@ public class TwelveKeyDialer extends Activity implements View.OnClickListener,
 
         maybeAddNumberFormatting();
 
+        // Read the SIM contacts in the background, so that "N#" can be answered right away
+        SimAdnCache.getInstance(this).load(null);
+
         // Check for the presence of the keypad
         View view = findViewById(R.id.one);
         if (view != null) {
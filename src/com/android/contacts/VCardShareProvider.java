@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.contacts;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.UriMatcher;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.pim.vcard.VCardComposer;
+import android.pim.vcard.VCardConfig;
+import android.provider.ContactsContract.Contacts;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Serves all visible contacts as one multi-contact vCard. The vCard is never built in
+ * memory: every {@link #openFile} call creates a pipe and composes the contacts one by one
+ * into it on a background thread, so the receiver of a share intent reads a stream of
+ * constant memory cost, no matter how large the address book is.
+ * <p>
+ * The provider is exported, readable with {@link android.Manifest.permission#READ_CONTACTS},
+ * because the Uri is shared through {@link android.content.Intent#EXTRA_STREAM}, which Uri
+ * grants don't cover on this platform.
+ */
+public class VCardShareProvider extends ContentProvider {
+    private static final String TAG = "VCardShareProvider";
+
+    public static final String AUTHORITY = "com.android.contacts.vcardshare";
+
+    /**
+     * Uri of a vCard containing all contacts in visible groups.
+     */
+    public static final Uri VISIBLE_CONTACTS_URI =
+            Uri.parse("content://" + AUTHORITY + "/visible");
+
+    private static final String VISIBLE_CONTACTS_SELECTION = Contacts.IN_VISIBLE_GROUP + "!=0";
+
+    private static final String DISPLAY_NAME_PREFIX = "contacts.";
+
+    private static final int VISIBLE_CONTACTS = 1;
+
+    private static final UriMatcher sUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
+    static {
+        sUriMatcher.addURI(AUTHORITY, "visible", VISIBLE_CONTACTS);
+    }
+
+    private static final String[] DEFAULT_PROJECTION = new String[] {
+            OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE,
+    };
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        switch (sUriMatcher.match(uri)) {
+            case VISIBLE_CONTACTS:
+                return Contacts.CONTENT_VCARD_TYPE;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Supports the {@link OpenableColumns}, which receivers like MMS and email need to
+     * attach the vCard. The size is only known once the vCard has been streamed, so it is
+     * always null, which tells the receiver that the size is unknown.
+     */
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+            String sortOrder) {
+        if (sUriMatcher.match(uri) != VISIBLE_CONTACTS) {
+            throw new IllegalArgumentException("Unknown uri: " + uri);
+        }
+        if (projection == null) {
+            projection = DEFAULT_PROJECTION;
+        }
+
+        final MatrixCursor cursor = new MatrixCursor(projection, 1);
+        final Object[] row = new Object[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            if (OpenableColumns.DISPLAY_NAME.equals(projection[i])) {
+                row[i] = DISPLAY_NAME_PREFIX
+                        + getContext().getString(R.string.config_export_file_extension);
+            }
+        }
+        cursor.addRow(row);
+        return cursor;
+    }
+
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+        if (sUriMatcher.match(uri) != VISIBLE_CONTACTS) {
+            throw new FileNotFoundException("Unknown uri: " + uri);
+        }
+        if (!"r".equals(mode)) {
+            throw new FileNotFoundException("Only reading is supported: " + uri);
+        }
+
+        final ParcelFileDescriptor[] pipe;
+        try {
+            pipe = ParcelFileDescriptor.createPipe();
+        } catch (IOException e) {
+            throw new FileNotFoundException("Could not create pipe: " + e.getMessage());
+        }
+
+        new ComposerThread(new ParcelFileDescriptor.AutoCloseOutputStream(pipe[1]),
+                VISIBLE_CONTACTS_SELECTION).start();
+        return pipe[0];
+    }
+
+    /**
+     * Writes the vCards of all contacts matching the selection to the given stream and
+     * closes it. If the reader goes away early, writing fails and the thread simply ends.
+     */
+    private class ComposerThread extends Thread {
+        private final OutputStream mOutputStream;
+        private final String mSelection;
+
+        public ComposerThread(OutputStream outputStream, String selection) {
+            super("VCardShareComposer");
+            mOutputStream = outputStream;
+            mSelection = selection;
+        }
+
+        @Override
+        public void run() {
+            compose(mOutputStream, mSelection);
+        }
+    }
+
+    /**
+     * Writes the vCards of all contacts matching the selection to the given stream and
+     * closes it.
+     */
+    private void compose(OutputStream outputStream, String selection) {
+        final int vcardType = VCardConfig.getVCardTypeFromString(
+                getContext().getString(R.string.config_export_vcard_type));
+        final VCardComposer composer = new VCardComposer(getContext(), vcardType, true);
+        try {
+            composer.addHandler(composer.new HandlerForOutputStream(outputStream));
+            if (!composer.init(selection, null)) {
+                Log.e(TAG, "initialization of vCard composer failed: "
+                        + composer.getErrorReason());
+                return;
+            }
+
+            while (!composer.isAfterLast()) {
+                if (!composer.createOneEntry()) {
+                    Log.e(TAG, "Failed to read a contact: " + composer.getErrorReason());
+                    return;
+                }
+            }
+        } finally {
+            composer.terminate();
+            // Closing the write end of a pipe signals EOF to the reader
+            try {
+                outputStream.close();
+            } catch (IOException e) {
+                // Already closed by the handler
+            }
+        }
+    }
+}
@@ -18,6 +18,8 @@ package com.android.contacts.list;
 import com.android.contacts.ContactPhotoLoader;
 import com.android.contacts.ContactsSectionIndexer;
 import com.android.contacts.R;
+import com.android.contacts.util.ListScrollSampler;
+import com.android.contacts.util.PerformanceMetrics;
 import com.android.contacts.widget.PinnedHeaderListAdapter;
 import com.android.contacts.widget.TextWithHighlightingFactory;
 
@@ -49,6 +51,7 @@ public abstract class ContactEntryListAdapter extends PinnedHeaderListAdapter {
 
     private boolean mDisplayPhotos;
     private ContactPhotoLoader mPhotoLoader;
+    private ListScrollSampler mScrollSampler;
 
     private String mQueryString;
     private boolean mSearchMode;
@@ -138,6 +141,10 @@ public abstract class ContactEntryListAdapter extends PinnedHeaderListAdapter {
         mPhotoLoader = photoLoader;
     }
 
+    public void setScrollSampler(ListScrollSampler scrollSampler) {
+        mScrollSampler = scrollSampler;
+    }
+
     protected ContactPhotoLoader getPhotoLoader() {
         return mPhotoLoader;
     }
@@ -256,6 +263,12 @@ public abstract class ContactEntryListAdapter extends PinnedHeaderListAdapter {
             return LayoutInflater.from(getContext()).inflate(
                     R.layout.contacts_list_search_all_item, parent, false);
         }
-        return super.getView(position, convertView, parent);
+
+        final long start = PerformanceMetrics.begin();
+        final View view = super.getView(position, convertView, parent);
+        if (mScrollSampler != null) {
+            mScrollSampler.recordGetView(getItemViewType(position), start);
+        }
+        return view;
     }
 }
@@ -21,6 +21,8 @@ import com.android.contacts.ContactListEmptyView;
 import com.android.contacts.ContactPhotoLoader;
 import com.android.contacts.R;
 import com.android.contacts.ui.ContactsPreferences;
+import com.android.contacts.util.ListScrollSampler;
+import com.android.contacts.util.PerformanceMetrics;
 import com.android.contacts.widget.ContextMenuAdapter;
 
 import android.accounts.Account;
@@ -99,6 +101,7 @@ public abstract class ContactEntryListFragment<T extends ContactEntryListAdapter
 
     private ContextMenuAdapter mContextMenuAdapter;
     private ContactPhotoLoader mPhotoLoader;
+    private ListScrollSampler mScrollSampler;
     private ContactListEmptyView mEmptyView;
     private ProviderStatusLoader mProviderStatusLoader;
     private ContactsPreferences mContactsPrefs;
@@ -155,6 +158,7 @@ public abstract class ContactEntryListFragment<T extends ContactEntryListAdapter
             return;
         }
 
+        final long start = PerformanceMetrics.begin();
         if (mEmptyView != null && (data == null || data.getCount() == 0)) {
             prepareEmptyView();
         }
@@ -165,6 +169,7 @@ public abstract class ContactEntryListFragment<T extends ContactEntryListAdapter
             showCount(data);
             completeRestoreInstanceState();
         }
+        PerformanceMetrics.end(PerformanceMetrics.LIST_LOAD_FINISHED, start);
     }
 
     protected void reloadData() {
@@ -332,7 +337,10 @@ public abstract class ContactEntryListFragment<T extends ContactEntryListAdapter
         mAdapter.setSearchMode(isSearchMode());
         mAdapter.setSearchResultsMode(isSearchResultsMode());
         mAdapter.setPhotoLoader(mPhotoLoader);
+        mScrollSampler = new ListScrollSampler(getClass().getSimpleName());
+        mAdapter.setScrollSampler(mScrollSampler);
         mListView.setAdapter(mAdapter);
+        mListView.setOnScrollListener(this);
 
         return mView;
     }
@@ -381,9 +389,6 @@ public abstract class ContactEntryListFragment<T extends ContactEntryListAdapter
             if (mPhotoLoader == null) {
                 mPhotoLoader = new ContactPhotoLoader(activity, R.drawable.ic_contact_list_picture);
             }
-            if (mListView != null) {
-                mListView.setOnScrollListener(this);
-            }
             if (mAdapter != null) {
                 mAdapter.setPhotoLoader(mPhotoLoader);
             }
@@ -412,6 +417,7 @@ public abstract class ContactEntryListFragment<T extends ContactEntryListAdapter
     @Override
     public void onStop() {
         super.onStop();
+        mScrollSampler.stopSampling();
         mAdapter.changeCursor(null);
     }
 
@@ -434,6 +440,11 @@ public abstract class ContactEntryListFragment<T extends ContactEntryListAdapter
     }
 
     public void onScrollStateChanged(AbsListView view, int scrollState) {
+        mScrollSampler.onScrollStateChanged(view, scrollState);
+        if (mPhotoLoader == null) {
+            return;
+        }
+
         if (scrollState == OnScrollListener.SCROLL_STATE_FLING) {
             mPhotoLoader.pause();
         } else if (isPhotoLoaderEnabled()) {
@@ -15,6 +15,8 @@
  */
 package com.android.contacts.list;
 
+import com.android.contacts.ui.QuickContactWindow;
+
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
@@ -22,6 +24,7 @@ import android.provider.ContactsContract;
 import android.provider.ContactsContract.ContactCounts;
 import android.provider.ContactsContract.Contacts;
 import android.provider.ContactsContract.SearchSnippetColumns;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ListView;
@@ -80,6 +83,19 @@ public abstract class ContactListAdapter extends ContactEntryListAdapter {
     private int mDisplayNameColumnIndex;
     private int mAlternativeDisplayNameColumnIndex;
 
+    /**
+     * Starts loading the QuickContact data as soon as a badge is touched, so that
+     * the window can be shown filled right away after the click.
+     */
+    private final View.OnTouchListener mQuickContactTouchListener = new View.OnTouchListener() {
+        public boolean onTouch(View v, MotionEvent event) {
+            if (event.getAction() == MotionEvent.ACTION_DOWN) {
+                QuickContactWindow.prefetch(getContext(), (Uri) v.getTag());
+            }
+            return false;
+        }
+    };
+
     public ContactListAdapter(Context context) {
         super(context);
 
@@ -142,6 +158,7 @@ public abstract class ContactListAdapter extends ContactEntryListAdapter {
     @Override
     public View newView(Context context, Cursor cursor, ViewGroup parent) {
         final ContactListItemView view = new ContactListItemView(context, null);
+        view.setFlattenedTextEnabled(true);
         view.setUnknownNameText(mUnknownNameText);
         view.setTextWithHighlightingFactory(getTextWithHighlightingFactory());
         return view;
@@ -186,7 +203,10 @@ public abstract class ContactListAdapter extends ContactEntryListAdapter {
         }
 
         QuickContactBadge quickContact = view.getQuickContact();
-        quickContact.assignContactUri(getContactUri());
+        Uri contactUri = getContactUri();
+        quickContact.assignContactUri(contactUri);
+        quickContact.setTag(contactUri);
+        quickContact.setOnTouchListener(mQuickContactTouchListener);
         getPhotoLoader().loadPhoto(quickContact, photoId);
     }
 
@@ -89,6 +89,13 @@ public class ContactListItemView extends ViewGroup {
     private TextView mSnippetView;
     private ImageView mPresenceIcon;
 
+    private boolean mFlattenedText;
+    private FlattenedTextLine mNameLine;
+    private FlattenedTextLine mPhoneticNameLine;
+    private FlattenedTextLine mLabelLine;
+    private FlattenedTextLine mDataLine;
+    private FlattenedTextLine mSnippetLine;
+
     private int mPhotoViewWidth;
     private int mPhotoViewHeight;
     private int mLine1Height;
@@ -175,6 +182,28 @@ public class ContactListItemView extends ViewGroup {
         mUnknownNameText = unknownNameText;
     }
 
+    /**
+     * Makes this view draw name, phonetic name, label, data and snippet itself instead
+     * of hosting a {@link TextView} for each of them. Every text line then has a fixed
+     * height, which makes measuring a row independent of its content. Must be called
+     * before the first bind; the text view getters must not be used in this mode.
+     */
+    public void setFlattenedTextEnabled(boolean flag) {
+        mFlattenedText = flag;
+        if (flag && mNameLine == null) {
+            mNameLine = new FlattenedTextLine(mContext, android.R.style.TextAppearance_Large,
+                    false);
+            mPhoneticNameLine = new FlattenedTextLine(mContext,
+                    android.R.style.TextAppearance_Small, true);
+            mLabelLine = new FlattenedTextLine(mContext, android.R.style.TextAppearance_Small,
+                    true);
+            mDataLine = new FlattenedTextLine(mContext, android.R.style.TextAppearance_Small,
+                    false);
+            mSnippetLine = new FlattenedTextLine(mContext, android.R.style.TextAppearance_Small,
+                    true);
+        }
+    }
+
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         // We will match parent's width and wrap content vertically, but make sure
@@ -187,6 +216,20 @@ public class ContactListItemView extends ViewGroup {
         mLine3Height = 0;
         mLine4Height = 0;
 
+        if (mFlattenedText) {
+            // The name line is always present, it shows the "unknown" text at least
+            mLine1Height = mNameLine.getLineHeight();
+            if (mPhoneticNameLine.isVisible()) {
+                mLine2Height = mPhoneticNameLine.getLineHeight();
+            }
+            if (mLabelLine.isVisible() || mDataLine.isVisible()) {
+                mLine3Height = Math.max(mLabelLine.getLineHeight(), mDataLine.getLineHeight());
+            }
+            if (mSnippetLine.isVisible()) {
+                mLine4Height = mSnippetLine.getLineHeight();
+            }
+        }
+
         // Obtain the natural dimensions of the name text (we only care about height)
         if (isVisible(mNameTextView)) {
             mNameTextView.measure(0, 0);
@@ -289,6 +332,11 @@ public class ContactListItemView extends ViewGroup {
         int totalTextHeight = mLine1Height + mLine2Height + mLine3Height + mLine4Height;
         int textTopBound = (bottomBound + topBound - totalTextHeight) / 2;
 
+        if (mFlattenedText) {
+            layoutFlattenedText(leftBound, textTopBound, rightBound);
+            return;
+        }
+
         if (isVisible(mNameTextView)) {
             mNameTextView.layout(leftBound,
                     textTopBound,
@@ -328,6 +376,28 @@ public class ContactListItemView extends ViewGroup {
         }
     }
 
+    /**
+     * Positions the self-drawn text lines, mirroring the text view layout above.
+     */
+    private void layoutFlattenedText(int leftBound, int textTopBound, int rightBound) {
+        mNameLine.layout(leftBound, textTopBound, rightBound);
+        textTopBound += mLine1Height;
+
+        mPhoneticNameLine.layout(leftBound, textTopBound, rightBound);
+        textTopBound += mLine2Height;
+
+        int dataLeftBound = leftBound;
+        if (mLabelLine.isVisible()) {
+            dataLeftBound = Math.min(leftBound + mLabelLine.getNaturalWidth(), rightBound);
+            mLabelLine.layout(leftBound, textTopBound, dataLeftBound);
+            dataLeftBound += mGapBetweenLabelAndData;
+        }
+        mDataLine.layout(dataLeftBound, textTopBound, rightBound);
+        textTopBound += mLine3Height;
+
+        mSnippetLine.layout(leftBound, textTopBound, rightBound);
+    }
+
     /**
      * Performs layout of the left side of the view
      *
@@ -452,9 +522,33 @@ public class ContactListItemView extends ViewGroup {
         if (mVerticalDividerVisible) {
             mVerticalDividerDrawable.draw(canvas);
         }
+        if (mFlattenedText) {
+            mNameLine.draw(canvas);
+            mPhoneticNameLine.draw(canvas);
+            mLabelLine.draw(canvas);
+            mDataLine.draw(canvas);
+            mSnippetLine.draw(canvas);
+        }
         super.dispatchDraw(canvas);
     }
 
+    @Override
+    protected void drawableStateChanged() {
+        super.drawableStateChanged();
+        if (mFlattenedText) {
+            // Text views would pick up the pressed/selected colors by themselves
+            final int[] state = getDrawableState();
+            boolean changed = mNameLine.setState(state);
+            changed |= mPhoneticNameLine.setState(state);
+            changed |= mLabelLine.setState(state);
+            changed |= mDataLine.setState(state);
+            changed |= mSnippetLine.setState(state);
+            if (changed) {
+                invalidate();
+            }
+        }
+    }
+
     /**
      * Sets the flag that determines whether a divider should drawn at the bottom
      * of the view.
@@ -575,7 +669,10 @@ public class ContactListItemView extends ViewGroup {
      * Adds or updates a text view for the phonetic name.
      */
     public void setPhoneticName(char[] text, int size) {
-        if (text == null || size == 0) {
+        if (mFlattenedText) {
+            mPhoneticNameLine.setText(text, size);
+            requestLayout();
+        } else if (text == null || size == 0) {
             if (mPhoneticNameTextView != null) {
                 mPhoneticNameTextView.setVisibility(View.GONE);
             }
@@ -605,7 +702,10 @@ public class ContactListItemView extends ViewGroup {
      * Adds or updates a text view for the data label.
      */
     public void setLabel(CharSequence text) {
-        if (TextUtils.isEmpty(text)) {
+        if (mFlattenedText) {
+            mLabelLine.setText(text);
+            requestLayout();
+        } else if (TextUtils.isEmpty(text)) {
             if (mLabelView != null) {
                 mLabelView.setVisibility(View.GONE);
             }
@@ -620,7 +720,10 @@ public class ContactListItemView extends ViewGroup {
      * Adds or updates a text view for the data label.
      */
     public void setLabel(char[] text, int size) {
-        if (text == null || size == 0) {
+        if (mFlattenedText) {
+            mLabelLine.setText(text, size);
+            requestLayout();
+        } else if (text == null || size == 0) {
             if (mLabelView != null) {
                 mLabelView.setVisibility(View.GONE);
             }
@@ -650,7 +753,10 @@ public class ContactListItemView extends ViewGroup {
      * Adds or updates a text view for the data element.
      */
     public void setData(char[] text, int size) {
-        if (text == null || size == 0) {
+        if (mFlattenedText) {
+            mDataLine.setText(text, size);
+            requestLayout();
+        } else if (text == null || size == 0) {
             if (mDataView != null) {
                 mDataView.setVisibility(View.GONE);
             }
@@ -680,7 +786,10 @@ public class ContactListItemView extends ViewGroup {
      * Adds or updates a text view for the search snippet.
      */
     public void setSnippet(CharSequence text) {
-        if (TextUtils.isEmpty(text)) {
+        if (mFlattenedText) {
+            mSnippetLine.setText(text);
+            requestLayout();
+        } else if (TextUtils.isEmpty(text)) {
             if (mSnippetView != null) {
                 mSnippetView.setVisibility(View.GONE);
             }
@@ -725,10 +834,32 @@ public class ContactListItemView extends ViewGroup {
         }
     }
 
+    /**
+     * Sets the text of the name line.
+     */
+    public void setDisplayName(CharSequence name) {
+        if (mFlattenedText) {
+            mNameLine.setText(name);
+            invalidate();
+        } else {
+            getNameTextView().setText(name);
+        }
+    }
+
+    /**
+     * Redraws the name, e.g. while its highlighting is animated.
+     */
+    public void invalidateDisplayName() {
+        if (mFlattenedText) {
+            invalidate();
+        } else if (mNameTextView != null) {
+            mNameTextView.invalidate();
+        }
+    }
+
     public void showDisplayName(Cursor cursor, int nameColumnIndex, boolean highlightingEnabled,
             int alternativeNameColumnIndex) {
         cursor.copyStringToBuffer(nameColumnIndex, nameBuffer);
-        TextView nameView = getNameTextView();
         int size = nameBuffer.sizeCopied;
         if (size != 0) {
             if (highlightingEnabled) {
@@ -738,12 +869,15 @@ public class ContactListItemView extends ViewGroup {
                 }
                 cursor.copyStringToBuffer(alternativeNameColumnIndex, highlightedTextBuffer);
                 textWithHighlighting.setText(nameBuffer, highlightedTextBuffer);
-                nameView.setText(textWithHighlighting);
+                setDisplayName(textWithHighlighting);
+            } else if (mFlattenedText) {
+                mNameLine.setText(nameBuffer.data, size);
+                invalidate();
             } else {
-                nameView.setText(nameBuffer.data, 0, size);
+                getNameTextView().setText(nameBuffer.data, 0, size);
             }
         } else {
-            nameView.setText(mUnknownNameText);
+            setDisplayName(mUnknownNameText);
         }
     }
 
@@ -765,7 +899,7 @@ public class ContactListItemView extends ViewGroup {
         if (!cursor.isNull(presenceColumnIndex)) {
             serverStatus = cursor.getInt(presenceColumnIndex);
 
-            // TODO consider caching these drawables
+            // Icons are cached by ContactPresenceIconUtil, this doesn't hit Resources
             Drawable icon = ContactPresenceIconUtil.getPresenceIcon(getContext(), serverStatus);
             if (icon != null) {
                 setPresence(icon);
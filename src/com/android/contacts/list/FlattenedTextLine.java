@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.list;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Typeface;
+import android.text.BoringLayout;
+import android.text.Layout;
+import android.text.Spanned;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.text.TextUtils.TruncateAt;
+
+/**
+ * A single line of text that {@link ContactListItemView} draws itself instead of
+ * hosting a {@link android.widget.TextView}. The line height is derived from the
+ * font metrics once, so measuring a row doesn't depend on the text at all. The
+ * {@link Layout} is built lazily on the first draw and kept until the text or the
+ * available width changes.
+ */
+/* package */ class FlattenedTextLine {
+    private final TextPaint mPaint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+    private final int mLineHeight;
+    private final StringBuilder mBuffer = new StringBuilder();
+    private ColorStateList mTextColors;
+
+    private CharSequence mText;
+    private BoringLayout.Metrics mBoringMetrics;
+    private Layout mLayout;
+
+    private int mLeft;
+    private int mTop;
+    private int mWidth;
+
+    public FlattenedTextLine(Context context, int textAppearance, boolean bold) {
+        final TypedArray a = context.obtainStyledAttributes(textAppearance,
+                com.android.internal.R.styleable.TextAppearance);
+        mPaint.setTextSize(a.getDimensionPixelSize(
+                com.android.internal.R.styleable.TextAppearance_textSize, 15));
+        mTextColors = a.getColorStateList(
+                com.android.internal.R.styleable.TextAppearance_textColor);
+        a.recycle();
+
+        mPaint.density = context.getResources().getDisplayMetrics().density;
+        if (bold) {
+            mPaint.setTypeface(Typeface.DEFAULT_BOLD);
+        }
+        if (mTextColors != null) {
+            mPaint.setColor(mTextColors.getDefaultColor());
+        }
+
+        // Same as a single line TextView with font padding included
+        mLineHeight = mPaint.getFontMetricsInt(null);
+    }
+
+    /**
+     * Returns true if there is any text to draw.
+     */
+    public boolean isVisible() {
+        return !TextUtils.isEmpty(mText);
+    }
+
+    public int getLineHeight() {
+        return mLineHeight;
+    }
+
+    /**
+     * Returns the width the text would need without ellipsizing.
+     */
+    public int getNaturalWidth() {
+        if (!isVisible()) {
+            return 0;
+        }
+        return (int) Math.ceil(Layout.getDesiredWidth(mText, mPaint));
+    }
+
+    /**
+     * Sets the text of this line. The text may be a mutable {@link CharSequence} as long
+     * as this method is called again whenever it changes.
+     */
+    public void setText(CharSequence text) {
+        mText = text;
+        mLayout = null;
+    }
+
+    /**
+     * Copies the given characters, so that the caller may reuse the array.
+     */
+    public void setText(char[] text, int size) {
+        if (text == null || size == 0) {
+            setText(null);
+        } else {
+            mBuffer.setLength(0);
+            mBuffer.append(text, 0, size);
+            setText(mBuffer);
+        }
+    }
+
+    /**
+     * Picks the text color matching the given drawable state of the row, and hands the
+     * state to the spans of the text, like a {@link android.widget.TextView} does.
+     *
+     * @return true if the line needs to be redrawn
+     */
+    public boolean setState(int[] state) {
+        mPaint.drawableState = state;
+
+        // Spans, such as the dimming of TextHighlightingAnimation, may depend on the state
+        boolean changed = mText instanceof Spanned;
+        if (mTextColors != null) {
+            final int color = mTextColors.getColorForState(state,
+                    mTextColors.getDefaultColor());
+            if (color != mPaint.getColor()) {
+                mPaint.setColor(color);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Positions the line within the row. The layout is dropped only if the width changed.
+     */
+    public void layout(int left, int top, int right) {
+        final int width = Math.max(0, right - left);
+        if (width != mWidth) {
+            mWidth = width;
+            mLayout = null;
+        }
+        mLeft = left;
+        mTop = top;
+    }
+
+    public void draw(Canvas canvas) {
+        if (!isVisible() || mWidth == 0) {
+            return;
+        }
+
+        if (mLayout == null) {
+            mLayout = makeLayout();
+        }
+
+        canvas.save();
+        canvas.translate(mLeft, mTop);
+        // A StaticLayout could wrap, only the first line belongs to us
+        canvas.clipRect(0, 0, mWidth, mLineHeight);
+        mLayout.draw(canvas);
+        canvas.restore();
+    }
+
+    private Layout makeLayout() {
+        mBoringMetrics = BoringLayout.isBoring(mText, mPaint, mBoringMetrics);
+        if (mBoringMetrics != null) {
+            return BoringLayout.make(mText, mPaint, mWidth, Layout.Alignment.ALIGN_NORMAL,
+                    1.0f, 0.0f, mBoringMetrics, true, TruncateAt.END, mWidth);
+        }
+        return new StaticLayout(mText, 0, mText.length(), mPaint, mWidth,
+                Layout.Alignment.ALIGN_NORMAL, 1.0f, 0.0f, true, TruncateAt.END, mWidth);
+    }
+}
@@ -18,19 +18,49 @@ package com.android.contacts.list;
 import android.content.Context;
 import android.content.CursorLoader;
 import android.database.Cursor;
-import android.database.MatrixCursor;
 import android.net.Uri;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * A specialized loader for the Join Contacts UI.  It executes up to two queries:
- * join suggestions and (optionally) the full contact list.
+ * join suggestions and (optionally) the full contact list. When both are needed,
+ * the suggestions are queried on a second thread while the full list is loading,
+ * and the suggestions cursor is handed to the adapter as is.
  */
 public class JoinContactLoader extends CursorLoader {
+    private static final String TAG = "JoinContactLoader";
+
+    private static final ExecutorService sSuggestionsExecutor =
+            Executors.newSingleThreadExecutor();
 
     private boolean mLoadSuggestionsAndAllContact;
     private String[] mProjection;
     private Uri mSuggestionUri;
-    private MatrixCursor mCachedCursor;
+
+    /** Suggestions of the last finished load, published by {@link #deliverResult} */
+    private LoadedSuggestions mLoadedSuggestions;
+    private Cursor mSuggestionsCursor;
+    private boolean mDestroyed;
+
+    /**
+     * Suggestions paired with the cursor of the load they were queried for, so that
+     * only the delivery of that very cursor publishes them.
+     */
+    private static final class LoadedSuggestions {
+        public final Cursor cursor;
+        public final Cursor suggestions;
+
+        public LoadedSuggestions(Cursor cursor, Cursor suggestions) {
+            this.cursor = cursor;
+            this.suggestions = suggestions;
+        }
+    }
 
     public JoinContactLoader(Context context) {
         super(context, null, null, null, null, null);
@@ -47,16 +77,27 @@ public class JoinContactLoader extends CursorLoader {
     }
 
     public Cursor getSuggestionsCursor() {
-        return mCachedCursor;
+        return mSuggestionsCursor;
     }
 
     @Override
     public Cursor loadInBackground() {
         if (mLoadSuggestionsAndAllContact) {
-            // First execute the suggestions query, then call super.loadInBackground
-            // to load the entire list
-            mCachedCursor = loadSuggestions();
-            return super.loadInBackground();
+            // Execute the suggestions query next to super.loadInBackground, which loads
+            // the entire list
+            final Future<Cursor> suggestions = sSuggestionsExecutor.submit(
+                    new Callable<Cursor>() {
+                        public Cursor call() {
+                            return loadSuggestions();
+                        }
+                    });
+            Cursor cursor = null;
+            try {
+                cursor = super.loadInBackground();
+            } finally {
+                setLoadedSuggestions(cursor, getSuggestions(suggestions, cursor != null));
+            }
+            return cursor;
         } else {
             // Use the default behavior of the super.loadInBackground to load join
             // suggestions only
@@ -69,22 +110,98 @@ public class JoinContactLoader extends CursorLoader {
     }
 
     /**
-     * Loads join suggestions into a MatrixCursor.
+     * Queries join suggestions and makes sure the rows are fetched on this thread.
      */
-    private MatrixCursor loadSuggestions() {
-        Cursor cursor = getContext().getContentResolver().query(mSuggestionUri, mProjection,
-                null, null, null);
+    private Cursor loadSuggestions() {
+        final Cursor cursor = getContext().getContentResolver().query(mSuggestionUri,
+                mProjection, null, null, null);
+        if (cursor != null) {
+            cursor.getCount();
+        }
+        return cursor;
+    }
+
+    /**
+     * Waits for the suggestions query. If they are not wanted anymore, they are closed.
+     */
+    private Cursor getSuggestions(Future<Cursor> suggestions, boolean wanted) {
+        Cursor cursor = null;
         try {
-            MatrixCursor matrix = new MatrixCursor(mProjection);
-            Object[] row = new Object[mProjection.length];
-            while (cursor.moveToNext()) {
-                for (int i = 0; i < row.length; i++) {
-                    row[i] = cursor.getString(i);
-                }
-                matrix.addRow(row);
+            cursor = suggestions.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Problem loading join suggestions", e.getCause());
+        }
+        if (!wanted && cursor != null) {
+            cursor.close();
+            return null;
+        }
+        return cursor;
+    }
+
+    /**
+     * Hands the suggestions of a finished load to {@link #deliverResult}. Suggestions of
+     * an earlier load that never got delivered are closed, as are suggestions that arrive
+     * after the loader was destroyed.
+     */
+    private synchronized void setLoadedSuggestions(Cursor cursor, Cursor suggestions) {
+        final LoadedSuggestions previous = mLoadedSuggestions;
+        mLoadedSuggestions = null;
+        if (previous != null) {
+            closeQuietly(previous.suggestions);
+        }
+        if (mDestroyed) {
+            closeQuietly(suggestions);
+        } else if (cursor != null) {
+            mLoadedSuggestions = new LoadedSuggestions(cursor, suggestions);
+        }
+    }
+
+    /**
+     * Removes and returns the suggestions loaded together with the given cursor, or null
+     * if the cursor is delivered again without a new load, e.g. when the loader restarts.
+     */
+    private synchronized LoadedSuggestions takeLoadedSuggestions(Cursor cursor) {
+        final LoadedSuggestions loaded = mLoadedSuggestions;
+        if (loaded == null || cursor == null || loaded.cursor != cursor) {
+            return null;
+        }
+        mLoadedSuggestions = null;
+        return loaded;
+    }
+
+    @Override
+    public void deliverResult(Cursor cursor) {
+        final Cursor oldSuggestions = mSuggestionsCursor;
+        final LoadedSuggestions loaded = takeLoadedSuggestions(cursor);
+        if (loaded != null) {
+            mSuggestionsCursor = loaded.suggestions;
+        }
+        super.deliverResult(cursor);
+
+        // The adapter has switched to the new suggestions by now
+        if (oldSuggestions != mSuggestionsCursor) {
+            closeQuietly(oldSuggestions);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+        synchronized (this) {
+            mDestroyed = true;
+            if (mLoadedSuggestions != null) {
+                closeQuietly(mLoadedSuggestions.suggestions);
+                mLoadedSuggestions = null;
             }
-            return matrix;
-        } finally {
+        }
+        closeQuietly(mSuggestionsCursor);
+        mSuggestionsCursor = null;
+    }
+
+    private static void closeQuietly(Cursor cursor) {
+        if (cursor != null && !cursor.isClosed()) {
             cursor.close();
         }
     }
@@ -92,4 +209,4 @@ public class JoinContactLoader extends CursorLoader {
     public void setLoadSuggestionsAndAllContacts(boolean flag) {
         mLoadSuggestionsAndAllContact = flag;
     }
-}
\ No newline at end of file
+}
@@ -16,6 +16,7 @@
 package com.android.contacts.list;
 
 import com.android.contacts.R;
+import com.android.contacts.util.LongHashSet;
 
 import android.content.ContentUris;
 import android.content.Context;
@@ -23,14 +24,12 @@ import android.database.Cursor;
 import android.net.Uri;
 import android.provider.ContactsContract.CommonDataKinds.Phone;
 import android.text.TextUtils;
-import android.util.SparseIntArray;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.CheckBox;
 
 import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Iterator;
 
 /**
  * List adapter for the multiple phone picker.
@@ -77,17 +76,17 @@ public class MultiplePhonePickerAdapter extends PhoneNumberListAdapter {
     private ArrayList<String> mFilteredPhoneNumbers = new ArrayList<String>();
 
     /** The PHONE_ID of selected number in user contacts*/
-    private HashSet<Long> mSelectedPhoneIds = new HashSet<Long>();
+    private LongHashSet mSelectedPhoneIds = new LongHashSet();
 
     private boolean mSelectionChanged;
 
     private OnSelectionChangeListener mSelectionChangeListener;
 
     /**
-     * This is a map from contact ID to color index. A colored chip is used to
-     * indicate the number of phone numbers belong to one contact
+     * The chip color resource id by cursor position, 0 if there is none. A colored chip
+     * is used to indicate the phone numbers that belong to one contact.
      */
-    private SparseIntArray mContactColor = new SparseIntArray();
+    private int[] mChipColors = new int[0];
 
     public MultiplePhonePickerAdapter(Context context) {
         super(context);
@@ -116,8 +115,8 @@ public class MultiplePhonePickerAdapter extends PhoneNumberListAdapter {
                 uris[index++] = Uri.parse("tel:" + phoneNumber);
             }
         }
-        for (Long contactId : mSelectedPhoneIds) {
-            uris[index++] = ContentUris.withAppendedId(Phone.CONTENT_URI, contactId);
+        for (long phoneId : mSelectedPhoneIds.toArray()) {
+            uris[index++] = ContentUris.withAppendedId(Phone.CONTENT_URI, phoneId);
         }
         return uris;
     }
@@ -126,17 +125,19 @@ public class MultiplePhonePickerAdapter extends PhoneNumberListAdapter {
         mSelectedPhoneNumbers.clear();
         mSelectedPhoneIds.clear();
         if (uris != null) {
+            mSelectedPhoneIds.ensureCapacity(uris.length);
+            final HashSet<String> knownPhoneNumbers = new HashSet<String>(mPhoneNumbers);
             for (Uri uri : uris) {
                 String scheme = uri.getScheme();
                 if ("tel".equals(scheme)) {
                     String phoneNumber = uri.getSchemeSpecificPart();
-                    if (!mPhoneNumbers.contains(phoneNumber)) {
+                    if (knownPhoneNumbers.add(phoneNumber)) {
                         mPhoneNumbers.add(phoneNumber);
                     }
                     mSelectedPhoneNumbers.add(phoneNumber);
-            } else if ("content".equals(scheme)) {
-                mSelectedPhoneIds.add(ContentUris.parseId(uri));
-            }
+                } else if ("content".equals(scheme)) {
+                    mSelectedPhoneIds.add(ContentUris.parseId(uri));
+                }
             }
         }
         mFilteredPhoneNumbers.clear();
@@ -195,37 +196,67 @@ public class MultiplePhonePickerAdapter extends PhoneNumberListAdapter {
         return mSelectedPhoneNumbers.contains(phoneNumber);
     }
 
+    /**
+     * Selects or deselects all phone numbers in the list in a single pass.
+     */
     public void setAllPhonesSelected(boolean selected) {
-//        if (selected) {
-//            Cursor cursor = this.mMultiplePhoneSelectionActivity.mAdapter.getCursor();
-//            if (cursor != null) {
-//                int backupPos = cursor.getPosition();
-//                cursor.moveToPosition(-1);
-//                while (cursor.moveToNext()) {
-//                    setPhoneSelected(cursor
-//                            .getLong(MultiplePhonePickerActivity.PHONE_ID_COLUMN_INDEX), true);
-//                }
-//                cursor.moveToPosition(backupPos);
-//            }
-//            for (String number : this.mMultiplePhoneSelectionActivity.mPhoneNumberAdapter
-//                    .getFilteredPhoneNumbers()) {
-//                setPhoneSelected(number, true);
-//            }
-//        } else {
-//            mSelectedPhoneIds.clear();
-//            mSelectedPhoneNumbers.clear();
-//        }
+        if (selected) {
+            Cursor cursor = getCursor();
+            if (cursor != null) {
+                mSelectedPhoneIds.ensureCapacity(mSelectedPhoneIds.size() + cursor.getCount());
+                int backupPos = cursor.getPosition();
+                cursor.moveToPosition(-1);
+                while (cursor.moveToNext()) {
+                    mSelectedPhoneIds.add(cursor.getLong(PHONE_ID_COLUMN_INDEX));
+                }
+                cursor.moveToPosition(backupPos);
+            }
+            mSelectedPhoneNumbers.addAll(mFilteredPhoneNumbers);
+        } else {
+            mSelectedPhoneIds.clear();
+            mSelectedPhoneNumbers.clear();
+        }
+        setSelectionChanged(true);
+        notifyDataSetChanged();
     }
 
+    /**
+     * Returns true if every row of the list is selected. Selections of rows that aren't
+     * in the list, for example because a filter hides them, don't count.
+     */
     public boolean isAllSelected() {
-        return false;
-//        return selectedCount() == this.mMultiplePhoneSelectionActivity.mPhoneNumberAdapter
-//                .getFilteredPhoneNumbers().size()
-//                + this.mMultiplePhoneSelectionActivity.mAdapter.getCount();
+        Cursor cursor = getCursor();
+        int count = mFilteredPhoneNumbers.size() + (cursor == null ? 0 : cursor.getCount());
+        if (count == 0) {
+            return false;
+        }
+
+        for (String phoneNumber : mFilteredPhoneNumbers) {
+            if (!mSelectedPhoneNumbers.contains(phoneNumber)) {
+                return false;
+            }
+        }
+        if (cursor != null) {
+            int backupPos = cursor.getPosition();
+            try {
+                cursor.moveToPosition(-1);
+                while (cursor.moveToNext()) {
+                    if (!mSelectedPhoneIds.contains(cursor.getLong(PHONE_ID_COLUMN_INDEX))) {
+                        return false;
+                    }
+                }
+            } finally {
+                cursor.moveToPosition(backupPos);
+            }
+        }
+        return true;
     }
 
-    public Iterator<Long> getSelectedPhoneIds() {
-        return mSelectedPhoneIds.iterator();
+    /**
+     * Returns the PHONE_IDs of the selected numbers in user contacts, in no particular order.
+     */
+    public long[] getSelectedPhoneIds() {
+        return mSelectedPhoneIds.toArray();
     }
 
     @Override
@@ -270,7 +301,7 @@ public class MultiplePhonePickerAdapter extends PhoneNumberListAdapter {
     private void bindExtraPhoneView(View itemView, int position) {
         final MultiplePhonePickerItemView view = (MultiplePhonePickerItemView)itemView;
         String phoneNumber = mFilteredPhoneNumbers.get(position);
-        view.getNameTextView().setText(phoneNumber);
+        view.setDisplayName(phoneNumber);
         CheckBox checkBox = view.getCheckBoxView();
         checkBox.setChecked(isSelected(phoneNumber));
         view.phoneId = INVALID_PHONE_ID;
@@ -286,8 +317,7 @@ public class MultiplePhonePickerAdapter extends PhoneNumberListAdapter {
         CheckBox checkBox = view.getCheckBoxView();
         checkBox.setChecked(isSelected(view.phoneId));
 
-        long contactId = cursor.getLong(PHONE_CONTACT_ID_COLUMN_INDEX);
-        view.getChipView().setBackgroundResource(getChipColor(contactId));
+        view.getChipView().setBackgroundResource(getChipColor(cursor.getPosition()));
     }
 
 //    @Override
@@ -297,11 +327,11 @@ public class MultiplePhonePickerAdapter extends PhoneNumberListAdapter {
 //    }
 
     /**
-     * Get assigned chip color resource id for a given contact, 0 is returned if there is no mapped
-     * resource.
+     * Get assigned chip color resource id for a given cursor position, 0 is returned if there
+     * is no mapped resource.
      */
-    public int getChipColor(long contactId) {
-        return mContactColor.get((int)contactId);
+    public int getChipColor(int position) {
+        return position >= 0 && position < mChipColors.length ? mChipColors[position] : 0;
     }
 
     // TODO filtering
@@ -340,24 +370,32 @@ public class MultiplePhonePickerAdapter extends PhoneNumberListAdapter {
      */
     public void updateChipColor(Cursor cursor) {
         if (cursor == null || cursor.getCount() == 0) {
+            mChipColors = new int[0];
             return;
         }
-        mContactColor.clear();
-        cursor.moveToFirst();
+        final int[] chipColors = new int[cursor.getCount()];
         int colorIndex = 0;
-        long prevContactId = cursor.getLong(PHONE_CONTACT_ID_COLUMN_INDEX);
-        while (cursor.moveToNext()) {
+        int runStart = 0;
+        long runContactId = 0;
+        cursor.moveToPosition(-1);
+        for (int i = 0; cursor.moveToNext(); i++) {
             long contactId = cursor.getLong(PHONE_CONTACT_ID_COLUMN_INDEX);
-            if (prevContactId == contactId) {
-                if (mContactColor.indexOfKey((int)contactId) < 0) {
-                    mContactColor.put((int)contactId, CHIP_COLOR_ARRAY[colorIndex]);
-                    colorIndex++;
-                    if (colorIndex >= CHIP_COLOR_ARRAY.length) {
-                        colorIndex = 0;
-                    }
+            if (i == 0 || contactId != runContactId) {
+                runStart = i;
+                runContactId = contactId;
+                continue;
+            }
+
+            // Second number of this contact, pick the next color
+            if (i == runStart + 1) {
+                chipColors[runStart] = CHIP_COLOR_ARRAY[colorIndex];
+                colorIndex++;
+                if (colorIndex >= CHIP_COLOR_ARRAY.length) {
+                    colorIndex = 0;
                 }
             }
-            prevContactId = contactId;
+            chipColors[i] = chipColors[runStart];
         }
+        mChipColors = chipColors;
     }
 }
@@ -80,6 +80,12 @@ public class StrequentContactListAdapter extends ContactListAdapter {
 
         loader.setProjection(PROJECTION);
         loader.setSortOrder(sortOrder);
+
+        if (loader instanceof StrequentCursorLoader) {
+            ((StrequentCursorLoader) loader).setPartitions(mStarredContactsIncluded,
+                    mFrequentlyContactedContactsIncluded, CONTACT_ID_COLUMN_INDEX,
+                    CONTACT_STARRED_COLUMN_INDEX);
+        }
     }
 
     @Override
@@ -89,7 +95,16 @@ public class StrequentContactListAdapter extends ContactListAdapter {
         // Get the split between starred and frequent items, if the mode is strequent
         mFrequentSeparatorPos = ListView.INVALID_POSITION;
 
-        if (mStarredContactsIncluded && mFrequentlyContactedContactsIncluded) {
+        if (cursor instanceof StrequentCursorLoader.StrequentCursor) {
+            // Partitioned by the loader already
+            final int frequentStart =
+                    ((StrequentCursorLoader.StrequentCursor) cursor).getFrequentStart();
+            if (mStarredContactsIncluded && frequentStart > 0
+                    && frequentStart < cursor.getCount()) {
+                // Only add the separator when there are starred items present
+                mFrequentSeparatorPos = frequentStart;
+            }
+        } else if (mStarredContactsIncluded && mFrequentlyContactedContactsIncluded) {
             int count = 0;
             if (cursor != null && (count = cursor.getCount()) > 0) {
                 cursor.moveToPosition(-1);
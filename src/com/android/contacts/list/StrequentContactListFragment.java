@@ -17,6 +17,9 @@ package com.android.contacts.list;
 
 import com.android.contacts.R;
 
+import android.content.Loader;
+import android.database.Cursor;
+import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -48,6 +51,11 @@ public class StrequentContactListFragment extends ContactBrowseListFragment
         configureAdapter();
     }
 
+    @Override
+    protected Loader<Cursor> onCreateLoader(int id, Bundle args) {
+        return new StrequentCursorLoader(getActivity());
+    }
+
     @Override
     protected void onItemClick(int position, long id) {
         ContactListAdapter adapter = getAdapter();
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.list;
+
+import android.content.Context;
+import android.content.CursorLoader;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.provider.ContactsContract.Contacts;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * A loader for the favorites list. On top of the regular query it partitions the
+ * result into starred and frequently contacted contacts and ranks the frequent
+ * ones by how often and how recently they were contacted. All of this happens on
+ * the loader thread, once per load, so that binding the list never has to scan
+ * the cursor.
+ */
+public class StrequentCursorLoader extends CursorLoader {
+
+    /**
+     * The weight of a contact's call count halves with every such period since
+     * the contact was last contacted.
+     */
+    private static final long FREQUENT_HALF_LIFE_MILLIS = 14L * 24 * 60 * 60 * 1000;
+
+    private interface RankingQuery {
+        final String[] PROJECTION = new String[] {
+                Contacts._ID,
+                Contacts.TIMES_CONTACTED,
+                Contacts.LAST_TIME_CONTACTED,
+        };
+
+        final int _ID = 0;
+        final int TIMES_CONTACTED = 1;
+        final int LAST_TIME_CONTACTED = 2;
+    }
+
+    private boolean mStarredContactsIncluded;
+    private boolean mFrequentlyContactedContactsIncluded;
+    private int mIdColumnIndex;
+    private int mStarredColumnIndex;
+
+    public StrequentCursorLoader(Context context) {
+        super(context, null, null, null, null, null);
+    }
+
+    /**
+     * Sets which parts the loaded list consists of and where the loaded cursor keeps
+     * the contact id and starred flag.
+     */
+    public void setPartitions(boolean starredIncluded, boolean frequentIncluded,
+            int idColumnIndex, int starredColumnIndex) {
+        mStarredContactsIncluded = starredIncluded;
+        mFrequentlyContactedContactsIncluded = frequentIncluded;
+        mIdColumnIndex = idColumnIndex;
+        mStarredColumnIndex = starredColumnIndex;
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        final Cursor cursor = super.loadInBackground();
+        if (cursor == null || !mFrequentlyContactedContactsIncluded) {
+            return cursor;
+        }
+
+        // Single pass: find where the frequent contacts start and remember their ids
+        final int count = cursor.getCount();
+        final long[] ids = new long[count];
+        int frequentStart = mStarredContactsIncluded ? count : 0;
+        cursor.moveToPosition(-1);
+        for (int i = 0; cursor.moveToNext(); i++) {
+            ids[i] = cursor.getLong(mIdColumnIndex);
+            if (frequentStart == count && cursor.getInt(mStarredColumnIndex) == 0) {
+                frequentStart = i;
+            }
+        }
+
+        return new StrequentCursor(cursor, frequentStart,
+                rankFrequent(ids, frequentStart));
+    }
+
+    /**
+     * Returns the positions of the frequent rows, i.e. those from frequentStart on,
+     * ordered by their decayed call count. Rows without ranking data keep their
+     * relative order at the end.
+     */
+    private int[] rankFrequent(long[] ids, int frequentStart) {
+        final int frequentCount = ids.length - frequentStart;
+        final int[] positions = new int[frequentCount];
+        if (frequentCount == 0) {
+            return positions;
+        }
+
+        final StringBuilder selection = new StringBuilder(Contacts._ID + " IN (");
+        for (int i = frequentStart; i < ids.length; i++) {
+            if (i != frequentStart) selection.append(',');
+            selection.append(ids[i]);
+        }
+        selection.append(')');
+
+        final HashMap<Long, Double> scores = new HashMap<Long, Double>(frequentCount * 2);
+        final Cursor ranking = getContext().getContentResolver().query(Contacts.CONTENT_URI,
+                RankingQuery.PROJECTION, selection.toString(), null, null);
+        if (ranking != null) {
+            final long now = System.currentTimeMillis();
+            try {
+                while (ranking.moveToNext()) {
+                    final long age = Math.max(0, now - ranking.getLong(
+                            RankingQuery.LAST_TIME_CONTACTED));
+                    scores.put(ranking.getLong(RankingQuery._ID),
+                            ranking.getInt(RankingQuery.TIMES_CONTACTED)
+                                    * Math.pow(0.5, (double) age / FREQUENT_HALF_LIFE_MILLIS));
+                }
+            } finally {
+                ranking.close();
+            }
+        }
+
+        // Highest score first, ties keep the order of the query
+        final double[] negatedScores = new double[frequentCount];
+        final Integer[] order = new Integer[frequentCount];
+        for (int i = 0; i < frequentCount; i++) {
+            final Double score = scores.get(ids[frequentStart + i]);
+            negatedScores[i] = score == null ? 0 : -score;
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer lhs, Integer rhs) {
+                final int result = Double.compare(negatedScores[lhs], negatedScores[rhs]);
+                return result != 0 ? result : lhs - rhs;
+            }
+        });
+        for (int i = 0; i < frequentCount; i++) {
+            positions[i] = frequentStart + order[i];
+        }
+        return positions;
+    }
+
+    /**
+     * A cursor whose starred rows come first in their original order, followed by
+     * the ranked frequent rows. Knows where the frequent rows start.
+     */
+    public static class StrequentCursor extends CursorWrapper {
+        private final Cursor mWrappedCursor;
+        private final int mFrequentStart;
+        private final int[] mFrequentPositions;
+        private int mPosition = -1;
+
+        public StrequentCursor(Cursor cursor, int frequentStart, int[] frequentPositions) {
+            super(cursor);
+            mWrappedCursor = cursor;
+            mFrequentStart = frequentStart;
+            mFrequentPositions = frequentPositions;
+        }
+
+        /**
+         * Returns the position of the first frequently contacted row, which equals
+         * {@link #getCount()} if there is none.
+         */
+        public int getFrequentStart() {
+            return mFrequentStart;
+        }
+
+        @Override
+        public int getPosition() {
+            return mPosition;
+        }
+
+        @Override
+        public boolean moveToPosition(int position) {
+            final int count = getCount();
+            if (position >= count) {
+                mPosition = count;
+                mWrappedCursor.moveToPosition(mWrappedCursor.getCount());
+                return false;
+            }
+            if (position < 0) {
+                mPosition = -1;
+                mWrappedCursor.moveToPosition(-1);
+                return false;
+            }
+            mPosition = position;
+            return mWrappedCursor.moveToPosition(position < mFrequentStart
+                    ? position : mFrequentPositions[position - mFrequentStart]);
+        }
+
+        @Override
+        public boolean move(int offset) {
+            return moveToPosition(mPosition + offset);
+        }
+
+        @Override
+        public boolean moveToFirst() {
+            return moveToPosition(0);
+        }
+
+        @Override
+        public boolean moveToLast() {
+            return moveToPosition(getCount() - 1);
+        }
+
+        @Override
+        public boolean moveToNext() {
+            return moveToPosition(mPosition + 1);
+        }
+
+        @Override
+        public boolean moveToPrevious() {
+            return moveToPosition(mPosition - 1);
+        }
+
+        @Override
+        public boolean isFirst() {
+            return mPosition == 0 && getCount() != 0;
+        }
+
+        @Override
+        public boolean isLast() {
+            final int count = getCount();
+            return mPosition == count - 1 && count != 0;
+        }
+
+        @Override
+        public boolean isBeforeFirst() {
+            return getCount() == 0 || mPosition == -1;
+        }
+
+        @Override
+        public boolean isAfterLast() {
+            return getCount() == 0 || mPosition == getCount();
+        }
+    }
+}
@@ -64,41 +64,95 @@ public abstract class ContactsSource {
     public boolean readOnly;
 
     /**
-     * Set of {@link DataKind} supported by this source.
+     * The {@link DataKind} supported by this source. A published set is never changed
+     * again, so readers walk it without locking.
      */
-    private ArrayList<DataKind> mKinds = Lists.newArrayList();
+    private static final class Kinds {
+        /** Sorted by {@link DataKind#weight} once published. */
+        public final ArrayList<DataKind> list = Lists.newArrayList();
+        /** Lookup map of {@link #list} on {@link DataKind#mimeType}. */
+        public final HashMap<String, DataKind> byMimetype = Maps.newHashMap();
+
+        public void add(DataKind kind) {
+            list.add(kind);
+            byMimetype.put(kind.mimeType, kind);
+        }
+    }
+
+    /**
+     * Published kinds, replaced as a whole by every inflation.
+     */
+    private volatile Kinds mKinds = new Kinds();
 
     /**
-     * Lookup map of {@link #mKinds} on {@link DataKind#mimeType}.
+     * Kinds that {@link #inflate(Context, int)} is building, from scratch, while holding
+     * the monitor. Only the inflating thread sees them.
      */
-    private HashMap<String, DataKind> mMimeKinds = Maps.newHashMap();
+    private Kinds mInflatingKinds;
+    private int mInflatingLevel;
 
     public static final int LEVEL_NONE = 0;
     public static final int LEVEL_SUMMARY = 1;
     public static final int LEVEL_MIMETYPES = 2;
     public static final int LEVEL_CONSTRAINTS = 3;
 
-    private int mInflatedLevel = LEVEL_NONE;
+    /**
+     * Written after {@link #mKinds}, so that a reader that sees the requested level also
+     * sees the kinds inflated for it, without taking the monitor.
+     */
+    private volatile int mInflatedLevel = LEVEL_NONE;
 
-    public synchronized boolean isInflated(int inflateLevel) {
+    public boolean isInflated(int inflateLevel) {
         return mInflatedLevel >= inflateLevel;
     }
 
     /** @hide exposed for unit tests */
     public void setInflatedLevel(int inflateLevel) {
-        mInflatedLevel = inflateLevel;
+        if (isInflating()) {
+            // Published together with the kinds once inflation is done
+            mInflatingLevel = inflateLevel;
+        } else {
+            mInflatedLevel = inflateLevel;
+        }
     }
 
     /**
      * Ensure that this {@link ContactsSource} has been inflated to the
-     * requested level.
+     * requested level. Sources that are already inflated are checked without
+     * locking; only the actual inflation is serialized. Inflation builds a new
+     * set of kinds off to the side and publishes it when done, so readers never
+     * see kinds that are still being changed.
      */
-    public synchronized void ensureInflated(Context context, int inflateLevel) {
-        if (!isInflated(inflateLevel)) {
-            inflate(context, inflateLevel);
+    public void ensureInflated(Context context, int inflateLevel) {
+        if (isInflated(inflateLevel)) {
+            return;
+        }
+        synchronized (this) {
+            if (isInflated(inflateLevel)) {
+                return;
+            }
+            final Kinds kinds = new Kinds();
+            mInflatingKinds = kinds;
+            mInflatingLevel = mInflatedLevel;
+            try {
+                inflate(context, inflateLevel);
+                Collections.sort(kinds.list, sWeightComparator);
+                mKinds = kinds;
+                mInflatedLevel = mInflatingLevel;
+            } finally {
+                mInflatingKinds = null;
+            }
         }
     }
 
+    /**
+     * Returns true on the thread inflating this source. The racy read of
+     * {@link #mInflatingKinds} is only trusted while holding the monitor.
+     */
+    private boolean isInflating() {
+        return mInflatingKinds != null && Thread.holdsLock(this);
+    }
+
     /**
      * Perform the actual inflation to the requested level. Called by
      * {@link #ensureInflated(Context, int)} when inflation is needed.
@@ -111,9 +165,9 @@ public abstract class ContactsSource {
      * populate again from scratch.
      */
     public synchronized void invalidateCache() {
-        this.mKinds.clear();
-        this.mMimeKinds.clear();
-        setInflatedLevel(LEVEL_NONE);
+        mInflatedLevel = LEVEL_NONE;
+        // Replace instead of clearing, readers may still be walking the old ones
+        mKinds = new Kinds();
     }
 
     public CharSequence getDisplayLabel(Context context) {
@@ -156,9 +210,7 @@ public abstract class ContactsSource {
      * {@link DataKind#weight}.
      */
     public ArrayList<DataKind> getSortedDataKinds() {
-        // TODO: optimize by marking if already sorted
-        Collections.sort(mKinds, sWeightComparator);
-        return mKinds;
+        return mKinds.list;
     }
 
     /**
@@ -167,16 +219,30 @@ public abstract class ContactsSource {
      * {@link Sources#getKindOrFallback(String, String, Context, int)}.
      */
     public DataKind getKindForMimetype(String mimeType) {
-        return this.mMimeKinds.get(mimeType);
+        final Kinds kinds = isInflating() ? mInflatingKinds : mKinds;
+        return kinds.byMimetype.get(mimeType);
     }
 
     /**
      * Add given {@link DataKind} to list of those provided by this source.
+     * While inflating, the kind is added to the kinds being built. Otherwise a
+     * copy of the published kinds is published with the kind added.
      */
     public DataKind addKind(DataKind kind) {
         kind.resPackageName = this.resPackageName;
-        this.mKinds.add(kind);
-        this.mMimeKinds.put(kind.mimeType, kind);
+        synchronized (this) {
+            if (isInflating()) {
+                mInflatingKinds.add(kind);
+            } else {
+                final Kinds kinds = new Kinds();
+                for (DataKind existing : mKinds.list) {
+                    kinds.add(existing);
+                }
+                kinds.add(kind);
+                Collections.sort(kinds.list, sWeightComparator);
+                mKinds = kinds;
+            }
+        }
         return kind;
     }
 
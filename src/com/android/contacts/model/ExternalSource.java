@@ -16,19 +16,24 @@
 
 package com.android.contacts.model;
 
+import com.google.android.collect.Lists;
+
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
+import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.pm.ResolveInfo;
 import android.content.res.TypedArray;
 import android.content.res.XmlResourceParser;
 import android.util.AttributeSet;
+import android.util.Log;
 import android.util.Xml;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 /*
@@ -75,11 +80,25 @@ public class ExternalSource extends FallbackSource {
     private static final String ACTION_SYNC_ADAPTER = "android.content.SyncAdapter";
     private static final String METADATA_CONTACTS = "android.provider.CONTACTS_STRUCTURE";
 
+    private static final String TAG = "ExternalSource";
+
     private interface InflateTags {
         final String CONTACTS_SOURCE = "ContactsSource";
         final String CONTACTS_DATA_KIND = "ContactsDataKind";
     }
 
+    /**
+     * Everything we read from a single {@code ContactsDataKind} element. Kept separate from
+     * {@link DataKind} so that it can be persisted by {@link ExternalSourceCache}.
+     */
+    public static final class ParsedKind {
+        public String mimeType;
+        public int iconRes;
+        public String summaryColumn;
+        public String detailColumn;
+        public boolean detailSocialSummary;
+    }
+
     public ExternalSource(String resPackageName) {
         this.resPackageName = resPackageName;
         this.summaryResPackageName = resPackageName;
@@ -94,14 +113,31 @@ public class ExternalSource extends FallbackSource {
     public void inflate(Context context, int inflateLevel) {
         // Handle unknown sources by searching their package
         final PackageManager pm = context.getPackageManager();
+        final ExternalSourceCache cache = ExternalSourceCache.getInstance(context);
         final Intent syncAdapter = new Intent(ACTION_SYNC_ADAPTER);
         final List<ResolveInfo> matches = pm.queryIntentServices(syncAdapter,
                 PackageManager.GET_META_DATA);
         for (ResolveInfo info : matches) {
-            final XmlResourceParser parser = info.serviceInfo.loadXmlMetaData(pm,
-                    METADATA_CONTACTS);
-            if (parser == null) continue;
-            inflate(context, parser);
+            final String packageName = info.serviceInfo.packageName;
+            final String serviceName = info.serviceInfo.name;
+            final int versionCode = getVersionCode(pm, packageName);
+            List<ParsedKind> kinds = cache.get(packageName, serviceName, versionCode);
+            if (kinds == null) {
+                final XmlResourceParser parser = info.serviceInfo.loadXmlMetaData(pm,
+                        METADATA_CONTACTS);
+                if (parser == null) {
+                    // Remember that there is nothing to parse, too
+                    kinds = Lists.newArrayList();
+                } else {
+                    try {
+                        kinds = parse(context, parser);
+                    } finally {
+                        parser.close();
+                    }
+                }
+                cache.put(packageName, serviceName, versionCode, kinds);
+            }
+            addKinds(kinds);
         }
 
         // Bring in name and photo from fallback source, which are non-optional
@@ -111,12 +147,57 @@ public class ExternalSource extends FallbackSource {
         setInflatedLevel(inflateLevel);
     }
 
+    private static int getVersionCode(PackageManager pm, String packageName) {
+        try {
+            return pm.getPackageInfo(packageName, 0).versionCode;
+        } catch (NameNotFoundException e) {
+            Log.w(TAG, "Package disappeared while inflating: " + packageName);
+            return -1;
+        }
+    }
+
     /**
      * Inflate this {@link ContactsSource} from the given parser. This may only
      * load details matching the publicly-defined schema.
      */
     protected void inflate(Context context, XmlPullParser parser) {
+        addKinds(parse(context, parser));
+    }
+
+    /**
+     * Add a {@link DataKind} for each of the given parsed definitions.
+     */
+    protected void addKinds(List<ParsedKind> parsedKinds) {
+        for (ParsedKind parsed : parsedKinds) {
+            final DataKind kind = new DataKind();
+            kind.mimeType = parsed.mimeType;
+            kind.iconRes = parsed.iconRes;
+
+            if (parsed.summaryColumn != null) {
+                // Inflate a specific column as summary when requested
+                kind.actionHeader = new FallbackSource.SimpleInflater(parsed.summaryColumn);
+            }
+
+            if (parsed.detailSocialSummary) {
+                // Inflate social summary when requested
+                kind.actionBodySocial = true;
+            }
+
+            if (parsed.detailColumn != null) {
+                // Inflate specific column as summary
+                kind.actionBody = new FallbackSource.SimpleInflater(parsed.detailColumn);
+            }
+
+            addKind(kind);
+        }
+    }
+
+    /**
+     * Read all {@code ContactsDataKind} elements from the given parser.
+     */
+    private static ArrayList<ParsedKind> parse(Context context, XmlPullParser parser) {
         final AttributeSet attrs = Xml.asAttributeSet(parser);
+        final ArrayList<ParsedKind> kinds = Lists.newArrayList();
 
         try {
             int type;
@@ -145,43 +226,30 @@ public class ExternalSource extends FallbackSource {
 
                 final TypedArray a = context.obtainStyledAttributes(attrs,
                         android.R.styleable.ContactsDataKind);
-                final DataKind kind = new DataKind();
+                final ParsedKind kind = new ParsedKind();
 
                 kind.mimeType = a
                         .getString(com.android.internal.R.styleable.ContactsDataKind_mimeType);
                 kind.iconRes = a.getResourceId(
                         com.android.internal.R.styleable.ContactsDataKind_icon, -1);
-
-                final String summaryColumn = a
+                kind.summaryColumn = a
                         .getString(com.android.internal.R.styleable.ContactsDataKind_summaryColumn);
-                if (summaryColumn != null) {
-                    // Inflate a specific column as summary when requested
-                    kind.actionHeader = new FallbackSource.SimpleInflater(summaryColumn);
-                }
-
-                final String detailColumn = a
+                kind.detailColumn = a
                         .getString(com.android.internal.R.styleable.ContactsDataKind_detailColumn);
-                final boolean detailSocialSummary = a.getBoolean(
+                kind.detailSocialSummary = a.getBoolean(
                         com.android.internal.R.styleable.ContactsDataKind_detailSocialSummary,
                         false);
+                a.recycle();
 
-                if (detailSocialSummary) {
-                    // Inflate social summary when requested
-                    kind.actionBodySocial = true;
-                }
-
-                if (detailColumn != null) {
-                    // Inflate specific column as summary
-                    kind.actionBody = new FallbackSource.SimpleInflater(detailColumn);
-                }
-
-                addKind(kind);
+                kinds.add(kind);
             }
         } catch (XmlPullParserException e) {
             throw new IllegalStateException("Problem reading XML", e);
         } catch (IOException e) {
             throw new IllegalStateException("Problem reading XML", e);
         }
+
+        return kinds;
     }
 
     @Override
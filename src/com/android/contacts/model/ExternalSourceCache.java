@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.model;
+
+import com.google.android.collect.Lists;
+import com.google.android.collect.Maps;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Persistent cache of the {@link ExternalSource.ParsedKind} definitions that sync adapters
+ * publish through their {@code CONTACTS_STRUCTURE} XML meta-data. Entries are kept per
+ * package and version code, so that an upgraded package is parsed again, and are dropped
+ * explicitly by {@link Sources} whenever a package is added, removed or changed. Within a
+ * package the kinds are kept per sync adapter service, since a package may contain several
+ * of them and not all of them describe contacts.
+ * <p>
+ * The cache is loaded from disk once per process, which saves parsing the XML of every
+ * sync adapter the first time an {@link ExternalSource} is inflated after a cold start.
+ * Changes are written back on a background thread, changes made while a write is pending
+ * are written together.
+ */
+public class ExternalSourceCache {
+    private static final String TAG = "ExternalSourceCache";
+
+    private static final String FILE_NAME = "external_sources.cache";
+
+    /**
+     * Increment whenever the on-disk format or the meaning of its fields changes.
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    private static ExternalSourceCache sInstance;
+
+    private static final ExecutorService sWriteExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    final Thread thread = new Thread(r, TAG);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+
+    private final File mFile;
+    private HashMap<String, Entry> mEntries;
+
+    /**
+     * True while a write has been scheduled but hasn't taken its snapshot of
+     * {@link #mEntries} yet, so further changes can go with it.
+     */
+    private boolean mSaveScheduled;
+
+    private final Runnable mSaveRunnable = new Runnable() {
+        public void run() {
+            save();
+        }
+    };
+
+    /**
+     * The kinds of all parsed sync adapter services of one package version, by service
+     * class name. Immutable, so that a writer can use a snapshot of the entries.
+     */
+    private static final class Entry {
+        final int versionCode;
+        final HashMap<String, ArrayList<ExternalSource.ParsedKind>> kindsByService;
+
+        Entry(int versionCode, HashMap<String, ArrayList<ExternalSource.ParsedKind>> kinds) {
+            this.versionCode = versionCode;
+            this.kindsByService = kinds;
+        }
+    }
+
+    public static synchronized ExternalSourceCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ExternalSourceCache(
+                    new File(context.getApplicationContext().getCacheDir(), FILE_NAME));
+        }
+        return sInstance;
+    }
+
+    /* package */ ExternalSourceCache(File file) {
+        mFile = file;
+    }
+
+    /**
+     * Returns the cached kinds of the given sync adapter service, or null if the service
+     * has not been parsed yet or was parsed for a different version of its package.
+     */
+    public synchronized List<ExternalSource.ParsedKind> get(String packageName,
+            String serviceName, int versionCode) {
+        ensureLoaded();
+        final Entry entry = mEntries.get(packageName);
+        if (entry == null || entry.versionCode != versionCode) {
+            return null;
+        }
+        return entry.kindsByService.get(serviceName);
+    }
+
+    /**
+     * Stores the kinds parsed for the given sync adapter service of the given package
+     * version and schedules writing the cache to disk. Kinds cached for other versions of
+     * the package are dropped.
+     */
+    public synchronized void put(String packageName, String serviceName, int versionCode,
+            List<ExternalSource.ParsedKind> kinds) {
+        ensureLoaded();
+        final Entry previous = mEntries.get(packageName);
+        final HashMap<String, ArrayList<ExternalSource.ParsedKind>> kindsByService =
+                previous == null || previous.versionCode != versionCode
+                        ? new HashMap<String, ArrayList<ExternalSource.ParsedKind>>()
+                        : new HashMap<String, ArrayList<ExternalSource.ParsedKind>>(
+                                previous.kindsByService);
+        kindsByService.put(serviceName, new ArrayList<ExternalSource.ParsedKind>(kinds));
+        mEntries.put(packageName, new Entry(versionCode, kindsByService));
+        scheduleSave();
+    }
+
+    /**
+     * Drops the cached kinds of the given package, if any.
+     */
+    public synchronized void invalidate(String packageName) {
+        ensureLoaded();
+        if (mEntries.remove(packageName) != null) {
+            scheduleSave();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (mEntries != null) {
+            return;
+        }
+
+        mEntries = Maps.newHashMap();
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            if (in.readInt() != FORMAT_VERSION) {
+                // Written by a different version of this class, start over
+                return;
+            }
+            final int packageCount = in.readInt();
+            for (int i = 0; i < packageCount; i++) {
+                final String packageName = in.readUTF();
+                final int versionCode = in.readInt();
+                final int serviceCount = in.readInt();
+                final HashMap<String, ArrayList<ExternalSource.ParsedKind>> kindsByService =
+                        Maps.newHashMap();
+                for (int j = 0; j < serviceCount; j++) {
+                    final String serviceName = in.readUTF();
+                    final int kindCount = in.readInt();
+                    final ArrayList<ExternalSource.ParsedKind> kinds = Lists.newArrayList();
+                    for (int k = 0; k < kindCount; k++) {
+                        final ExternalSource.ParsedKind kind = new ExternalSource.ParsedKind();
+                        kind.mimeType = readNullableString(in);
+                        kind.iconRes = in.readInt();
+                        kind.summaryColumn = readNullableString(in);
+                        kind.detailColumn = readNullableString(in);
+                        kind.detailSocialSummary = in.readBoolean();
+                        kinds.add(kind);
+                    }
+                    kindsByService.put(serviceName, kinds);
+                }
+                mEntries.put(packageName, new Entry(versionCode, kindsByService));
+            }
+        } catch (FileNotFoundException e) {
+            // Nothing cached yet
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read " + mFile + ", discarding it", e);
+            mEntries.clear();
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private void scheduleSave() {
+        if (!mSaveScheduled) {
+            mSaveScheduled = true;
+            sWriteExecutor.execute(mSaveRunnable);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the entries to disk. Runs on the write thread, without holding
+     * the lock while writing, so that readers aren't blocked by the disk.
+     */
+    private void save() {
+        final HashMap<String, Entry> entries;
+        synchronized (this) {
+            mSaveScheduled = false;
+            entries = new HashMap<String, Entry>(mEntries);
+        }
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mFile)));
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+                final Entry entry = mapEntry.getValue();
+                out.writeUTF(mapEntry.getKey());
+                out.writeInt(entry.versionCode);
+                out.writeInt(entry.kindsByService.size());
+                for (Map.Entry<String, ArrayList<ExternalSource.ParsedKind>> service
+                        : entry.kindsByService.entrySet()) {
+                    out.writeUTF(service.getKey());
+                    out.writeInt(service.getValue().size());
+                    for (ExternalSource.ParsedKind kind : service.getValue()) {
+                        writeNullableString(out, kind.mimeType);
+                        out.writeInt(kind.iconRes);
+                        writeNullableString(out, kind.summaryColumn);
+                        writeNullableString(out, kind.detailColumn);
+                        out.writeBoolean(kind.detailSocialSummary);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write " + mFile, e);
+            mFile.delete();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Blocks until all writes scheduled so far have finished. Only for tests.
+     */
+    /* package */ void waitForPendingWrites() throws InterruptedException {
+        try {
+            sWriteExecutor.submit(new Runnable() {
+                public void run() {
+                }
+            }).get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value)
+            throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+}
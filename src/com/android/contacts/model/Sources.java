@@ -17,6 +17,8 @@
 package com.android.contacts.model;
 
 import com.android.contacts.model.ContactsSource.DataKind;
+import com.android.contacts.util.LocalizedNameResolver;
+import com.android.contacts.util.ResolveCache;
 import com.google.android.collect.Lists;
 import com.google.android.collect.Maps;
 import com.google.android.collect.Sets;
@@ -43,6 +45,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Singleton holder for all parsed {@link ContactsSource} available on the
@@ -57,23 +60,77 @@ public class Sources extends BroadcastReceiver implements OnAccountsUpdateListen
 
     private ContactsSource mFallbackSource = null;
 
-    private HashMap<String, ContactsSource> mSources = Maps.newHashMap();
-    private HashSet<String> mKnownPackages = Sets.newHashSet();
+    /**
+     * Immutable view of the known sources. Readers only ever dereference the
+     * current instance; writers build a new one and publish it atomically.
+     */
+    private static final class Snapshot {
+        public final HashMap<String, ContactsSource> sources;
+        public final HashSet<String> knownPackages;
+
+        /**
+         * Results of {@link Sources#getKindOrFallback}, keyed by account type
+         * and then by MIME-type. Filled lazily, and thrown away together with
+         * this snapshot whenever sources change or are invalidated.
+         */
+        public final ConcurrentHashMap<String, ConcurrentHashMap<String, ResolvedKind>>
+                resolvedKinds =
+                        new ConcurrentHashMap<String, ConcurrentHashMap<String, ResolvedKind>>();
+
+        public Snapshot(HashMap<String, ContactsSource> sources,
+                HashSet<String> knownPackages) {
+            this.sources = sources;
+            this.knownPackages = knownPackages;
+        }
+    }
 
-    private static SoftReference<Sources> sInstance = null;
+    /**
+     * Cached outcome of resolving a MIME-type for an account type, including
+     * the fallback and negative results.
+     */
+    private static final class ResolvedKind {
+        /** Resolved kind, or null if neither the source nor the fallback know it. */
+        public final DataKind kind;
+        /** Level the sources were inflated to when this was resolved. */
+        public final int inflateLevel;
+
+        public ResolvedKind(DataKind kind, int inflateLevel) {
+            this.kind = kind;
+            this.inflateLevel = inflateLevel;
+        }
+    }
+
+    /**
+     * Stand-in for a null account type in {@link Snapshot#resolvedKinds},
+     * which doesn't allow null keys.
+     */
+    private static final String NULL_ACCOUNT_TYPE = "";
+
+    private volatile Snapshot mSnapshot = new Snapshot(
+            Maps.<String, ContactsSource>newHashMap(), Sets.<String>newHashSet());
+
+    private static volatile SoftReference<Sources> sInstance = null;
 
     /**
      * Requests the singleton instance of {@link Sources} with data bound from
      * the available authenticators. This method blocks until its interaction
      * with {@link AccountManager} is finished, so don't call from a UI thread.
      */
-    public static synchronized Sources getInstance(Context context) {
-        Sources sources = sInstance == null ? null : sInstance.get();
-        if (sources == null) {
-            sources = new Sources(context);
-            sInstance = new SoftReference<Sources>(sources);
+    public static Sources getInstance(Context context) {
+        SoftReference<Sources> ref = sInstance;
+        Sources sources = ref == null ? null : ref.get();
+        if (sources != null) {
+            return sources;
+        }
+        synchronized (Sources.class) {
+            ref = sInstance;
+            sources = ref == null ? null : ref.get();
+            if (sources == null) {
+                sources = new Sources(context);
+                sInstance = new SoftReference<Sources>(sources);
+            }
+            return sources;
         }
-        return sources;
     }
 
     /**
@@ -115,9 +172,20 @@ public class Sources extends BroadcastReceiver implements OnAccountsUpdateListen
         }
     }
 
-    protected void addSource(ContactsSource source) {
-        mSources.put(source.accountType, source);
-        mKnownPackages.add(source.resPackageName);
+    protected synchronized void addSource(ContactsSource source) {
+        final Snapshot current = mSnapshot;
+        final HashMap<String, ContactsSource> sources = Maps.newHashMap();
+        final HashSet<String> knownPackages = Sets.newHashSet();
+        sources.putAll(current.sources);
+        knownPackages.addAll(current.knownPackages);
+        addSource(sources, knownPackages, source);
+        mSnapshot = new Snapshot(sources, knownPackages);
+    }
+
+    private static void addSource(HashMap<String, ContactsSource> sources,
+            HashSet<String> knownPackages, ContactsSource source) {
+        sources.put(source.accountType, source);
+        knownPackages.add(source.resPackageName);
     }
 
     /** {@inheritDoc} */
@@ -139,9 +207,19 @@ public class Sources extends BroadcastReceiver implements OnAccountsUpdateListen
                 final String packageName = intent.getData().getSchemeSpecificPart();
                 pkgList = new String[] { packageName };
             }
+            // Any package may offer to handle QuickContact actions
+            ResolveCache.invalidate();
+
             if (pkgList != null) {
+                final ExternalSourceCache externalSourceCache =
+                        ExternalSourceCache.getInstance(context);
                 for (String packageName : pkgList) {
-                    final boolean knownPackage = mKnownPackages.contains(packageName);
+                    // Any persisted definitions of this package may be outdated now
+                    externalSourceCache.invalidate(packageName);
+                    LocalizedNameResolver.invalidate(packageName);
+
+                    final boolean knownPackage =
+                            mSnapshot.knownPackages.contains(packageName);
                     if (knownPackage) {
                         // Invalidate cache of existing source
                         invalidateCache(packageName);
@@ -152,24 +230,31 @@ public class Sources extends BroadcastReceiver implements OnAccountsUpdateListen
                 }
             }
         } else if (Intent.ACTION_LOCALE_CHANGED.equals(action)) {
+            LocalizedNameResolver.invalidateAll();
+            ResolveCache.invalidate();
             invalidateAllCache();
         }
     }
 
-    protected void invalidateCache(String packageName) {
-        for (ContactsSource source : mSources.values()) {
+    protected synchronized void invalidateCache(String packageName) {
+        final Snapshot current = mSnapshot;
+        for (ContactsSource source : current.sources.values()) {
             if (TextUtils.equals(packageName, source.resPackageName)) {
                 // Invalidate any cache for the changed package
                 source.invalidateCache();
             }
         }
+        // Resolved kinds may point into the dropped data, so start over
+        mSnapshot = new Snapshot(current.sources, current.knownPackages);
     }
 
-    protected void invalidateAllCache() {
+    protected synchronized void invalidateAllCache() {
+        final Snapshot current = mSnapshot;
         mFallbackSource.invalidateCache();
-        for (ContactsSource source : mSources.values()) {
+        for (ContactsSource source : current.sources.values()) {
             source.invalidateCache();
         }
+        mSnapshot = new Snapshot(current.sources, current.knownPackages);
     }
 
     /** {@inheritDoc} */
@@ -180,11 +265,12 @@ public class Sources extends BroadcastReceiver implements OnAccountsUpdateListen
 
     /**
      * Blocking call to load all {@link AuthenticatorDescription} known by the
-     * {@link AccountManager} on the system.
+     * {@link AccountManager} on the system. Readers keep using the previous
+     * sources until the new set is published in one step.
      */
     protected synchronized void queryAccounts() {
-        mSources.clear();
-        mKnownPackages.clear();
+        final HashMap<String, ContactsSource> sources = Maps.newHashMap();
+        final HashSet<String> knownPackages = Sets.newHashSet();
 
         final AccountManager am = mAccountManager;
         final IContentService cs = ContentResolver.getContentService();
@@ -221,11 +307,13 @@ public class Sources extends BroadcastReceiver implements OnAccountsUpdateListen
                 source.titleRes = auth.labelId;
                 source.iconRes = auth.iconId;
 
-                addSource(source);
+                addSource(sources, knownPackages, source);
             }
         } catch (RemoteException e) {
             Log.w(TAG, "Problem loading accounts: " + e.toString());
         }
+
+        mSnapshot = new Snapshot(sources, knownPackages);
     }
 
     /**
@@ -270,13 +358,43 @@ public class Sources extends BroadcastReceiver implements OnAccountsUpdateListen
      * direct match found, we try searching {@link #mFallbackSource}.
      * When fourceRefresh is set to true, cache is refreshed and inflation of each
      * EditField will occur.
+     * <p>
+     * Results, including misses, are remembered until the sources change, so
+     * repeated calls for the same pair are a lookup without any inflation checks.
      */
     public DataKind getKindOrFallback(String accountType, String mimeType, Context context,
             int inflateLevel) {
+        final Snapshot snapshot = mSnapshot;
+        if (mimeType == null) {
+            return resolveKindOrFallback(snapshot, accountType, mimeType, context, inflateLevel);
+        }
+        final String accountKey = accountType == null ? NULL_ACCOUNT_TYPE : accountType;
+
+        ConcurrentHashMap<String, ResolvedKind> kinds = snapshot.resolvedKinds.get(accountKey);
+        if (kinds != null) {
+            final ResolvedKind resolved = kinds.get(mimeType);
+            if (resolved != null && resolved.inflateLevel >= inflateLevel) {
+                return resolved.kind;
+            }
+        } else {
+            kinds = new ConcurrentHashMap<String, ResolvedKind>();
+            final ConcurrentHashMap<String, ResolvedKind> existing =
+                    snapshot.resolvedKinds.putIfAbsent(accountKey, kinds);
+            if (existing != null) kinds = existing;
+        }
+
+        final DataKind kind = resolveKindOrFallback(snapshot, accountType, mimeType, context,
+                inflateLevel);
+        kinds.put(mimeType, new ResolvedKind(kind, inflateLevel));
+        return kind;
+    }
+
+    private DataKind resolveKindOrFallback(Snapshot snapshot, String accountType,
+            String mimeType, Context context, int inflateLevel) {
         DataKind kind = null;
 
         // Try finding source and kind matching request
-        final ContactsSource source = mSources.get(accountType);
+        final ContactsSource source = snapshot.sources.get(accountType);
         if (source != null) {
             source.ensureInflated(context, inflateLevel);
             kind = source.getKindForMimetype(mimeType);
@@ -300,7 +418,7 @@ public class Sources extends BroadcastReceiver implements OnAccountsUpdateListen
      */
     public ContactsSource getInflatedSource(String accountType, int inflateLevel) {
         // Try finding specific source, otherwise use fallback
-        ContactsSource source = mSources.get(accountType);
+        ContactsSource source = mSnapshot.sources.get(accountType);
         if (source == null) source = mFallbackSource;
 
         if (source.isInflated(inflateLevel)) {
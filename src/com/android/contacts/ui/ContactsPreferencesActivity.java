@@ -73,6 +73,13 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Shows a list of all available {@link Groups} available, letting the user
@@ -318,10 +325,18 @@ public final class ContactsPreferencesActivity extends ExpandableListActivity im
 
     /**
      * Background operation to build set of {@link AccountDisplay} for each
-     * {@link Sources#getAccounts(boolean)} that provides groups.
+     * {@link Sources#getAccounts(boolean)} that provides groups. The accounts
+     * are queried in parallel and published in their original order as soon as
+     * all accounts before them are done, so that the list only ever grows at
+     * its end.
      */
     private static class QueryGroupsTask extends
-            WeakAsyncTask<Void, Void, AccountSet, ContactsPreferencesActivity> {
+            WeakAsyncTask<Void, AccountSet, AccountSet, ContactsPreferencesActivity> {
+        /**
+         * Upper bound of accounts queried at the same time.
+         */
+        private static final int MAX_PARALLEL_QUERIES = 4;
+
         public QueryGroupsTask(ContactsPreferencesActivity target) {
             super(target);
         }
@@ -332,16 +347,52 @@ public final class ContactsPreferencesActivity extends ExpandableListActivity im
             final Context context = target;
             final Sources sources = Sources.getInstance(context);
             final ContentResolver resolver = context.getContentResolver();
+            final ArrayList<Account> sourceAccounts = sources.getAccounts(false);
 
-            // Inflate groups entry for each account
             final AccountSet accounts = new AccountSet();
-            for (Account account : sources.getAccounts(false)) {
-                accounts.add(new AccountDisplay(resolver, account.name, account.type));
+            if (sourceAccounts.isEmpty()) {
+                return accounts;
+            }
+
+            // Inflate groups entry for each account, one task per account
+            final ExecutorService executor = Executors.newFixedThreadPool(
+                    Math.min(sourceAccounts.size(), MAX_PARALLEL_QUERIES));
+            try {
+                final ArrayList<Future<AccountDisplay>> results = Lists.newArrayList();
+                for (final Account account : sourceAccounts) {
+                    results.add(executor.submit(new Callable<AccountDisplay>() {
+                        public AccountDisplay call() {
+                            return new AccountDisplay(resolver, account.name, account.type);
+                        }
+                    }));
+                }
+
+                for (Future<AccountDisplay> result : results) {
+                    accounts.add(result.get());
+                    if (accounts.size() < results.size()) {
+                        // Hand out a copy, the adapter must not see later additions
+                        final AccountSet progress = new AccountSet();
+                        progress.addAll(accounts);
+                        publishProgress(progress);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Problem loading groups", e.getCause());
+            } finally {
+                executor.shutdownNow();
             }
 
             return accounts;
         }
 
+        @Override
+        protected void onProgressUpdate(ContactsPreferencesActivity target,
+                AccountSet... values) {
+            target.mAdapter.setAccounts(values[0]);
+        }
+
         @Override
         protected void onPostExecute(ContactsPreferencesActivity target, AccountSet result) {
             target.mAdapter.setAccounts(result);
@@ -467,6 +518,32 @@ public final class ContactsPreferencesActivity extends ExpandableListActivity im
             }
         }
 
+        public boolean isUngrouped() {
+            return mUngrouped;
+        }
+
+        /**
+         * Returns the values of an existing row that actually differ from what is
+         * stored, so that toggling a checkbox back and forth doesn't cause a write.
+         * Returns null if nothing changed.
+         */
+        public ContentValues getChangedValues() {
+            if (!isUpdate()) return null;
+
+            ContentValues changed = null;
+            for (String key : mAfter.keySet()) {
+                final Object after = mAfter.get(key);
+                final Object before = mBefore.get(key);
+                if (after == null ? before == null : after.toString().equals(
+                        before == null ? null : before.toString())) {
+                    continue;
+                }
+                if (changed == null) changed = new ContentValues();
+                changed.put(key, mAfter.getAsString(key));
+            }
+            return changed;
+        }
+
         /**
          * Build a possible {@link ContentProviderOperation} to persist any
          * changes to the {@link Groups} or {@link Settings} row described by
@@ -476,6 +553,9 @@ public final class ContactsPreferencesActivity extends ExpandableListActivity im
             if (isNoop()) {
                 return null;
             } else if (isUpdate()) {
+                final ContentValues changed = getChangedValues();
+                if (changed == null) return null;
+
                 // When has changes and "before" exists, then "update"
                 final Builder builder = ContentProviderOperation
                         .newUpdate(mUngrouped ? Settings.CONTENT_URI : addCallerIsSyncAdapterParameter(Groups.CONTENT_URI));
@@ -488,7 +568,7 @@ public final class ContactsPreferencesActivity extends ExpandableListActivity im
                 } else {
                     builder.withSelection(Groups._ID + "=" + this.getId(), null);
                 }
-                builder.withValues(mAfter);
+                builder.withValues(changed);
                 return builder.build();
             } else if (isInsert() && mUngrouped) {
                 // Only allow inserts for Settings
@@ -508,6 +588,17 @@ public final class ContactsPreferencesActivity extends ExpandableListActivity im
 	        .build();
     }
 
+    /**
+     * Upper bound of group ids in the selection of a single operation.
+     */
+    private static final int MAX_IDS_PER_OPERATION = 500;
+
+    /**
+     * Number of operations applied per batch when saving, so that the provider
+     * can serve other callers in between.
+     */
+    private static final int MAX_OPERATIONS_PER_BATCH = 50;
+
     /**
      * {@link Comparator} to sort by {@link Groups#_ID}.
      */
@@ -639,16 +730,48 @@ public final class ContactsPreferencesActivity extends ExpandableListActivity im
 
         /**
          * Build set of {@link ContentProviderOperation} to persist any user
-         * changes to {@link GroupDelta} rows under this {@link Account}.
+         * changes to {@link GroupDelta} rows under this {@link Account}. Groups
+         * sharing the same change are written by updates on their ids, so that
+         * groups this screen hasn't loaded are never touched.
          */
         public void buildDiff(ArrayList<ContentProviderOperation> diff) {
-            for (GroupDelta group : mSyncedGroups) {
-                final ContentProviderOperation oper = group.buildDiff();
-                if (oper != null) diff.add(oper);
+            final LinkedHashMap<ContentValues, ArrayList<Long>> idsByChange =
+                    new LinkedHashMap<ContentValues, ArrayList<Long>>();
+            for (int i = 0; i < 2; i++) {
+                for (GroupDelta group : i == 0 ? mSyncedGroups : mUnsyncedGroups) {
+                    if (group.isUngrouped()) {
+                        final ContentProviderOperation oper = group.buildDiff();
+                        if (oper != null) diff.add(oper);
+                        continue;
+                    }
+
+                    final ContentValues changed = group.getChangedValues();
+                    if (changed == null) continue;
+                    ArrayList<Long> ids = idsByChange.get(changed);
+                    if (ids == null) {
+                        ids = Lists.newArrayList();
+                        idsByChange.put(changed, ids);
+                    }
+                    ids.add(group.getId());
+                }
             }
-            for (GroupDelta group : mUnsyncedGroups) {
-                final ContentProviderOperation oper = group.buildDiff();
-                if (oper != null) diff.add(oper);
+
+            final Uri groupsUri = addCallerIsSyncAdapterParameter(Groups.CONTENT_URI);
+            for (Map.Entry<ContentValues, ArrayList<Long>> entry : idsByChange.entrySet()) {
+                final ArrayList<Long> ids = entry.getValue();
+                for (int start = 0; start < ids.size(); start += MAX_IDS_PER_OPERATION) {
+                    final int end = Math.min(start + MAX_IDS_PER_OPERATION, ids.size());
+                    final StringBuilder selection = new StringBuilder(Groups._ID + " IN (");
+                    for (int i = start; i < end; i++) {
+                        if (i != start) selection.append(',');
+                        selection.append(ids.get(i));
+                    }
+                    selection.append(')');
+                    diff.add(ContentProviderOperation.newUpdate(groupsUri)
+                            .withSelection(selection.toString(), null)
+                            .withValues(entry.getKey())
+                            .build());
+                }
             }
         }
     }
@@ -1011,7 +1134,7 @@ public final class ContactsPreferencesActivity extends ExpandableListActivity im
      * showing spinner dialog to user while updating.
      */
     public static class UpdateTask extends
-            WeakAsyncTask<AccountSet, Void, Void, Activity> {
+            WeakAsyncTask<AccountSet, Integer, Void, Activity> {
         private WeakReference<ProgressDialog> mProgress;
 
         public UpdateTask(Activity target) {
@@ -1023,8 +1146,13 @@ public final class ContactsPreferencesActivity extends ExpandableListActivity im
         protected void onPreExecute(Activity target) {
             final Context context = target;
 
-            mProgress = new WeakReference<ProgressDialog>(ProgressDialog.show(context, null,
-                    context.getText(R.string.savingDisplayGroups)));
+            final ProgressDialog progress = new ProgressDialog(context);
+            progress.setMessage(context.getText(R.string.savingDisplayGroups));
+            progress.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+            progress.setIndeterminate(true);
+            progress.setCancelable(false);
+            progress.show();
+            mProgress = new WeakReference<ProgressDialog>(progress);
 
             // Before starting this task, start an empty service to protect our
             // process from being reclaimed by the system.
@@ -1039,10 +1167,18 @@ public final class ContactsPreferencesActivity extends ExpandableListActivity im
             final ContentResolver resolver = context.getContentResolver();
 
             try {
-                // Build changes and persist in transaction
+                // Build changes and persist them in chunks, each in its own transaction
                 final AccountSet set = params[0];
                 final ArrayList<ContentProviderOperation> diff = set.buildDiff();
-                resolver.applyBatch(ContactsContract.AUTHORITY, diff);
+                final int size = diff.size();
+                for (int start = 0; start < size; start += MAX_OPERATIONS_PER_BATCH) {
+                    final int end = Math.min(start + MAX_OPERATIONS_PER_BATCH, size);
+                    resolver.applyBatch(ContactsContract.AUTHORITY,
+                            new ArrayList<ContentProviderOperation>(diff.subList(start, end)));
+                    if (end < size) {
+                        publishProgress(end, size);
+                    }
+                }
             } catch (RemoteException e) {
                 Log.e(TAG, "Problem saving display groups", e);
             } catch (OperationApplicationException e) {
@@ -1052,6 +1188,17 @@ public final class ContactsPreferencesActivity extends ExpandableListActivity im
             return null;
         }
 
+        /** {@inheritDoc} */
+        @Override
+        protected void onProgressUpdate(Activity target, Integer... values) {
+            final ProgressDialog dialog = mProgress.get();
+            if (dialog != null) {
+                dialog.setIndeterminate(false);
+                dialog.setMax(values[1]);
+                dialog.setProgress(values[0]);
+            }
+        }
+
         /** {@inheritDoc} */
         @Override
         protected void onPostExecute(Activity target, Void result) {
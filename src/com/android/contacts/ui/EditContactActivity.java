@@ -68,6 +68,7 @@ import android.provider.ContactsContract.Contacts;
 import android.provider.ContactsContract.RawContacts;
 import android.provider.ContactsContract.CommonDataKinds.Email;
 import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.provider.ContactsContract.CommonDataKinds.Photo;
 import android.provider.ContactsContract.Contacts.Data;
 import android.util.Log;
 import android.view.ContextThemeWrapper;
@@ -115,6 +116,8 @@ public final class EditContactActivity extends Activity
     private static final String KEY_CURRENT_PHOTO_FILE = "currentphotofile";
     private static final String KEY_QUERY_SELECTION = "queryselection";
     private static final String KEY_CONTACT_ID_FOR_JOIN = "contactidforjoin";
+    private static final String KEY_PENDING_PHOTOS = "pendingphotos";
+    private static final String KEY_PENDING_SAVE_MODE = "pendingsavemode";
 
     /** The result code when view activity should close after edit returns */
     public static final int RESULT_CLOSE_VIEW_ACTIVITY = 777;
@@ -164,6 +167,14 @@ public final class EditContactActivity extends Activity
 
     private ViewIdGenerator mViewIdGenerator;
 
+    private PendingPhotos mPendingPhotos;
+
+    /**
+     * Save mode of a save that waits for {@link #mPendingPhotos}, or -1.
+     */
+    private int mPendingSaveMode = -1;
+    private ProgressDialog mPendingSaveProgress;
+
     @Override
     protected void onCreate(Bundle icicle) {
         super.onCreate(icicle);
@@ -174,6 +185,7 @@ public final class EditContactActivity extends Activity
         setContentView(R.layout.act_edit);
 
         mDialogManager = new DialogManager(this, DIALOG_VIEW_DIALOGS_ID1, DIALOG_VIEW_DIALOGS_ID2);
+        mPendingPhotos = new PendingPhotos(new PhotoEncodedListener());
 
         // Build editor and listen for photo requests
         mContent = (LinearLayout) findViewById(R.id.editors);
@@ -217,6 +229,13 @@ public final class EditContactActivity extends Activity
         mActivityActive = false;
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mPendingPhotos.clear();
+        dismissDialog(mPendingSaveProgress);
+    }
+
     private static class QueryEntitiesTask extends
             WeakAsyncTask<Intent, Void, EntitySet, EditContactActivity> {
 
@@ -298,6 +317,8 @@ public final class EditContactActivity extends Activity
         }
         outState.putString(KEY_QUERY_SELECTION, mQuerySelection);
         outState.putLong(KEY_CONTACT_ID_FOR_JOIN, mContactIdForJoin);
+        mPendingPhotos.saveInstanceState(outState, KEY_PENDING_PHOTOS);
+        outState.putInt(KEY_PENDING_SAVE_MODE, mPendingSaveMode);
         super.onSaveInstanceState(outState);
     }
 
@@ -314,9 +335,16 @@ public final class EditContactActivity extends Activity
         }
         mQuerySelection = savedInstanceState.getString(KEY_QUERY_SELECTION);
         mContactIdForJoin = savedInstanceState.getLong(KEY_CONTACT_ID_FOR_JOIN);
+        mPendingPhotos.restoreInstanceState(savedInstanceState, KEY_PENDING_PHOTOS);
 
         bindEditors();
 
+        final int pendingSaveMode = savedInstanceState.getInt(KEY_PENDING_SAVE_MODE, -1);
+        if (pendingSaveMode != -1) {
+            // The user saved while photos were still encoding, carry on with that save
+            doSaveAction(pendingSaveMode);
+        }
+
         super.onRestoreInstanceState(savedInstanceState);
     }
 
@@ -436,6 +464,11 @@ public final class EditContactActivity extends Activity
 
             mContent.addView(editor);
             editor.setState(entity, source, mViewIdGenerator);
+
+            final Bitmap pendingPhoto = mPendingPhotos.get(rawContactId);
+            if (pendingPhoto != null) {
+                photoEditor.setPendingPhoto(pendingPhoto);
+            }
         }
 
         // Show editor now that we've loaded state
@@ -534,6 +567,7 @@ public final class EditContactActivity extends Activity
                 case 1:
                     // Remove the photo
                     mEditor.setPhotoBitmap(null);
+                    mPendingPhotos.remove(mRawContactId);
                     break;
 
                 case 2:
@@ -585,6 +619,7 @@ public final class EditContactActivity extends Activity
                 if (requestingEditor != null) {
                     final Bitmap photo = data.getParcelableExtra("data");
                     requestingEditor.setPhotoBitmap(photo);
+                    mPendingPhotos.put(mRawContactIdRequestingPhoto, photo);
                     mRawContactIdRequestingPhoto = -1;
                 } else {
                     // The contact that requested the photo is no longer present.
@@ -785,16 +820,54 @@ public final class EditContactActivity extends Activity
         }
 
         mStatus = STATUS_SAVING;
+        if (!mPendingPhotos.isEmpty()) {
+            // Photos are encoded in the background, save once they are part of the state
+            mPendingSaveProgress = ProgressDialog.show(this, null,
+                    getText(R.string.savingContact));
+            mPendingSaveMode = saveMode;
+            return true;
+        }
+
         final PersistTask task = new PersistTask(this, saveMode);
         task.execute(mState);
 
         return true;
     }
 
+    /**
+     * Puts photos into the state once they have been encoded, and runs a save that
+     * waited for them.
+     */
+    private class PhotoEncodedListener implements PendingPhotos.Listener {
+        public void onPhotoEncoded(long rawContactId, byte[] photoBytes) {
+            final EntityDelta state = mState == null ? null
+                    : mState.getByRawContactId(rawContactId);
+            final ValuesDelta entry = state == null ? null
+                    : state.getPrimaryEntry(Photo.CONTENT_ITEM_TYPE);
+            if (photoBytes == null) {
+                Toast.makeText(EditContactActivity.this, R.string.attachPhotoErrorToast,
+                        Toast.LENGTH_LONG).show();
+            } else if (entry != null) {
+                entry.put(Photo.PHOTO, photoBytes);
+            }
+
+            if (mPendingSaveMode != -1 && mPendingPhotos.isEmpty()) {
+                final int saveMode = mPendingSaveMode;
+                mPendingSaveMode = -1;
+                dismissDialog(mPendingSaveProgress);
+                mPendingSaveProgress = null;
+                mStatus = STATUS_EDITING;
+                doSaveAction(saveMode);
+            }
+        }
+    }
+
     private class DeleteClickListener implements DialogInterface.OnClickListener {
 
         public void onClick(DialogInterface dialog, int which) {
             Sources sources = Sources.getInstance(EditContactActivity.this);
+            // Photos don't matter anymore, don't wait for them
+            mPendingPhotos.clear();
             // Mark all raw contacts for deletion
             for (EntityDelta delta : mState) {
                 delta.markDeleted();
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.ui;
+
+import com.android.contacts.util.PhotoEncoder;
+import com.google.android.collect.Maps;
+
+import android.graphics.Bitmap;
+import android.os.Bundle;
+import android.os.Handler;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Photos that the user picked for raw contacts in the editor and that {@link PhotoEncoder}
+ * is still encoding, by raw contact id. The editor owns these rather than its editor views,
+ * which are rebound and recycled while encoding runs, and hands the bytes to a
+ * {@link Listener} on the UI thread once they are ready.
+ * <p>
+ * The photos are kept across configuration changes and process death through
+ * {@link #saveInstanceState(Bundle, String)} and {@link #restoreInstanceState(Bundle, String)},
+ * which encodes them again.
+ *
+ * <p>This class is not thread safe, use it from the UI thread only.
+ */
+public final class PendingPhotos {
+    private static final String TAG = "PendingPhotos";
+
+    public interface Listener {
+        /**
+         * Called on the UI thread when the photo of the given raw contact has been encoded.
+         * It has been removed from the pending photos already.
+         *
+         * @param photoBytes the encoded photo, or null if encoding failed
+         */
+        public void onPhotoEncoded(long rawContactId, byte[] photoBytes);
+    }
+
+    private final Handler mHandler = new Handler();
+    private final HashMap<Long, PendingPhoto> mPhotos = Maps.newHashMap();
+    private final Listener mListener;
+
+    public PendingPhotos(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Starts encoding the given photo for the given raw contact, replacing any photo that
+     * is still being encoded for it.
+     */
+    public void put(long rawContactId, Bitmap photo) {
+        remove(rawContactId);
+        final PendingPhoto pending = new PendingPhoto(rawContactId, photo);
+        mPhotos.put(rawContactId, pending);
+        PhotoEncoder.encodeAsync(pending);
+    }
+
+    /**
+     * Returns the photo that is still being encoded for the given raw contact, or null.
+     */
+    public Bitmap get(long rawContactId) {
+        final PendingPhoto pending = mPhotos.get(rawContactId);
+        return pending == null ? null : pending.mPhoto;
+    }
+
+    /**
+     * Stops encoding the photo of the given raw contact, for example because the user
+     * removed it again. The {@link Listener} won't be told about it.
+     */
+    public void remove(long rawContactId) {
+        final PendingPhoto pending = mPhotos.remove(rawContactId);
+        if (pending != null) {
+            pending.cancel(false);
+        }
+    }
+
+    /**
+     * Stops encoding all photos, usually because the editor goes away.
+     */
+    public void clear() {
+        for (PendingPhoto pending : mPhotos.values()) {
+            pending.cancel(false);
+        }
+        mPhotos.clear();
+    }
+
+    public boolean isEmpty() {
+        return mPhotos.isEmpty();
+    }
+
+    /**
+     * Stores the photos that haven't been encoded yet under the given key.
+     */
+    public void saveInstanceState(Bundle outState, String key) {
+        if (mPhotos.isEmpty()) {
+            return;
+        }
+        final Bundle photos = new Bundle();
+        for (PendingPhoto pending : mPhotos.values()) {
+            photos.putParcelable(String.valueOf(pending.mRawContactId), pending.mPhoto);
+        }
+        outState.putBundle(key, photos);
+    }
+
+    /**
+     * Encodes the photos stored by {@link #saveInstanceState(Bundle, String)} again.
+     */
+    public void restoreInstanceState(Bundle savedState, String key) {
+        final Bundle photos = savedState.getBundle(key);
+        if (photos == null) {
+            return;
+        }
+        for (String rawContactId : photos.keySet()) {
+            final Bitmap photo = photos.getParcelable(rawContactId);
+            put(Long.parseLong(rawContactId), photo);
+        }
+    }
+
+    private void onDone(PendingPhoto pending) {
+        if (mPhotos.get(pending.mRawContactId) != pending) {
+            // Replaced or removed meanwhile
+            return;
+        }
+        mPhotos.remove(pending.mRawContactId);
+
+        byte[] photoBytes = null;
+        try {
+            photoBytes = pending.get();
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Interrupted while encoding photo");
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Unable to serialize photo: " + e.getCause());
+        }
+        mListener.onPhotoEncoded(pending.mRawContactId, photoBytes);
+    }
+
+    /**
+     * Photo that is being encoded for a specific raw contact. Reports back on the UI
+     * thread, where {@link #get()} doesn't block anymore.
+     */
+    private final class PendingPhoto extends FutureTask<byte[]> {
+        private final long mRawContactId;
+        private final Bitmap mPhoto;
+
+        public PendingPhoto(long rawContactId, Bitmap photo) {
+            super(PhotoEncoder.newEncoder(photo, PhotoEncoder.DEFAULT_MAX_BYTES));
+            mRawContactId = rawContactId;
+            mPhoto = photo;
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                return;
+            }
+            mHandler.post(new Runnable() {
+                public void run() {
+                    onDone(PendingPhoto.this);
+                }
+            });
+        }
+    }
+}
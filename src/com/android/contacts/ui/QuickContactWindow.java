@@ -27,18 +27,16 @@ import com.android.contacts.ui.widget.CheckableImageView;
 import com.android.contacts.util.Constants;
 import com.android.contacts.util.DataStatus;
 import com.android.contacts.util.NotifyingAsyncQueryHandler;
+import com.android.contacts.util.ResolveCache;
 import com.android.internal.policy.PolicyManager;
-import com.google.android.collect.Sets;
 
 import android.content.ActivityNotFoundException;
+import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
-import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
-import android.content.pm.ResolveInfo;
 import android.content.res.Resources;
 import android.database.Cursor;
 import android.graphics.Bitmap;
@@ -46,6 +44,8 @@ import android.graphics.BitmapFactory;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.SystemClock;
 import android.provider.ContactsContract.Contacts;
 import android.provider.ContactsContract.Data;
 import android.provider.ContactsContract.QuickContact;
@@ -90,13 +90,14 @@ import android.widget.RelativeLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -233,22 +234,54 @@ public class QuickContactWindow implements Window.Callback,
             Website.CONTENT_ITEM_TYPE,
     };
 
+    private static final int TOKEN_DATA = 1;
+
     /**
-     * Specific list {@link ApplicationInfo#packageName} of apps that are
-     * prefered <strong>only</strong> for the purposes of default icons when
-     * multiple {@link ResolveInfo} are found to match. This only happens when
-     * the user has not selected a default app yet, and they will still be
-     * presented with the system disambiguation dialog.
+     * Upper bound of prefetched contacts waiting for their window to be shown.
      */
-    private static final HashSet<String> sPreferResolve = Sets.newHashSet(
-            "com.android.email",
-            "com.android.calendar",
-            "com.android.contacts",
-            "com.android.mms",
-            "com.android.phone",
-            "com.android.browser");
+    private static final int MAX_PREFETCHED = 4;
 
-    private static final int TOKEN_DATA = 1;
+    /**
+     * Prefetched data is only used when the window is shown shortly after the
+     * badge was touched, since it isn't updated when the contact changes.
+     */
+    private static final long PREFETCH_MAX_AGE_MILLIS = 10 * 1000;
+
+    /**
+     * Selects all data, but photos only when they directly match the super-primary
+     * PHOTO_ID.
+     */
+    private static final String DATA_SELECTION_WITH_PHOTO = Data.MIMETYPE + "!=? OR ("
+            + Data.MIMETYPE + "=? AND " + Data._ID + "=" + Contacts.PHOTO_ID + ")";
+    private static final String[] DATA_SELECTION_WITH_PHOTO_ARGS = new String[] {
+            Photo.CONTENT_ITEM_TYPE, Photo.CONTENT_ITEM_TYPE };
+
+    /**
+     * Data queried by {@link #prefetch} ahead of {@link #show}, keyed on lookup
+     * {@link Uri}, least recently requested first. Only accessed on the UI thread.
+     */
+    private static final LinkedHashMap<Uri, PrefetchedData> sPrefetched =
+            new LinkedHashMap<Uri, PrefetchedData>(MAX_PREFETCHED, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Uri, PrefetchedData> eldest) {
+            if (size() <= MAX_PREFETCHED) {
+                return false;
+            }
+            final Cursor cursor = eldest.getValue().cursor;
+            if (cursor != null) {
+                cursor.close();
+            }
+            return true;
+        }
+    };
+
+    /**
+     * Result of a {@link #prefetch}. The cursor is null while the query is running.
+     */
+    private static class PrefetchedData {
+        public Cursor cursor;
+        public long loadedTime;
+    }
 
     static final boolean LOGD = false;
 
@@ -279,7 +312,7 @@ public class QuickContactWindow implements Window.Callback,
         mArrowUp = (ImageView)mWindow.findViewById(R.id.arrow_up);
         mArrowDown = (ImageView)mWindow.findViewById(R.id.arrow_down);
 
-        mResolveCache = new ResolveCache(mContext);
+        mResolveCache = ResolveCache.getInstance(mContext);
 
         final Resources res = mContext.getResources();
         mShadowHoriz = res.getDimensionPixelSize(R.dimen.quickcontact_shadow_horiz);
@@ -398,17 +431,24 @@ public class QuickContactWindow implements Window.Callback,
         mDismissed = false;
         mQuerying = true;
 
+        mHandler.cancelOperation(TOKEN_DATA);
+
+        // Data may have been queried already when the badge was touched
+        final Cursor prefetched = takePrefetched(lookupUri);
+        if (prefetched != null) {
+            onQueryComplete(TOKEN_DATA, lookupUri, prefetched);
+            return;
+        }
+
         // Start background query for data, but only select photo rows when they
         // directly match the super-primary PHOTO_ID.
-        final Uri dataUri = getDataUri(lookupUri);
-        mHandler.cancelOperation(TOKEN_DATA);
+        final Uri dataUri = getDataUri(mContext.getContentResolver(), lookupUri);
 
         // Only request photo data when required by mode
         if (mMode == QuickContact.MODE_LARGE) {
             // Select photos, but only super-primary
-            mHandler.startQuery(TOKEN_DATA, lookupUri, dataUri, DataQuery.PROJECTION, Data.MIMETYPE
-                    + "!=? OR (" + Data.MIMETYPE + "=? AND " + Data._ID + "=" + Contacts.PHOTO_ID
-                    + ")", new String[] { Photo.CONTENT_ITEM_TYPE, Photo.CONTENT_ITEM_TYPE }, null);
+            mHandler.startQuery(TOKEN_DATA, lookupUri, dataUri, DataQuery.PROJECTION,
+                    DATA_SELECTION_WITH_PHOTO, DATA_SELECTION_WITH_PHOTO_ARGS, null);
         } else {
             // Exclude all photos from cursor
             mHandler.startQuery(TOKEN_DATA, lookupUri, dataUri, DataQuery.PROJECTION, Data.MIMETYPE
@@ -420,7 +460,7 @@ public class QuickContactWindow implements Window.Callback,
      * Build a {@link Uri} into the {@link Data} table for the requested
      * {@link Contacts#CONTENT_LOOKUP_URI} style {@link Uri}.
      */
-    private Uri getDataUri(Uri lookupUri) {
+    private static Uri getDataUri(ContentResolver resolver, Uri lookupUri) {
         // TODO: Formalize method of extracting LOOKUP_KEY
         final List<String> path = lookupUri.getPathSegments();
         final boolean validLookup = path.size() >= 3 && "lookup".equals(path.get(1));
@@ -429,7 +469,10 @@ public class QuickContactWindow implements Window.Callback,
             throw new IllegalArgumentException("Expecting lookup-style Uri");
         } else if (path.size() == 3) {
             // No direct _ID provided, so force a lookup
-            lookupUri = Contacts.lookupContact(mContext.getContentResolver(), lookupUri);
+            lookupUri = Contacts.lookupContact(resolver, lookupUri);
+            if (lookupUri == null) {
+                throw new IllegalArgumentException("Contact not found");
+            }
         }
 
         final long contactId = ContentUris.parseId(lookupUri);
@@ -437,6 +480,72 @@ public class QuickContactWindow implements Window.Callback,
                 Contacts.Data.CONTENT_DIRECTORY);
     }
 
+    /**
+     * Starts querying the data of the given contact, so that a window shown for it
+     * soon after can be filled right away instead of waiting for its own query.
+     * Meant to be called when the user touches a badge, ahead of the click. Must
+     * be called on the UI thread.
+     */
+    public static void prefetch(Context context, final Uri lookupUri) {
+        if (lookupUri == null || sPrefetched.containsKey(lookupUri)) {
+            return;
+        }
+
+        final PrefetchedData data = new PrefetchedData();
+        sPrefetched.put(lookupUri, data);
+
+        // Photos are included, since the mode isn't known yet
+        final ContentResolver resolver = context.getContentResolver();
+        new AsyncTask<Void, Void, Cursor>() {
+            @Override
+            protected Cursor doInBackground(Void... params) {
+                final Cursor cursor;
+                try {
+                    cursor = resolver.query(getDataUri(resolver, lookupUri),
+                            DataQuery.PROJECTION, DATA_SELECTION_WITH_PHOTO,
+                            DATA_SELECTION_WITH_PHOTO_ARGS, null);
+                } catch (IllegalArgumentException e) {
+                    Log.w(TAG, "Unable to prefetch " + lookupUri, e);
+                    return null;
+                }
+                if (cursor != null) {
+                    // Fill the cursor window while we are still in the background
+                    cursor.getCount();
+                }
+                return cursor;
+            }
+
+            @Override
+            protected void onPostExecute(Cursor cursor) {
+                if (sPrefetched.get(lookupUri) != data) {
+                    // Taken or evicted in the meantime
+                    if (cursor != null) cursor.close();
+                } else if (cursor == null) {
+                    sPrefetched.remove(lookupUri);
+                } else {
+                    data.cursor = cursor;
+                    data.loadedTime = SystemClock.elapsedRealtime();
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Returns the prefetched data of the given contact, if it has arrived and is
+     * recent enough. The caller owns the returned cursor.
+     */
+    private static Cursor takePrefetched(Uri lookupUri) {
+        final PrefetchedData data = sPrefetched.remove(lookupUri);
+        if (data == null || data.cursor == null) {
+            return null;
+        }
+        if (SystemClock.elapsedRealtime() - data.loadedTime > PREFETCH_MAX_AGE_MILLIS) {
+            data.cursor.close();
+            return null;
+        }
+        return data.cursor;
+    }
+
     /**
      * Show the correct call-out arrow based on a {@link R.id} reference.
      */
@@ -577,7 +686,6 @@ public class QuickContactWindow implements Window.Callback,
         mLastAction = null;
 
         // Clear track actions and scroll to hard left
-        mResolveCache.clear();
         mActions.clear();
 
         // Recycle any chiclets in use
@@ -998,142 +1106,6 @@ public class QuickContactWindow implements Window.Callback,
         }
     }
 
-    /**
-     * Internally hold a cache of scaled icons based on {@link PackageManager}
-     * queries, keyed internally on MIME-type.
-     */
-    private static class ResolveCache {
-        private PackageManager mPackageManager;
-
-        /**
-         * Cached entry holding the best {@link ResolveInfo} for a specific
-         * MIME-type, along with a {@link SoftReference} to its icon.
-         */
-        private static class Entry {
-            public ResolveInfo bestResolve;
-            public SoftReference<Drawable> icon;
-        }
-
-        private HashMap<String, Entry> mCache = new HashMap<String, Entry>();
-
-        public ResolveCache(Context context) {
-            mPackageManager = context.getPackageManager();
-        }
-
-        /**
-         * Get the {@link Entry} best associated with the given {@link Action},
-         * or create and populate a new one if it doesn't exist.
-         */
-        protected Entry getEntry(Action action) {
-            final String mimeType = action.getMimeType();
-            Entry entry = mCache.get(mimeType);
-            if (entry != null) return entry;
-            entry = new Entry();
-
-            final Intent intent = action.getIntent();
-            if (intent != null) {
-                final List<ResolveInfo> matches = mPackageManager.queryIntentActivities(intent,
-                        PackageManager.MATCH_DEFAULT_ONLY);
-
-                // Pick first match, otherwise best found
-                ResolveInfo bestResolve = null;
-                final int size = matches.size();
-                if (size == 1) {
-                    bestResolve = matches.get(0);
-                } else if (size > 1) {
-                    bestResolve = getBestResolve(intent, matches);
-                }
-
-                if (bestResolve != null) {
-                    final Drawable icon = bestResolve.loadIcon(mPackageManager);
-
-                    entry.bestResolve = bestResolve;
-                    entry.icon = new SoftReference<Drawable>(icon);
-                }
-            }
-
-            mCache.put(mimeType, entry);
-            return entry;
-        }
-
-        /**
-         * Best {@link ResolveInfo} when multiple found. Ties are broken by
-         * selecting first from the {QuickContactWindow#sPreferResolve} list of
-         * preferred packages, second by apps that live on the system partition,
-         * otherwise the app from the top of the list. This is
-         * <strong>only</strong> used for selecting a default icon for
-         * displaying in the track, and does not shortcut the system
-         * {@link Intent} disambiguation dialog.
-         */
-        protected ResolveInfo getBestResolve(Intent intent, List<ResolveInfo> matches) {
-            // Try finding preferred activity, otherwise detect disambig
-            final ResolveInfo foundResolve = mPackageManager.resolveActivity(intent,
-                    PackageManager.MATCH_DEFAULT_ONLY);
-            final boolean foundDisambig = (foundResolve.match &
-                    IntentFilter.MATCH_CATEGORY_MASK) == 0;
-
-            if (!foundDisambig) {
-                // Found concrete match, so return directly
-                return foundResolve;
-            }
-
-            // Accept any package from prefer list, otherwise first system app
-            ResolveInfo firstSystem = null;
-            for (ResolveInfo info : matches) {
-                final boolean isSystem = (info.activityInfo.applicationInfo.flags
-                        & ApplicationInfo.FLAG_SYSTEM) != 0;
-                final boolean isPrefer = QuickContactWindow.sPreferResolve
-                        .contains(info.activityInfo.applicationInfo.packageName);
-
-
-
-                if (isPrefer) return info;
-                if (isSystem && firstSystem != null) firstSystem = info;
-            }
-
-            // Return first system found, otherwise first from list
-            return firstSystem != null ? firstSystem : matches.get(0);
-        }
-
-        /**
-         * Check {@link PackageManager} to see if any apps offer to handle the
-         * given {@link Action}.
-         */
-        public boolean hasResolve(Action action) {
-            return getEntry(action).bestResolve != null;
-        }
-
-        /**
-         * Find the best description for the given {@link Action}, usually used
-         * for accessibility purposes.
-         */
-        public CharSequence getDescription(Action action) {
-            final CharSequence actionHeader = action.getHeader();
-            final ResolveInfo info = getEntry(action).bestResolve;
-            if (!TextUtils.isEmpty(actionHeader)) {
-                return actionHeader;
-            } else if (info != null) {
-                return info.loadLabel(mPackageManager);
-            } else {
-                return null;
-            }
-        }
-
-        /**
-         * Return the best icon for the given {@link Action}, which is usually
-         * based on the {@link ResolveInfo} found through a
-         * {@link PackageManager} query.
-         */
-        public Drawable getIcon(Action action) {
-            final SoftReference<Drawable> iconRef = getEntry(action).icon;
-            return (iconRef == null) ? null : iconRef.get();
-        }
-
-        public void clear() {
-            mCache.clear();
-        }
-    }
-
     /**
      * Provide a strongly-typed {@link LinkedList} that holds a list of
      * {@link Action} objects.
@@ -1203,7 +1175,7 @@ public class QuickContactWindow implements Window.Callback,
             if (Photo.CONTENT_ITEM_TYPE.equals(mimeType)) {
                 final int colPhoto = cursor.getColumnIndex(Photo.PHOTO);
                 final byte[] photoBlob = cursor.getBlob(colPhoto);
-                if (photoBlob != null) {
+                if (photoBlob != null && photoView != null) {
                     photoBitmap = BitmapFactory.decodeByteArray(photoBlob, 0, photoBlob.length);
                 }
                 continue;
@@ -1305,7 +1277,7 @@ public class QuickContactWindow implements Window.Callback,
      * {@link Action#getIntent()}.
      */
     private void considerAdd(Action action, String mimeType) {
-        if (mResolveCache.hasResolve(action)) {
+        if (mResolveCache.hasResolve(action.getMimeType(), action.getIntent())) {
             mActions.collect(mimeType, action);
         }
     }
@@ -1363,8 +1335,9 @@ public class QuickContactWindow implements Window.Callback,
         }
 
         // Set icon and listen for clicks
-        final CharSequence descrip = mResolveCache.getDescription(firstInfo);
-        final Drawable icon = mResolveCache.getIcon(firstInfo);
+        final CharSequence descrip = getDescription(firstInfo);
+        final Drawable icon = mResolveCache.getIcon(mContext, firstInfo.getMimeType(),
+                firstInfo.getIntent());
         view.setChecked(false);
         view.setContentDescription(descrip);
         view.setImageDrawable(icon);
@@ -1372,6 +1345,18 @@ public class QuickContactWindow implements Window.Callback,
         return view;
     }
 
+    /**
+     * Find the best description for the given {@link Action}, usually used
+     * for accessibility purposes.
+     */
+    private CharSequence getDescription(Action action) {
+        final CharSequence actionHeader = action.getHeader();
+        if (!TextUtils.isEmpty(actionHeader)) {
+            return actionHeader;
+        }
+        return mResolveCache.getLabel(action.getMimeType(), action.getIntent());
+    }
+
     /** {@inheritDoc} */
     public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
         // Pass list item clicks along so that Intents are handled uniformly
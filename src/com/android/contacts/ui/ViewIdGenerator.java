@@ -19,6 +19,7 @@ package com.android.contacts.ui;
 import com.android.contacts.model.EntityDelta;
 import com.android.contacts.model.ContactsSource.DataKind;
 import com.android.contacts.model.EntityDelta.ValuesDelta;
+import com.android.contacts.ui.widget.EditorViewPool;
 import com.android.contacts.ui.widget.GenericEditorView;
 import com.android.contacts.ui.widget.KindSectionView;
 
@@ -31,6 +32,7 @@ import android.os.Parcelable;
  * {@link GenericEditorView} and {@link EditView} on {@link EditContactActivity}.
  * It is used to assign a unique but consistent id to each view across {@link EditContactActivity}'s
  * lifecycle, so that we can re-construct view state (e.g. focused view) when the screen rotates.
+ * It also carries the {@link EditorViewPool} that these views are recycled through.
  *
  * <p>This class is not thread safe.
  */
@@ -52,6 +54,11 @@ public final class ViewIdGenerator implements Parcelable {
 
     private final static StringBuilder sWorkStringBuilder = new StringBuilder();
 
+    /**
+     * Not parceled, the pooled views belong to the activity that inflated them.
+     */
+    private EditorViewPool mViewPool;
+
     public ViewIdGenerator() {
         mNextId = INITIAL_VIEW_ID;
     }
@@ -83,6 +90,16 @@ public final class ViewIdGenerator implements Parcelable {
         return id;
     }
 
+    /**
+     * Returns the pool that editor views of this session are recycled through.
+     */
+    public EditorViewPool getViewPool() {
+        if (mViewPool == null) {
+            mViewPool = new EditorViewPool();
+        }
+        return mViewPool;
+    }
+
     private static String getMapKey(EntityDelta entity, DataKind kind, ValuesDelta values,
             int viewIndex) {
         sWorkStringBuilder.setLength(0);
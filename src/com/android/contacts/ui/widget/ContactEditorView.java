@@ -126,7 +126,13 @@ public class ContactEditorView extends BaseContactEditorView implements DialogSh
      */
     @Override
     public void setState(EntityDelta state, ContactsSource source, ViewIdGenerator vig) {
-        // Remove any existing sections
+        // Remove any existing sections, keeping them around for the sections built below
+        if (vig != null) {
+            final EditorViewPool pool = vig.getViewPool();
+            for (int i = 0; i < mFields.getChildCount(); i++) {
+                pool.release(R.layout.item_kind_section, mFields.getChildAt(i));
+            }
+        }
         mFields.removeAllViews();
 
         // Bail if invalid state or source
@@ -182,8 +188,8 @@ public class ContactEditorView extends BaseContactEditorView implements DialogSh
             } else {
                 // Otherwise use generic section-based editors
                 if (kind.fieldList == null) continue;
-                final KindSectionView section = (KindSectionView)mInflater.inflate(
-                        R.layout.item_kind_section, mFields, false);
+                final KindSectionView section = (KindSectionView)vig.getViewPool().obtain(
+                        mInflater, R.layout.item_kind_section, mFields);
                 section.setState(kind, state, false, vig);
                 mFields.addView(section);
             }
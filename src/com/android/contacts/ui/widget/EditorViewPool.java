@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.ui.widget;
+
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+
+/**
+ * Detached editor views, keyed by the layout they were inflated from, that
+ * {@link KindSectionView} and {@link GenericEditorView} hand back when they
+ * rebuild and take out again instead of inflating. One pool is shared by all
+ * editors of an editing session through
+ * {@link com.android.contacts.ui.ViewIdGenerator#getViewPool()}, which also keeps
+ * the ids of reused views stable.
+ * <p>
+ * This class is not thread safe, it is only used on the UI thread.
+ */
+public class EditorViewPool {
+    /**
+     * Upper bound of views kept per layout, enough for a large contact.
+     */
+    private static final int MAX_VIEWS_PER_LAYOUT = 32;
+
+    private final SparseArray<ArrayList<View>> mViews = new SparseArray<ArrayList<View>>();
+
+    /**
+     * Returns a detached view of the given layout, either from the pool or freshly
+     * inflated. The caller must rebind all of its state.
+     */
+    public View obtain(LayoutInflater inflater, int layoutResId, ViewGroup parent) {
+        final ArrayList<View> views = mViews.get(layoutResId);
+        if (views != null && !views.isEmpty()) {
+            return views.remove(views.size() - 1);
+        }
+        return inflater.inflate(layoutResId, parent, false);
+    }
+
+    /**
+     * Hands back a view that has been removed from its parent.
+     */
+    public void release(int layoutResId, View view) {
+        ArrayList<View> views = mViews.get(layoutResId);
+        if (views == null) {
+            views = new ArrayList<View>();
+            mViews.put(layoutResId, views);
+        }
+        if (views.size() < MAX_VIEWS_PER_LAYOUT) {
+            views.add(view);
+        }
+    }
+}
@@ -224,20 +224,21 @@ public class GenericEditorView extends RelativeLayout implements Editor, View.On
         }
 
         // Build out set of fields
-        mFields.removeAllViews();
+        final EditorViewPool pool = vig.getViewPool();
+        releaseFields(pool);
         boolean hidePossible = false;
         int n = 0;
         for (EditField field : kind.fieldList) {
-            // Inflate field from definition
-            EditText fieldView = (EditText)mInflater.inflate(RES_FIELD, mFields, false);
+            // Inflate field from definition, or reuse one of an earlier build
+            EditText fieldView = (EditText)pool.obtain(mInflater, RES_FIELD, mFields);
             fieldView.setId(vig.getId(state, kind, entry, n++));
-            if (field.titleRes > 0) {
-                fieldView.setHint(field.titleRes);
-            }
+            fieldView.setHint(field.titleRes > 0 ? mContext.getText(field.titleRes) : null);
             int inputType = field.inputType;
             fieldView.setInputType(inputType);
+            TextWatcher formattingWatcher = null;
             if (inputType == InputType.TYPE_CLASS_PHONE) {
-                fieldView.addTextChangedListener(new PhoneNumberFormattingTextWatcher());
+                formattingWatcher = new PhoneNumberFormattingTextWatcher();
+                fieldView.addTextChangedListener(formattingWatcher);
             }
             fieldView.setMinLines(field.minLines);
 
@@ -247,7 +248,7 @@ public class GenericEditorView extends RelativeLayout implements Editor, View.On
             fieldView.setText(value);
 
             // Prepare listener for writing changes
-            fieldView.addTextChangedListener(new TextWatcher() {
+            final TextWatcher changeWatcher = new TextWatcher() {
                 public void afterTextChanged(Editable s) {
                     // Trigger event for newly changed value
                     onFieldChanged(column, s.toString());
@@ -258,7 +259,11 @@ public class GenericEditorView extends RelativeLayout implements Editor, View.On
 
                 public void onTextChanged(CharSequence s, int start, int before, int count) {
                 }
-            });
+            };
+            fieldView.addTextChangedListener(changeWatcher);
+
+            // Remember the watchers, so that they can be removed once the field is reused
+            fieldView.setTag(new TextWatcher[] { formattingWatcher, changeWatcher });
 
             // Hide field when empty and optional value
             final boolean couldHide = (!ContactsUtils.isGraphic(value) && field.optional);
@@ -281,6 +286,34 @@ public class GenericEditorView extends RelativeLayout implements Editor, View.On
         mMoreOrLess.setEnabled(enabled);
     }
 
+    /**
+     * Hands the field views back to the pool after detaching their watchers.
+     */
+    private void releaseFields(EditorViewPool pool) {
+        for (int i = 0; i < mFields.getChildCount(); i++) {
+            final EditText fieldView = (EditText) mFields.getChildAt(i);
+            final TextWatcher[] watchers = (TextWatcher[]) fieldView.getTag();
+            if (watchers != null) {
+                for (TextWatcher watcher : watchers) {
+                    if (watcher != null) fieldView.removeTextChangedListener(watcher);
+                }
+                fieldView.setTag(null);
+            }
+            pool.release(RES_FIELD, fieldView);
+        }
+        mFields.removeAllViews();
+    }
+
+    /**
+     * Called before this editor is handed back to the {@link EditorViewPool}, resets
+     * whatever state {@link #setValues} doesn't rebuild.
+     */
+    public void onRecycled() {
+        mHideOptional = true;
+        mPendingType = null;
+        mListener = null;
+    }
+
     /**
      * Prepare dialog for entering a custom label. The input value is trimmed: white spaces before
      * and after the input text is removed.
@@ -147,7 +147,13 @@ public class KindSectionView extends LinearLayout implements EditorListener {
      * Build editors for all current {@link #mState} rows.
      */
     public void rebuildFromState() {
-        // Remove any existing editors
+        // Remove any existing editors, keeping them around for the views built below
+        final EditorViewPool pool = mViewIdGenerator.getViewPool();
+        for (int i = 0; i < mEditors.getChildCount(); i++) {
+            final GenericEditorView editor = (GenericEditorView) mEditors.getChildAt(i);
+            editor.onRecycled();
+            pool.release(R.layout.item_generic_editor, editor);
+        }
         mEditors.removeAllViews();
 
         // Check if we are displaying anything here
@@ -159,8 +165,8 @@ public class KindSectionView extends LinearLayout implements EditorListener {
                 // Skip entries that aren't visible
                 if (!entry.isVisible()) continue;
 
-                final GenericEditorView editor = (GenericEditorView)mInflater.inflate(
-                        R.layout.item_generic_editor, mEditors, false);
+                final GenericEditorView editor = (GenericEditorView)pool.obtain(mInflater,
+                        R.layout.item_generic_editor, mEditors);
                 editor.setValues(mKind, entry, mState, mReadOnly, mViewIdGenerator);
                 editor.setEditorListener(this);
                 mEditors.addView(editor);
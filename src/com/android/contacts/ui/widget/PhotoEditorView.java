@@ -21,6 +21,7 @@ import com.android.contacts.model.EntityDelta;
 import com.android.contacts.model.ContactsSource.DataKind;
 import com.android.contacts.model.EntityDelta.ValuesDelta;
 import com.android.contacts.model.Editor;
+import com.android.contacts.ui.PendingPhotos;
 import com.android.contacts.ui.ViewIdGenerator;
 
 import android.content.Context;
@@ -28,14 +29,10 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.provider.ContactsContract.CommonDataKinds.Photo;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.widget.ImageView;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-
 /**
  * Simple editor for {@link Photo}.
  */
@@ -112,7 +109,9 @@ public class PhotoEditorView extends ImageView implements Editor, OnClickListene
 
     /**
      * Assign the given {@link Bitmap} as the new value, updating UI and
-     * readying for persisting through {@link ValuesDelta}.
+     * readying for persisting through {@link ValuesDelta}. The photo is only
+     * shown here, the caller encodes it into {@link Photo#PHOTO} in the
+     * background through {@link PendingPhotos}.
      */
     public void setPhotoBitmap(Bitmap photo) {
         if (photo == null) {
@@ -122,25 +121,22 @@ public class PhotoEditorView extends ImageView implements Editor, OnClickListene
             return;
         }
 
-        final int size = photo.getWidth() * photo.getHeight() * 4;
-        final ByteArrayOutputStream out = new ByteArrayOutputStream(size);
-
-        try {
-            photo.compress(Bitmap.CompressFormat.PNG, 100, out);
-            out.flush();
-            out.close();
+        setPendingPhoto(photo);
 
-            mEntry.put(Photo.PHOTO, out.toByteArray());
-            setImageBitmap(photo);
-            setEnabled(true);
-            mHasSetPhoto = true;
-            mEntry.setFromTemplate(false);
+        // When the user chooses a new photo mark it as super primary
+        mEntry.put(Photo.IS_SUPER_PRIMARY, 1);
+    }
 
-            // When the user chooses a new photo mark it as super primary
-            mEntry.put(Photo.IS_SUPER_PRIMARY, 1);
-        } catch (IOException e) {
-            Log.w(TAG, "Unable to serialize photo: " + e.toString());
-        }
+    /**
+     * Show a photo assigned through {@link #setPhotoBitmap(Bitmap)} that is
+     * still being encoded, after this editor has been bound again.
+     */
+    public void setPendingPhoto(Bitmap photo) {
+        setScaleType(ImageView.ScaleType.CENTER_CROP);
+        setImageBitmap(photo);
+        setEnabled(true);
+        mHasSetPhoto = true;
+        mEntry.setFromTemplate(false);
     }
 
     /**
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.util;
+
+import android.util.SparseArray;
+import android.view.ViewTreeObserver;
+import android.widget.AbsListView;
+import android.widget.AbsListView.OnScrollListener;
+
+/**
+ * Samples the scrolling of a list into {@link PerformanceMetrics}: the time between
+ * consecutive frames drawn while the list scrolls, named "name.frame", and the time
+ * the adapter takes to get each row, named "name.getView.type" by view type. Does
+ * nothing while {@link PerformanceMetrics} isn't recording.
+ * <p>
+ * Either set the sampler as the {@link OnScrollListener} of the list, or forward
+ * scroll state changes to it. Adapters time their rows like this:
+ * <pre>
+ *   final long start = PerformanceMetrics.begin();
+ *   final View view = super.getView(position, convertView, parent);
+ *   mScrollSampler.recordGetView(getItemViewType(position), start);
+ * </pre>
+ */
+public class ListScrollSampler implements OnScrollListener, ViewTreeObserver.OnPreDrawListener {
+    private final String mFrameMetric;
+    private final String mGetViewMetricPrefix;
+
+    /**
+     * Names of the per view type metrics, so that sampling doesn't build strings.
+     */
+    private final SparseArray<String> mGetViewMetrics = new SparseArray<String>();
+
+    private ViewTreeObserver mObserver;
+    private long mLastFrameNanos;
+
+    public ListScrollSampler(String name) {
+        mFrameMetric = name + ".frame";
+        mGetViewMetricPrefix = name + ".getView.";
+    }
+
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+            int totalItemCount) {
+    }
+
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+        if (scrollState != SCROLL_STATE_IDLE && PerformanceMetrics.isEnabled()) {
+            if (mObserver == null) {
+                mObserver = view.getViewTreeObserver();
+                mObserver.addOnPreDrawListener(this);
+                mLastFrameNanos = 0;
+            }
+        } else {
+            stopSampling();
+        }
+    }
+
+    /**
+     * Stops timing frames, e.g. when the list goes away while it is scrolling.
+     */
+    public void stopSampling() {
+        if (mObserver != null) {
+            if (mObserver.isAlive()) {
+                mObserver.removeOnPreDrawListener(this);
+            }
+            mObserver = null;
+        }
+    }
+
+    public boolean onPreDraw() {
+        final long now = System.nanoTime();
+        if (mLastFrameNanos != 0) {
+            PerformanceMetrics.record(mFrameMetric, now - mLastFrameNanos);
+        }
+        mLastFrameNanos = now;
+        return true;
+    }
+
+    /**
+     * Records how long getting a row of the given view type took, if the given start
+     * time is from {@link PerformanceMetrics#begin()} while recording.
+     */
+    public void recordGetView(int viewType, long start) {
+        if (start == 0) {
+            return;
+        }
+        String metric = mGetViewMetrics.get(viewType);
+        if (metric == null) {
+            metric = mGetViewMetricPrefix + viewType;
+            mGetViewMetrics.put(viewType, metric);
+        }
+        PerformanceMetrics.end(metric, start);
+    }
+}
@@ -16,6 +16,8 @@
 
 package com.android.contacts.util;
 
+import com.google.android.collect.Maps;
+
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
@@ -30,15 +32,21 @@ import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.content.res.XmlResourceParser;
 import android.content.res.Resources.NotFoundException;
+import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.util.Xml;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
 
 /**
  * Retrieves localized names per account type. This allows customizing texts like
  * "All Contacts" for certain account types, but e.g. "All Friends" or "All Connections" for others.
+ * <p>
+ * Resolved names are remembered per account type until the package defining them changes
+ * or the locale changes, see {@link #invalidate(String)} and {@link #invalidateAll()}.
  */
 public class LocalizedNameResolver  {
     private static final String TAG = "LocalizedNameResolver";
@@ -50,6 +58,23 @@ public class LocalizedNameResolver  {
 
     private static final String CONTACTS_DATA_KIND = "ContactsDataKind";
 
+    /**
+     * Resolved names by account type. Also holds account types without a name, so
+     * that those aren't looked up again either.
+     */
+    private static final HashMap<String, ResolvedName> sCache = Maps.newHashMap();
+
+    private static final class ResolvedName {
+        /** The authenticator package, or null if no authenticator was found */
+        final String packageName;
+        final String name;
+
+        ResolvedName(String packageName, String name) {
+            this.packageName = packageName;
+            this.name = name;
+        }
+    }
+
     /**
      * Returns the name for All Contacts for the specified account type.
      */
@@ -57,22 +82,59 @@ public class LocalizedNameResolver  {
         if (context == null) throw new IllegalArgumentException("Context must not be null");
         if (accountType == null) return null;
 
-        return resolveAllContactsName(context, accountType);
+        synchronized (sCache) {
+            final ResolvedName cached = sCache.get(accountType);
+            if (cached != null) return cached.name;
+        }
+
+        // Resolve outside of the lock, racing threads would only do the same work twice
+        final ResolvedName resolved = resolveAllContactsName(context, accountType);
+        synchronized (sCache) {
+            sCache.put(accountType, resolved);
+        }
+        return resolved.name;
      }
 
+    /**
+     * Forgets the names defined by the given package. Names of account types that had
+     * no authenticator are forgotten as well, since the package may have added one.
+     */
+    public static void invalidate(String packageName) {
+        synchronized (sCache) {
+            final Iterator<ResolvedName> iterator = sCache.values().iterator();
+            while (iterator.hasNext()) {
+                final ResolvedName resolved = iterator.next();
+                if (resolved.packageName == null
+                        || TextUtils.equals(packageName, resolved.packageName)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets all names, e.g. because they were resolved for a different locale.
+     */
+    public static void invalidateAll() {
+        synchronized (sCache) {
+            sCache.clear();
+        }
+    }
+
     /**
      * Finds "All Contacts"-Name for the specified account type.
      */
-    private static String resolveAllContactsName(Context context, String accountType) {
+    private static ResolvedName resolveAllContactsName(Context context, String accountType) {
         final AccountManager am = AccountManager.get(context);
 
         for (AuthenticatorDescription auth : am.getAuthenticatorTypes()) {
             if (accountType.equals(auth.type)) {
-                return resolveAllContactsNameFromMetaData(context, auth.packageName);
+                return new ResolvedName(auth.packageName,
+                        resolveAllContactsNameFromMetaData(context, auth.packageName));
             }
         }
 
-        return null;
+        return new ResolvedName(null, null);
     }
 
     /**
@@ -88,7 +150,11 @@ public class LocalizedNameResolver  {
                 for (ServiceInfo si : pi.services) {
                     final XmlResourceParser parser = si.loadXmlMetaData(pm, METADATA_CONTACTS);
                     if (parser != null) {
-                        return loadAllContactsNameFromXml(context, parser, packageName);
+                        try {
+                            return loadAllContactsNameFromXml(context, parser, packageName);
+                        } finally {
+                            parser.close();
+                        }
                     }
                 }
             }
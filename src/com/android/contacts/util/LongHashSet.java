@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.util;
+
+import java.util.Arrays;
+
+/**
+ * A set of primitive longs, e.g. row ids, that doesn't box its values. Uses open
+ * addressing with linear probing in a power-of-two table that is kept at most half
+ * full, so adding, removing and looking up ids takes constant time on average.
+ * <p>
+ * This class is not thread safe.
+ */
+public class LongHashSet {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] mValues;
+    private boolean[] mUsed;
+    private int mSize;
+
+    public LongHashSet() {
+        this(0);
+    }
+
+    /**
+     * Creates a set that can hold the given number of values without growing.
+     */
+    public LongHashSet(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public boolean contains(long value) {
+        return mUsed[indexOf(value)];
+    }
+
+    /**
+     * @return true if the value wasn't in the set before
+     */
+    public boolean add(long value) {
+        int index = indexOf(value);
+        if (mUsed[index]) {
+            return false;
+        }
+
+        if ((mSize + 1) * 2 > mValues.length) {
+            rehash(mValues.length * 2);
+            index = indexOf(value);
+        }
+        mValues[index] = value;
+        mUsed[index] = true;
+        mSize++;
+        return true;
+    }
+
+    /**
+     * @return true if the value was in the set
+     */
+    public boolean remove(long value) {
+        int index = indexOf(value);
+        if (!mUsed[index]) {
+            return false;
+        }
+        mUsed[index] = false;
+        mSize--;
+
+        // Move following values of the same probe run back into the gap, so that
+        // lookups don't stop there early
+        final int mask = mValues.length - 1;
+        int gap = index;
+        for (int i = (index + 1) & mask; mUsed[i]; i = (i + 1) & mask) {
+            final int home = hash(mValues[i]) & mask;
+            // The value may move if its home isn't cyclically within (gap, i]
+            final boolean movable = gap <= i
+                    ? (home <= gap || home > i)
+                    : (home <= gap && home > i);
+            if (movable) {
+                mValues[gap] = mValues[i];
+                mUsed[gap] = true;
+                mUsed[i] = false;
+                gap = i;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes room for the given number of values in total, so that adding them in
+     * bulk doesn't rehash repeatedly.
+     */
+    public void ensureCapacity(int size) {
+        final int capacity = capacityFor(size);
+        if (capacity > mValues.length) {
+            rehash(capacity);
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(mUsed, false);
+        mSize = 0;
+    }
+
+    /**
+     * Returns the values of this set in no particular order.
+     */
+    public long[] toArray() {
+        final long[] result = new long[mSize];
+        int count = 0;
+        for (int i = 0; i < mValues.length; i++) {
+            if (mUsed[i]) {
+                result[count++] = mValues[i];
+            }
+        }
+        return result;
+    }
+
+    private static int capacityFor(int size) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(long value) {
+        // Mix the bits, ids tend to be sequential
+        int h = (int) (value ^ (value >>> 32));
+        h ^= (h >>> 20) ^ (h >>> 12);
+        return h ^ (h >>> 7) ^ (h >>> 4);
+    }
+
+    /**
+     * Returns the slot holding the value, or the empty slot where it belongs.
+     */
+    private int indexOf(long value) {
+        final int mask = mValues.length - 1;
+        int index = hash(value) & mask;
+        while (mUsed[index] && mValues[index] != value) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void allocate(int capacity) {
+        mValues = new long[capacity];
+        mUsed = new boolean[capacity];
+    }
+
+    private void rehash(int capacity) {
+        final long[] values = mValues;
+        final boolean[] used = mUsed;
+        allocate(capacity);
+        for (int i = 0; i < values.length; i++) {
+            if (used[i]) {
+                final int index = indexOf(values[i]);
+                mValues[index] = values[i];
+                mUsed[index] = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.util;
+
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * Process-wide latency histograms and cache hit counts of the hot paths, e.g. loader
+ * queries, list binding and photo decoding. Recording is off by default, in which case
+ * {@link #begin()} returns 0 and every other call returns right away without locking
+ * or allocating. Turn it on with
+ * <pre>
+ *   adb shell setprop log.tag.ContactsMetrics DEBUG
+ * </pre>
+ * before the process starts, or at any time with {@link PerformanceMetricsReceiver}.
+ * <p>
+ * A span is timed like this:
+ * <pre>
+ *   final long start = PerformanceMetrics.begin();
+ *   ...
+ *   PerformanceMetrics.end(PerformanceMetrics.DETAIL_LOAD, start);
+ * </pre>
+ */
+public final class PerformanceMetrics {
+    public static final String TAG = "ContactsMetrics";
+
+    public static final String DETAIL_LOAD = "detail.load";
+    public static final String DETAIL_QUERY_HEADER = "detail.query.header";
+    public static final String DETAIL_QUERY_SOCIAL = "detail.query.social";
+    public static final String DETAIL_QUERY_RAW_CONTACTS = "detail.query.rawContacts";
+    public static final String EDIT_LOAD = "edit.load";
+    public static final String LIST_LOAD_FINISHED = "list.onLoadFinished";
+    public static final String PHOTO_CACHE = "photo.cache";
+    public static final String PHOTO_QUERY = "photo.query";
+    public static final String PHOTO_DECODE = "photo.decode";
+    public static final String PHOTO_PLACEHOLDER = "photo.placeholder";
+    public static final String CALL_LOG_CONTACT_INFO_CACHE = "callLog.contactInfo.cache";
+    public static final String CALL_LOG_CONTACT_INFO_QUERY = "callLog.contactInfo.query";
+
+    /**
+     * Latencies are counted in buckets of powers of two microseconds, the last one
+     * taking everything from about 8 seconds on.
+     */
+    private static final int BUCKET_COUNT = 24;
+
+    private static volatile boolean sEnabled = Log.isLoggable(TAG, Log.DEBUG);
+
+    private static final HashMap<String, Metric> sMetrics = new HashMap<String, Metric>();
+
+    private static class Metric {
+        public final String name;
+
+        /**
+         * Number of recorded spans or cache lookups.
+         */
+        public long count;
+        public long hits;
+        public long totalNanos;
+        public long maxNanos;
+        public long[] buckets;
+
+        public Metric(String name) {
+            this.name = name;
+        }
+
+        public void addLatency(long nanos) {
+            if (buckets == null) {
+                buckets = new long[BUCKET_COUNT];
+            }
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+
+            final long micros = nanos / 1000;
+            final int bucket = micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+            buckets[Math.min(bucket, BUCKET_COUNT - 1)]++;
+        }
+
+        /**
+         * Returns an upper bound of the given percentile of the latencies in
+         * milliseconds.
+         */
+        public float getPercentileMillis(int percentile) {
+            final long rank = (count * percentile + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return (1L << i) / 1000f;
+                }
+            }
+            return maxNanos / 1000000f;
+        }
+
+        public void dump(PrintWriter writer) {
+            if (buckets == null) {
+                writer.println(name + ": " + count + " lookups, "
+                        + (count == 0 ? 0 : hits * 100 / count) + "% hits");
+            } else {
+                writer.println(name + ": " + count + " spans"
+                        + ", mean " + (count == 0 ? 0 : totalNanos / count / 1000000f) + "ms"
+                        + ", p50 <" + getPercentileMillis(50) + "ms"
+                        + ", p90 <" + getPercentileMillis(90) + "ms"
+                        + ", p99 <" + getPercentileMillis(99) + "ms"
+                        + ", max " + maxNanos / 1000000f + "ms");
+            }
+        }
+    }
+
+    private PerformanceMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * Returns the start time of a span, or 0 if recording is off.
+     */
+    public static long begin() {
+        return sEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the latency of the span with the given name and start time. Does
+     * nothing if the span was begun while recording was off.
+     */
+    public static void end(String name, long start) {
+        if (start == 0) {
+            return;
+        }
+        record(name, System.nanoTime() - start);
+    }
+
+    /**
+     * Records a latency measured by the caller, e.g. the time between two frames.
+     */
+    public static void record(String name, long nanos) {
+        if (!sEnabled) {
+            return;
+        }
+        synchronized (sMetrics) {
+            getMetric(name).addLatency(nanos);
+        }
+    }
+
+    /**
+     * Records a lookup in the cache with the given name.
+     */
+    public static void recordCacheLookup(String name, boolean hit) {
+        if (!sEnabled) {
+            return;
+        }
+        synchronized (sMetrics) {
+            final Metric metric = getMetric(name);
+            metric.count++;
+            if (hit) {
+                metric.hits++;
+            }
+        }
+    }
+
+    private static Metric getMetric(String name) {
+        Metric metric = sMetrics.get(name);
+        if (metric == null) {
+            metric = new Metric(name);
+            sMetrics.put(name, metric);
+        }
+        return metric;
+    }
+
+    public static void reset() {
+        synchronized (sMetrics) {
+            sMetrics.clear();
+        }
+    }
+
+    /**
+     * Prints all metrics, one line each and ordered by name.
+     */
+    public static void dump(PrintWriter writer) {
+        synchronized (sMetrics) {
+            final ArrayList<String> names = new ArrayList<String>(sMetrics.keySet());
+            Collections.sort(names);
+            writer.println("Contacts performance metrics, recording "
+                    + (sEnabled ? "on" : "off") + ":");
+            for (String name : names) {
+                sMetrics.get(name).dump(writer);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.util;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Debug entry point to {@link PerformanceMetrics}. Turns recording on or off, resets
+ * the metrics and dumps them to the log and to the result of the broadcast:
+ * <pre>
+ *   adb shell am broadcast -a com.android.contacts.action.PERFORMANCE_METRICS \
+ *       [--ez enable true|false] [--ez reset true]
+ * </pre>
+ * Only senders holding the DUMP permission, like the shell, may send it.
+ */
+public class PerformanceMetricsReceiver extends BroadcastReceiver {
+    public static final String ACTION = "com.android.contacts.action.PERFORMANCE_METRICS";
+
+    public static final String EXTRA_ENABLE = "enable";
+    public static final String EXTRA_RESET = "reset";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        final StringWriter text = new StringWriter();
+        PerformanceMetrics.dump(new PrintWriter(text));
+        for (String line : text.toString().split("\n")) {
+            Log.i(PerformanceMetrics.TAG, line);
+        }
+
+        if (intent.getBooleanExtra(EXTRA_RESET, false)) {
+            PerformanceMetrics.reset();
+        }
+        if (intent.hasExtra(EXTRA_ENABLE)) {
+            PerformanceMetrics.setEnabled(intent.getBooleanExtra(EXTRA_ENABLE, false));
+        }
+
+        if (isOrderedBroadcast()) {
+            setResultData(text.toString());
+        }
+    }
+}
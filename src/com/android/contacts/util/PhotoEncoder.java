@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.util;
+
+import android.graphics.Bitmap;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Encodes contact photos into the bytes stored in {@link
+ * android.provider.ContactsContract.CommonDataKinds.Photo#PHOTO}. Encoding runs on a
+ * single shared background thread, so callers on the UI thread never block on it.
+ * <p>
+ * The encoder picks the format that fits into the given byte budget: PNG if the lossless
+ * image is small enough, otherwise JPEG at decreasing quality, and finally a scaled down
+ * JPEG for very large inputs.
+ */
+public class PhotoEncoder {
+    /**
+     * Default upper bound for the size of an encoded photo.
+     */
+    public static final int DEFAULT_MAX_BYTES = 16 * 1024;
+
+    private static final int[] JPEG_QUALITIES = new int[] { 90, 75, 60, 45 };
+
+    /**
+     * Never scale below this edge length, even if the budget can't be met otherwise.
+     */
+    private static final int MIN_EDGE = 48;
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    final Thread thread = new Thread(r, "PhotoEncoder");
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+
+    private PhotoEncoder() {
+    }
+
+    /**
+     * Encodes the given photo on the background thread. Subclass {@link FutureTask} and
+     * override {@link FutureTask#done()} to be told when the bytes are ready.
+     */
+    public static void encodeAsync(FutureTask<byte[]> task) {
+        sExecutor.execute(task);
+    }
+
+    /**
+     * Returns a {@link Callable} that encodes the given photo to fit into maxBytes.
+     */
+    public static Callable<byte[]> newEncoder(final Bitmap photo, final int maxBytes) {
+        return new Callable<byte[]>() {
+            public byte[] call() {
+                return encode(photo, maxBytes);
+            }
+        };
+    }
+
+    /**
+     * Encodes the given photo to fit into maxBytes. This is slow, so don't call it
+     * from the UI thread.
+     */
+    public static byte[] encode(Bitmap photo, int maxBytes) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(maxBytes);
+
+        photo.compress(Bitmap.CompressFormat.PNG, 100, out);
+        if (out.size() <= maxBytes) {
+            return out.toByteArray();
+        }
+
+        Bitmap scaled = photo;
+        try {
+            while (true) {
+                for (int quality : JPEG_QUALITIES) {
+                    out.reset();
+                    scaled.compress(Bitmap.CompressFormat.JPEG, quality, out);
+                    if (out.size() <= maxBytes) {
+                        return out.toByteArray();
+                    }
+                }
+
+                final int width = scaled.getWidth() / 2;
+                final int height = scaled.getHeight() / 2;
+                if (width < MIN_EDGE || height < MIN_EDGE) {
+                    // Can't get any smaller, go with the lowest quality we have
+                    return out.toByteArray();
+                }
+                final Bitmap previous = scaled;
+                scaled = Bitmap.createScaledBitmap(previous, width, height, true);
+                recycleScaled(previous, photo);
+            }
+        } finally {
+            recycleScaled(scaled, photo);
+        }
+    }
+
+    /**
+     * Frees an intermediate bitmap, which nobody but the encoder has seen. The photo
+     * passed in belongs to the caller and is left alone.
+     */
+    private static void recycleScaled(Bitmap scaled, Bitmap photo) {
+        if (scaled != photo) {
+            scaled.recycle();
+        }
+    }
+}
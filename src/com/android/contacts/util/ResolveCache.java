@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.util;
+
+import com.google.android.collect.Sets;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide cache of the best {@link PackageManager} resolution for the intents
+ * QuickContact offers, along with its label and icon. Entries are keyed on the
+ * MIME-type of the data and the parts of the {@link Intent} that decide which
+ * activities match, so that showing QuickContact for further contacts doesn't have
+ * to ask the {@link PackageManager} again.
+ * <p>
+ * Any installed, removed or changed package may alter the resolution, so
+ * {@link com.android.contacts.model.Sources} calls {@link #invalidate()} on all
+ * package and locale broadcasts.
+ */
+public class ResolveCache {
+    /**
+     * Upper bound of cached resolutions. There is roughly one per MIME-type and IM
+     * protocol, so this is only reached by unusual intents like web links.
+     */
+    private static final int MAX_ENTRIES = 64;
+
+    /**
+     * Specific list {@link ApplicationInfo#packageName} of apps that are
+     * prefered <strong>only</strong> for the purposes of default icons when
+     * multiple {@link ResolveInfo} are found to match. This only happens when
+     * the user has not selected a default app yet, and they will still be
+     * presented with the system disambiguation dialog.
+     */
+    private static final HashSet<String> sPreferResolve = Sets.newHashSet(
+            "com.android.email",
+            "com.android.calendar",
+            "com.android.contacts",
+            "com.android.mms",
+            "com.android.phone",
+            "com.android.browser");
+
+    private static ResolveCache sInstance;
+
+    /**
+     * Cached entry holding the best {@link ResolveInfo} for a specific
+     * MIME-type and intent. The icon is kept as its constant state, so that every
+     * caller gets a drawable of its own.
+     */
+    private static class Entry {
+        public ResolveInfo bestResolve;
+        public CharSequence label;
+        public Drawable.ConstantState iconState;
+        public Drawable icon;
+    }
+
+    private final PackageManager mPackageManager;
+
+    private final LinkedHashMap<String, Entry> mCache =
+            new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /** Incremented by {@link #clear()}, so that running resolutions aren't cached. */
+    private int mGeneration;
+
+    public static synchronized ResolveCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ResolveCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Forgets all resolutions of the process-wide cache, if there is one.
+     */
+    public static synchronized void invalidate() {
+        if (sInstance != null) {
+            sInstance.clear();
+        }
+    }
+
+    private ResolveCache(Context context) {
+        mPackageManager = context.getPackageManager();
+    }
+
+    /**
+     * Get the {@link Entry} best associated with the given MIME-type and
+     * {@link Intent}, or create and populate a new one if it doesn't exist.
+     * The {@link PackageManager} is asked without holding the lock, so that a slow
+     * resolution doesn't hold up the other callers. If two callers resolve the same
+     * key at once, the entry that was published first wins.
+     */
+    private Entry getEntry(String mimeType, Intent intent) {
+        final String key = buildKey(mimeType, intent);
+        final int generation;
+        synchronized (this) {
+            final Entry entry = mCache.get(key);
+            if (entry != null) return entry;
+            generation = mGeneration;
+        }
+
+        final Entry entry = resolveEntry(intent);
+
+        synchronized (this) {
+            // Don't publish a resolution that an invalidation overtook meanwhile
+            if (generation != mGeneration) return entry;
+            final Entry published = mCache.get(key);
+            if (published != null) return published;
+            mCache.put(key, entry);
+            return entry;
+        }
+    }
+
+    /**
+     * Asks the {@link PackageManager} for the best resolution of the given
+     * {@link Intent}, along with its label and icon.
+     */
+    private Entry resolveEntry(Intent intent) {
+        final Entry entry = new Entry();
+        if (intent == null) return entry;
+
+        final List<ResolveInfo> matches = mPackageManager.queryIntentActivities(intent,
+                PackageManager.MATCH_DEFAULT_ONLY);
+
+        // Pick first match, otherwise best found
+        ResolveInfo bestResolve = null;
+        final int size = matches.size();
+        if (size == 1) {
+            bestResolve = matches.get(0);
+        } else if (size > 1) {
+            bestResolve = getBestResolve(intent, matches);
+        }
+
+        if (bestResolve != null) {
+            final Drawable icon = bestResolve.loadIcon(mPackageManager);
+
+            entry.bestResolve = bestResolve;
+            entry.label = bestResolve.loadLabel(mPackageManager);
+            entry.iconState = icon == null ? null : icon.getConstantState();
+            entry.icon = entry.iconState == null ? icon : null;
+        }
+        return entry;
+    }
+
+    /**
+     * Builds the cache key from the MIME-type and the parts of the {@link Intent}
+     * that {@link PackageManager#queryIntentActivities} matches on. The authority is
+     * included since it e.g. distinguishes the protocols of IM intents.
+     */
+    private String buildKey(String mimeType, Intent intent) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(mimeType);
+        if (intent != null) {
+            sb.append('|').append(intent.getAction());
+            sb.append('|').append(intent.getType());
+            final Uri data = intent.getData();
+            if (data != null) {
+                sb.append('|').append(data.getScheme());
+                sb.append('|').append(data.getAuthority());
+            }
+            if (intent.getCategories() != null) {
+                sb.append('|').append(intent.getCategories());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Best {@link ResolveInfo} when multiple found. Ties are broken by
+     * selecting first from the {@link #sPreferResolve} list of
+     * preferred packages, second by apps that live on the system partition,
+     * otherwise the app from the top of the list. This is
+     * <strong>only</strong> used for selecting a default icon for
+     * displaying in the track, and does not shortcut the system
+     * {@link Intent} disambiguation dialog.
+     */
+    private ResolveInfo getBestResolve(Intent intent, List<ResolveInfo> matches) {
+        // Try finding preferred activity, otherwise detect disambig
+        final ResolveInfo foundResolve = mPackageManager.resolveActivity(intent,
+                PackageManager.MATCH_DEFAULT_ONLY);
+        final boolean foundDisambig = (foundResolve.match &
+                IntentFilter.MATCH_CATEGORY_MASK) == 0;
+
+        if (!foundDisambig) {
+            // Found concrete match, so return directly
+            return foundResolve;
+        }
+
+        // Accept any package from prefer list, otherwise first system app
+        ResolveInfo firstSystem = null;
+        for (ResolveInfo info : matches) {
+            final boolean isSystem = (info.activityInfo.applicationInfo.flags
+                    & ApplicationInfo.FLAG_SYSTEM) != 0;
+            final boolean isPrefer = sPreferResolve
+                    .contains(info.activityInfo.applicationInfo.packageName);
+
+            if (isPrefer) return info;
+            if (isSystem && firstSystem == null) firstSystem = info;
+        }
+
+        // Return first system found, otherwise first from list
+        return firstSystem != null ? firstSystem : matches.get(0);
+    }
+
+    /**
+     * Check {@link PackageManager} to see if any apps offer to handle the
+     * given {@link Intent}.
+     */
+    public boolean hasResolve(String mimeType, Intent intent) {
+        return getEntry(mimeType, intent).bestResolve != null;
+    }
+
+    /**
+     * Returns the label of the app that best handles the given {@link Intent}, or
+     * null if there is none.
+     */
+    public CharSequence getLabel(String mimeType, Intent intent) {
+        return getEntry(mimeType, intent).label;
+    }
+
+    /**
+     * Return the icon of the app that best handles the given {@link Intent}, or
+     * null if there is none. The icon is created with the resources of the given
+     * {@link Context}.
+     */
+    public Drawable getIcon(Context context, String mimeType, Intent intent) {
+        final Entry entry = getEntry(mimeType, intent);
+        return entry.iconState != null
+                ? entry.iconState.newDrawable(context.getResources()) : entry.icon;
+    }
+
+    private synchronized void clear() {
+        mCache.clear();
+        mGeneration++;
+    }
+}
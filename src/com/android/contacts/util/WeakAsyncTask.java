@@ -57,12 +57,25 @@ public abstract class WeakAsyncTask<Params, Progress, Result, WeakTarget> extend
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected final void onProgressUpdate(Progress... values) {
+        final WeakTarget target = mTarget.get();
+        if (target != null) {
+            this.onProgressUpdate(target, values);
+        }
+    }
+
     protected void onPreExecute(WeakTarget target) {
         // No default action
     }
 
     protected abstract Result doInBackground(WeakTarget target, Params... params);
 
+    protected void onProgressUpdate(WeakTarget target, Progress... values) {
+        // No default action
+    }
+
     protected void onPostExecute(WeakTarget target, Result result) {
         // No default action
     }
@@ -17,6 +17,7 @@
 package com.android.contacts.views.detail;
 
 import com.android.contacts.util.DataStatus;
+import com.android.contacts.util.PerformanceMetrics;
 
 import android.content.ContentResolver;
 import android.content.ContentUris;
@@ -39,13 +40,21 @@ import android.util.Log;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
- * Loads a single Contact and all it constituent RawContacts.
+ * Loads a single Contact and all it constituent RawContacts. Once the header is loaded,
+ * the social rows are queried on a second thread while the raw contacts are loading.
  */
 public class ContactDetailLoader extends Loader<ContactDetailLoader.Result> {
     private static final String TAG = "ContactLoader";
 
+    private static final ExecutorService sSocialExecutor = Executors.newSingleThreadExecutor();
+
     private Uri mLookupUri;
     private Result mContact;
     private ForceLoadContentObserver mObserver;
@@ -235,6 +244,7 @@ public class ContactDetailLoader extends Loader<ContactDetailLoader.Result> {
 
         @Override
         protected Result doInBackground(Void... args) {
+            final long start = PerformanceMetrics.begin();
             try {
                 final ContentResolver resolver = getContext().getContentResolver();
                 final Uri uriCurrentFormat = convertLegacyIfNecessary(mLookupUri);
@@ -251,14 +261,46 @@ public class ContactDetailLoader extends Loader<ContactDetailLoader.Result> {
                     }
                 }
 
-                // These queries could be run in parallel (we did this until froyo). But unless
-                // we actually have two database connections there is no performance gain
-                loadSocial(resolver, result);
-                loadRawContacts(resolver, result);
+                // The provider reads on more than one connection, so run these queries in
+                // parallel. They fill separate parts of the result
+                final Result headerResult = result;
+                final Future<?> social = sSocialExecutor.submit(new Callable<Void>() {
+                    public Void call() {
+                        loadSocial(resolver, headerResult);
+                        return null;
+                    }
+                });
+                try {
+                    loadRawContacts(resolver, result);
+                } finally {
+                    waitForSocial(social);
+                }
 
                 return result;
             } catch (Exception e) {
                 return Result.ERROR;
+            } finally {
+                PerformanceMetrics.end(PerformanceMetrics.DETAIL_LOAD, start);
+            }
+        }
+
+        /**
+         * Waits for the social rows, rethrowing any problem loading them. Errors, such as
+         * a failed assertion of a test, are rethrown unchanged so that they aren't
+         * reported as a plain {@link Result#ERROR}.
+         */
+        private void waitForSocial(Future<?> social) {
+            try {
+                social.get();
+            } catch (InterruptedException e) {
+                social.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted loading social rows", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new RuntimeException("Problem loading social rows", e.getCause());
             }
         }
 
@@ -311,8 +353,10 @@ public class ContactDetailLoader extends Loader<ContactDetailLoader.Result> {
             final String uriLookupKey = Uri.encode(segments.get(2));
             final Uri contactUri = ContentUris.withAppendedId(Contacts.CONTENT_URI, uriContactId);
 
+            final long start = PerformanceMetrics.begin();
             final Cursor cursor = resolver.query(contactUri, ContactQuery.COLUMNS, null, null,
                     null);
+            PerformanceMetrics.end(PerformanceMetrics.DETAIL_QUERY_HEADER, start);
             if (cursor == null) {
                 Log.e(TAG, "No cursor returned in trySetupContactHeader/query");
                 return null;
@@ -371,9 +415,11 @@ public class ContactDetailLoader extends Loader<ContactDetailLoader.Result> {
 
             final Uri dataUri = Uri.withAppendedPath(result.getUri(),
                     Contacts.Data.CONTENT_DIRECTORY);
+            final long start = PerformanceMetrics.begin();
             final Cursor cursor = resolver.query(dataUri, StatusQuery.PROJECTION,
                     StatusUpdates.PRESENCE + " IS NOT NULL OR " + StatusUpdates.STATUS +
                     " IS NOT NULL", null, null);
+            PerformanceMetrics.end(PerformanceMetrics.DETAIL_QUERY_SOCIAL, start);
 
             if (cursor == null) {
                 Log.e(TAG, "Social cursor is null but it shouldn't be");
@@ -406,10 +452,12 @@ public class ContactDetailLoader extends Loader<ContactDetailLoader.Result> {
             }
 
             // Read the constituent raw contacts
+            final long start = PerformanceMetrics.begin();
             final Cursor cursor = resolver.query(RawContactsEntity.CONTENT_URI, null,
                     RawContacts.CONTACT_ID + "=?", new String[] {
                             String.valueOf(result.mId)
                     }, null);
+            PerformanceMetrics.end(PerformanceMetrics.DETAIL_QUERY_RAW_CONTACTS, start);
             if (cursor == null) {
                 Log.e(TAG, "Raw contacts cursor is null but it shouldn't be");
                 return;
@@ -37,6 +37,7 @@ import com.android.contacts.model.Sources;
 import com.android.contacts.model.ContactsSource.EditType;
 import com.android.contacts.model.Editor.EditorListener;
 import com.android.contacts.model.EntityDelta.ValuesDelta;
+import com.android.contacts.ui.PendingPhotos;
 import com.android.contacts.ui.ViewIdGenerator;
 import com.android.contacts.ui.widget.BaseContactEditorView;
 import com.android.contacts.ui.widget.PhotoEditorView;
@@ -77,6 +78,7 @@ import android.provider.ContactsContract.Contacts;
 import android.provider.ContactsContract.RawContacts;
 import android.provider.ContactsContract.CommonDataKinds.Email;
 import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.provider.ContactsContract.CommonDataKinds.Photo;
 import android.util.Log;
 import android.view.ContextThemeWrapper;
 import android.view.LayoutInflater;
@@ -113,6 +115,8 @@ public class ContactEditFragment extends LoaderManagingFragment<ContactEditLoade
     private static final String KEY_QUERY_SELECTION = "queryselection";
     private static final String KEY_QUERY_SELECTION_ARGS = "queryselectionargs";
     private static final String KEY_CONTACT_ID_FOR_JOIN = "contactidforjoin";
+    private static final String KEY_PENDING_PHOTOS = "pendingphotos";
+    private static final String KEY_PENDING_SAVE_MODE = "pendingsavemode";
 
     public static final int SAVE_MODE_DEFAULT = 0;
     public static final int SAVE_MODE_SPLIT = 1;
@@ -148,6 +152,22 @@ public class ContactEditFragment extends LoaderManagingFragment<ContactEditLoade
 
     private ViewIdGenerator mViewIdGenerator;
 
+    /**
+     * Incremented by every {@link #bindEditors(boolean)}, so that queued binding steps of an
+     * earlier call can tell that they are outdated.
+     */
+    private int mBindGeneration;
+    private final ArrayList<BaseContactEditorView> mRecycledEditors =
+            new ArrayList<BaseContactEditorView>();
+
+    private final PendingPhotos mPendingPhotos = new PendingPhotos(new PhotoEncodedListener());
+
+    /**
+     * Save mode of a save that waits for {@link #mPendingPhotos}, or -1.
+     */
+    private int mPendingSaveMode = -1;
+    private ProgressDialog mPendingSaveProgress;
+
     public ContactEditFragment() {
     }
 
@@ -184,16 +204,35 @@ public class ContactEditFragment extends LoaderManagingFragment<ContactEditLoade
         mMimeType = mimeType;
         mIntentExtras = intentExtras;
 
+        // Editors restored from the saved state are bound all at once, so that they
+        // exist when the framework restores their view state
+        final boolean restored = mState != null;
+
         if (Intent.ACTION_EDIT.equals(mAction)) {
-            // Read initial state from database
             if (mCallbacks != null) mCallbacks.setTitleTo(R.string.editContact_title_edit);
-            startLoading(LOADER_DATA, null);
+            if (restored) {
+                bindEditors(false);
+            } else {
+                // Read initial state from database
+                startLoading(LOADER_DATA, null);
+            }
         } else if (Intent.ACTION_INSERT.equals(mAction)) {
             if (mCallbacks != null) mCallbacks.setTitleTo(R.string.editContact_title_insert);
 
-            doAddAction();
+            if (restored) {
+                bindEditors(false);
+            } else {
+                doAddAction();
+            }
         } else throw new IllegalArgumentException("Unknown Action String " + mAction +
                 ". Only support " + Intent.ACTION_EDIT + " or " + Intent.ACTION_INSERT);
+
+        if (restored && mPendingSaveMode != -1) {
+            // The user saved while photos were still encoding, carry on with that save
+            final int saveMode = mPendingSaveMode;
+            mPendingSaveMode = -1;
+            doSaveAction(saveMode);
+        }
     }
 
     public void setCallbacks(Callbacks callbacks) {
@@ -221,6 +260,18 @@ public class ContactEditFragment extends LoaderManagingFragment<ContactEditLoade
             mQuerySelection = savedState.getString(KEY_QUERY_SELECTION);
             mQuerySelectionArgs = savedState.getStringArray(KEY_QUERY_SELECTION_ARGS);
             mContactIdForJoin = savedState.getLong(KEY_CONTACT_ID_FOR_JOIN);
+            mPendingPhotos.restoreInstanceState(savedState, KEY_PENDING_PHOTOS);
+            mPendingSaveMode = savedState.getInt(KEY_PENDING_SAVE_MODE, -1);
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        mPendingPhotos.clear();
+        if (mPendingSaveProgress != null) {
+            mPendingSaveProgress.dismiss();
+            mPendingSaveProgress = null;
         }
     }
 
@@ -247,7 +298,7 @@ public class ContactEditFragment extends LoaderManagingFragment<ContactEditLoade
 
     public void setData(ContactEditLoader.Result data) {
         mState = data.getEntitySet();
-        bindEditors();
+        bindEditors(true);
     }
 
     public void selectAccountAndCreateContact(ArrayList<Account> accounts, boolean isNewContact) {
@@ -305,51 +356,117 @@ public class ContactEditFragment extends LoaderManagingFragment<ContactEditLoade
             mState.add(insert);
         }
 
-        bindEditors();
+        bindEditors(true);
     }
 
-    private void bindEditors() {
+    /**
+     * Rebuilds the editors to match {@link #mState}. Anything that acts on all raw contacts
+     * has to use {@link #mState}, because the editors may not all have been bound yet.
+     *
+     * @param incremental whether to bind the editors after the first one over the next
+     *     frames rather than all at once
+     */
+    private void bindEditors(boolean incremental) {
         // Sort the editors
         Collections.sort(mState, mComparator);
 
-        // Remove any existing editors and rebuild any visible
+        // Detach the existing editors, setState() can rebuild them for any raw contact
+        for (int i = 0; i < mContent.getChildCount(); i++) {
+            mRecycledEditors.add((BaseContactEditorView) mContent.getChildAt(i));
+        }
         mContent.removeAllViews();
 
-        final LayoutInflater inflater = (LayoutInflater) mContext.getSystemService(
-                Context.LAYOUT_INFLATER_SERVICE);
-        final Sources sources = Sources.getInstance(mContext);
-        int size = mState.size();
-        for (int i = 0; i < size; i++) {
-            // TODO ensure proper ordering of entities in the list
-            final EntityDelta entity = mState.get(i);
-            final ValuesDelta values = entity.getValues();
-            if (!values.isVisible()) continue;
-
-            final String accountType = values.getAsString(RawContacts.ACCOUNT_TYPE);
-            final ContactsSource source = sources.getInflatedSource(accountType,
-                    ContactsSource.LEVEL_CONSTRAINTS);
-            final long rawContactId = values.getAsLong(RawContacts._ID);
-
-            final BaseContactEditorView editor;
-            if (!source.readOnly) {
-                editor = (BaseContactEditorView) inflater.inflate(R.layout.item_contact_editor,
-                        mContent, false);
-            } else {
-                editor = (BaseContactEditorView) inflater.inflate(
-                        R.layout.item_read_only_contact_editor, mContent, false);
+        final int generation = ++mBindGeneration;
+        if (incremental) {
+            // Show the first editor right away and the remaining ones over the next frames,
+            // so that large aggregates don't block the UI thread until all are inflated
+            bindEditorsFrom(0, generation);
+        } else {
+            for (EntityDelta entity : mState) {
+                if (entity.getValues().isVisible()) {
+                    bindEditor(entity);
+                }
             }
-            final PhotoEditorView photoEditor = editor.getPhotoEditor();
-            photoEditor.setEditorListener(new PhotoListener(rawContactId, source.readOnly,
-                    photoEditor));
-
-            mContent.addView(editor);
-            editor.setState(entity, source, mViewIdGenerator);
+            mRecycledEditors.clear();
         }
 
         // Show editor now that we've loaded state
         mContent.setVisibility(View.VISIBLE);
     }
 
+    /**
+     * Binds the next visible editor at or after the given position and schedules
+     * the one after it. Steps of an outdated generation are dropped.
+     */
+    private void bindEditorsFrom(int position, final int generation) {
+        final int size = mState.size();
+        while (position < size && !mState.get(position).getValues().isVisible()) {
+            position++;
+        }
+        if (position < size) {
+            bindEditor(mState.get(position));
+        }
+
+        final int next = position + 1;
+        if (next >= size) {
+            // Anything left over belonged to raw contacts that are gone now
+            mRecycledEditors.clear();
+            return;
+        }
+        mContent.post(new Runnable() {
+            public void run() {
+                if (generation == mBindGeneration && mState != null) {
+                    bindEditorsFrom(next, generation);
+                }
+            }
+        });
+    }
+
+    private void bindEditor(EntityDelta entity) {
+        // TODO ensure proper ordering of entities in the list
+        final ValuesDelta values = entity.getValues();
+        final String accountType = values.getAsString(RawContacts.ACCOUNT_TYPE);
+        final ContactsSource source = Sources.getInstance(mContext).getInflatedSource(
+                accountType, ContactsSource.LEVEL_CONSTRAINTS);
+        final long rawContactId = values.getAsLong(RawContacts._ID);
+
+        final BaseContactEditorView editor = obtainEditor(source.readOnly
+                ? R.layout.item_read_only_contact_editor : R.layout.item_contact_editor);
+        final PhotoEditorView photoEditor = editor.getPhotoEditor();
+        photoEditor.setEditorListener(new PhotoListener(rawContactId, source.readOnly,
+                photoEditor));
+
+        mContent.addView(editor);
+        editor.setState(entity, source, mViewIdGenerator);
+
+        final Bitmap pendingPhoto = mPendingPhotos.get(rawContactId);
+        if (pendingPhoto != null) {
+            photoEditor.setPendingPhoto(pendingPhoto);
+        }
+    }
+
+    /**
+     * Returns a detached editor inflated from the given layout, reusing one from the
+     * previous bind if possible.
+     */
+    private BaseContactEditorView obtainEditor(int layoutResId) {
+        for (int i = 0; i < mRecycledEditors.size(); i++) {
+            final BaseContactEditorView editor = mRecycledEditors.get(i);
+            if (editor.getTag().equals(layoutResId)) {
+                mRecycledEditors.remove(i);
+                return editor;
+            }
+        }
+
+        final LayoutInflater inflater = (LayoutInflater) mContext.getSystemService(
+                Context.LAYOUT_INFLATER_SERVICE);
+        final BaseContactEditorView editor =
+                (BaseContactEditorView) inflater.inflate(layoutResId, mContent, false);
+        // Remember the layout, so the editor is only reused for the same kind of source
+        editor.setTag(layoutResId);
+        return editor;
+    }
+
     public boolean onCreateOptionsMenu(Menu menu, final MenuInflater inflater) {
         inflater.inflate(R.menu.edit, menu);
 
@@ -738,6 +855,16 @@ public class ContactEditFragment extends LoaderManagingFragment<ContactEditLoade
             return false;
         }
 
+        if (!mPendingPhotos.isEmpty()) {
+            // Photos are encoded in the background, save once they are part of the state
+            if (mPendingSaveProgress == null) {
+                mPendingSaveProgress = ProgressDialog.show(mContext, null,
+                        mContext.getText(R.string.savingContact));
+            }
+            mPendingSaveMode = saveMode;
+            return true;
+        }
+
         // TODO: Status still needed?
         //mStatus = STATUS_SAVING;
         final PersistTask task = new PersistTask(this, saveMode);
@@ -1091,16 +1218,17 @@ public class ContactEditFragment extends LoaderManagingFragment<ContactEditLoade
                     // Set the photo as super primary
                     mEditor.setSuperPrimary(true);
 
-                    // And set all other photos as not super primary
-                    int count = mContent.getChildCount();
-                    for (int i = 0; i < count; i++) {
-                        View childView = mContent.getChildAt(i);
-                        if (childView instanceof BaseContactEditorView) {
-                            BaseContactEditorView editor = (BaseContactEditorView) childView;
-                            PhotoEditorView photoEditor = editor.getPhotoEditor();
-                            if (!photoEditor.equals(mEditor)) {
-                                photoEditor.setSuperPrimary(false);
-                            }
+                    // And set all other photos as not super primary, including those of
+                    // editors that haven't been bound yet
+                    for (EntityDelta state : mState) {
+                        final Long rawContactId = state.getValues().getAsLong(RawContacts._ID);
+                        if (rawContactId != null && rawContactId == mRawContactId) {
+                            continue;
+                        }
+                        final ValuesDelta photo = state.getPrimaryEntry(
+                                Photo.CONTENT_ITEM_TYPE);
+                        if (photo != null) {
+                            photo.put(Photo.IS_SUPER_PRIMARY, 0);
                         }
                     }
                     break;
@@ -1108,6 +1236,7 @@ public class ContactEditFragment extends LoaderManagingFragment<ContactEditLoade
                 case 1:
                     // Remove the photo
                     mEditor.setPhotoBitmap(null);
+                    mPendingPhotos.remove(mRawContactId);
                     break;
 
                 case 2:
@@ -1119,10 +1248,39 @@ public class ContactEditFragment extends LoaderManagingFragment<ContactEditLoade
     }
 
 
+    /**
+     * Puts photos into the state once they have been encoded, and runs a save that
+     * waited for them.
+     */
+    private class PhotoEncodedListener implements PendingPhotos.Listener {
+        public void onPhotoEncoded(long rawContactId, byte[] photoBytes) {
+            final EntityDelta state = mState == null ? null
+                    : mState.getByRawContactId(rawContactId);
+            final ValuesDelta entry = state == null ? null
+                    : state.getPrimaryEntry(Photo.CONTENT_ITEM_TYPE);
+            if (photoBytes == null) {
+                Toast.makeText(mContext, R.string.attachPhotoErrorToast,
+                        Toast.LENGTH_LONG).show();
+            } else if (entry != null) {
+                entry.put(Photo.PHOTO, photoBytes);
+            }
+
+            if (mPendingSaveMode != -1 && mPendingPhotos.isEmpty()) {
+                final int saveMode = mPendingSaveMode;
+                mPendingSaveMode = -1;
+                mPendingSaveProgress.dismiss();
+                mPendingSaveProgress = null;
+                doSaveAction(saveMode);
+            }
+        }
+    }
+
     private class DeleteClickListener implements DialogInterface.OnClickListener {
         public void onClick(DialogInterface dialog, int which) {
             // TODO: Don't do this from the UI thread
             final Sources sources = Sources.getInstance(mContext);
+            // Photos don't matter anymore, don't wait for them
+            mPendingPhotos.clear();
             // Mark all raw contacts for deletion
             for (EntityDelta delta : mState) {
                 delta.markDeleted();
@@ -1279,29 +1437,56 @@ public class ContactEditFragment extends LoaderManagingFragment<ContactEditLoade
         outState.putString(KEY_QUERY_SELECTION, mQuerySelection);
         outState.putStringArray(KEY_QUERY_SELECTION_ARGS, mQuerySelectionArgs);
         outState.putLong(KEY_CONTACT_ID_FOR_JOIN, mContactIdForJoin);
+        mPendingPhotos.saveInstanceState(outState, KEY_PENDING_PHOTOS);
+        outState.putInt(KEY_PENDING_SAVE_MODE, mPendingSaveMode);
         super.onSaveInstanceState(outState);
     }
 
+    /**
+     * Sets the photo the user picked for the given raw contact. This works on
+     * {@link #mState}, since the editor of the raw contact may not have been bound yet,
+     * for example right after a rotation.
+     *
+     * @return false if the raw contact is no longer present
+     */
+    private boolean setPhoto(long rawContactId, Bitmap photo) {
+        final EntityDelta state = mState == null ? null : mState.getByRawContactId(rawContactId);
+        if (state == null) {
+            return false;
+        }
+
+        final String accountType = state.getValues().getAsString(RawContacts.ACCOUNT_TYPE);
+        final ContactsSource source = Sources.getInstance(mContext).getInflatedSource(
+                accountType, ContactsSource.LEVEL_CONSTRAINTS);
+        EntityModifier.ensureKindExists(state, source, Photo.CONTENT_ITEM_TYPE);
+        final ValuesDelta entry = state.getPrimaryEntry(Photo.CONTENT_ITEM_TYPE);
+        if (entry == null) {
+            return false;
+        }
+
+        // When the user chooses a new photo mark it as super primary
+        entry.setFromTemplate(false);
+        entry.put(Photo.IS_SUPER_PRIMARY, 1);
+        mPendingPhotos.put(rawContactId, photo);
+
+        // Show it right away if the editor is there, otherwise binding it will
+        for (int i = 0; i < mContent.getChildCount(); i++) {
+            final BaseContactEditorView editor = (BaseContactEditorView) mContent.getChildAt(i);
+            if (editor.getRawContactId() == rawContactId) {
+                editor.getPhotoEditor().setPendingPhoto(photo);
+                break;
+            }
+        }
+        return true;
+    }
+
     public void onActivityResult(int requestCode, int resultCode, Intent data) {
         // Ignore failed requests
         if (resultCode != Activity.RESULT_OK) return;
         switch (requestCode) {
             case R.id.edit_request_code_photo_picked_with_data: {
-                BaseContactEditorView requestingEditor = null;
-                for (int i = 0; i < mContent.getChildCount(); i++) {
-                    View childView = mContent.getChildAt(i);
-                    if (childView instanceof BaseContactEditorView) {
-                        BaseContactEditorView editor = (BaseContactEditorView) childView;
-                        if (editor.getRawContactId() == mRawContactIdRequestingPhoto) {
-                            requestingEditor = editor;
-                            break;
-                        }
-                    }
-                }
-
-                if (requestingEditor != null) {
-                    final Bitmap photo = data.getParcelableExtra("data");
-                    requestingEditor.setPhotoBitmap(photo);
+                final Bitmap photo = data.getParcelableExtra("data");
+                if (setPhoto(mRawContactIdRequestingPhoto, photo)) {
                     mRawContactIdRequestingPhoto = -1;
                 } else {
                     // The contact that requested the photo is no longer present.
@@ -6,6 +6,7 @@ import com.android.contacts.model.EntityDelta;
 import com.android.contacts.model.EntityModifier;
 import com.android.contacts.model.EntitySet;
 import com.android.contacts.model.Sources;
+import com.android.contacts.util.PerformanceMetrics;
 
 import android.content.ContentResolver;
 import android.content.ContentUris;
@@ -60,6 +61,7 @@ public class ContactEditLoader extends Loader<ContactEditLoader.Result> {
     private final class LoadContactTask extends AsyncTask<Void, Void, Result> {
         @Override
         protected Result doInBackground(Void... params) {
+            final long start = PerformanceMetrics.begin();
             final ContentResolver resolver = getContext().getContentResolver();
             final Uri uriCurrentFormat = convertLegacyIfNecessary(mLookupUri);
 
@@ -76,8 +78,11 @@ public class ContactEditLoader extends Loader<ContactEditLoader.Result> {
                 contactId = ContactsUtils.queryForContactId(resolver, rawContactId);
             } else throw new IllegalStateException();
 
-            return new Result(EntitySet.fromQuery(resolver, RawContacts.CONTACT_ID + "=?",
-                    new String[] { String.valueOf(contactId) }, null));
+            final Result result = new Result(EntitySet.fromQuery(resolver,
+                    RawContacts.CONTACT_ID + "=?", new String[] { String.valueOf(contactId) },
+                    null));
+            PerformanceMetrics.end(PerformanceMetrics.EDIT_LOAD, start);
+            return result;
         }
 
         /**
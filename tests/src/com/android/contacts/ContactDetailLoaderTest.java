@@ -433,6 +433,7 @@ public class ContactDetailLoaderTest extends AndroidTestCase {
                 .withSelection(
                         RawContacts.CONTACT_ID + "=?",
                         new String[] { String.valueOf(contactId) } )
+                .withAnyOrder()
                 .returnRow(
                         rawContactId, "mockAccountName", "mockAccountType",
                         0, 1, "aa%12%@!",
@@ -459,6 +460,7 @@ public class ContactDetailLoaderTest extends AndroidTestCase {
                             StatusUpdates.PRESENCE +" IS NOT NULL OR " +
                             StatusUpdates.STATUS + " IS NOT NULL",
                             (String[]) null)
+                    .withAnyOrder()
                     .returnRow(
                             expectedContactId, "This is a mock Status update", 0,
                             1, 2,
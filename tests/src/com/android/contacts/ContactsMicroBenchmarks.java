@@ -0,0 +1,397 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts;
+
+import com.android.contacts.Collapser.Collapsible;
+import com.android.contacts.GroupingListAdapter.PositionMetadata;
+import com.android.contacts.model.EntityDelta;
+import com.android.contacts.model.EntitySet;
+import com.android.contacts.model.EntityDelta.ValuesDelta;
+import com.android.contacts.widget.CompositeListAdapter;
+import com.android.contacts.widget.TextHighlightingAnimation;
+import com.android.contacts.widget.TextHighlightingAnimation.TextWithHighlightingImpl;
+import com.google.android.collect.Lists;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Looper;
+import android.provider.CallLog.Calls;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.text.TextUtils;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Micro benchmarks of the code paths that run while editing contacts and while
+ * scrolling lists. Each benchmark runs with every data size in {@link #SIZES}.
+ *
+ * Run the benchmarks and collect their results with:
+ *   adb shell am instrument -w -e class com.android.contacts.ContactsMicroBenchmarks \
+ *     com.android.contacts.tests/android.test.InstrumentationTestRunner
+ *   adb logcat -s ContactsBenchmark
+ */
+@LargeTest
+public class ContactsMicroBenchmarks extends MicroBenchmarkTestCase {
+
+    private static final String[] CALL_LOG_PROJECTION = new String[] {
+        Calls._ID,
+        Calls.NUMBER,
+        Calls.DATE,
+    };
+
+    private static final int CALLS_NUMBER_COLUMN_INDEX = 1;
+
+    private static final String[] FIRST_NAMES = new String[] {
+        "John", "Jane", "Bob", "Alice", "Mary", "Peter", "Sam", "Kim",
+    };
+
+    private static final String[] LAST_NAMES = new String[] {
+        "Smith", "Doe", "Miller", "Johnson", "Brown", "Lee", "Wilson", "Taylor",
+    };
+
+    private final Random mRandom = new Random(42);
+
+    /**
+     * Builds an existing raw contact with the given number of phones, where every
+     * other phone has been edited.
+     */
+    private EntityDelta buildEditedEntity(long rawContactId, int phoneCount) {
+        final ContentValues[] phones = new ContentValues[phoneCount];
+        for (int i = 0; i < phoneCount; i++) {
+            phones[i] = EntitySetTests.buildPhone(rawContactId * 1000 + i);
+        }
+        final EntityDelta delta = EntitySetTests.buildBeforeEntity(rawContactId, 1, phones);
+        int i = 0;
+        for (ValuesDelta phone : delta.getMimeEntries(Phone.CONTENT_ITEM_TYPE)) {
+            if (i++ % 2 == 0) {
+                phone.put(Phone.NUMBER, "555-" + i);
+            }
+        }
+        return delta;
+    }
+
+    private EntityDelta buildUnchangedEntity(long rawContactId, int phoneCount) {
+        final ContentValues[] phones = new ContentValues[phoneCount];
+        for (int i = 0; i < phoneCount; i++) {
+            phones[i] = EntitySetTests.buildPhone(rawContactId * 1000 + i);
+        }
+        return EntitySetTests.buildBeforeEntity(rawContactId, 2, phones);
+    }
+
+    public void testEntityDeltaBuildDiff() {
+        for (int size : SIZES) {
+            final EntityDelta delta = buildEditedEntity(1, size);
+            final ArrayList<ContentProviderOperation> diff = Lists.newArrayList();
+            measure("EntityDelta.buildDiff", size, new Runnable() {
+                public void run() {
+                    diff.clear();
+                    delta.buildDiff(diff);
+                }
+            });
+        }
+    }
+
+    public void testEntityDeltaMergeAfter() {
+        for (int size : SIZES) {
+            // Merging only replaces the "after" values of the local copy, so
+            // repeating it with the same input does the same work every time
+            final EntityDelta remote = buildEditedEntity(1, size);
+            final EntityDelta local = buildUnchangedEntity(1, size);
+            measure("EntityDelta.mergeAfter", size, new Runnable() {
+                public void run() {
+                    EntityDelta.mergeAfter(local, remote);
+                }
+            });
+        }
+    }
+
+    public void testEntitySetBuildDiff() {
+        for (int size : SIZES) {
+            // Spread the data rows over raw contacts of ten phones each
+            final int rawContactCount = Math.max(1, size / 10);
+            final EntityDelta[] deltas = new EntityDelta[rawContactCount + 1];
+            for (int i = 0; i < rawContactCount; i++) {
+                deltas[i] = buildEditedEntity(i + 1, size / rawContactCount);
+            }
+            deltas[rawContactCount] = EntitySetTests.buildAfterEntity(
+                    EntitySetTests.buildPhone(0));
+            final EntitySet set = EntitySetTests.buildSet(deltas);
+            measure("EntitySet.buildDiff", size, new Runnable() {
+                public void run() {
+                    set.buildDiff();
+                }
+            });
+        }
+    }
+
+    private static class CollapsibleNumber implements Collapsible<CollapsibleNumber> {
+        public final String number;
+
+        public CollapsibleNumber(String number) {
+            this.number = number;
+        }
+
+        public boolean collapseWith(CollapsibleNumber t) {
+            return shouldCollapseWith(t);
+        }
+
+        public boolean shouldCollapseWith(CollapsibleNumber t) {
+            return t != null && TextUtils.equals(number, t.number);
+        }
+    }
+
+    public void testCollapserCollapseList() {
+        for (int size : SIZES) {
+            // About every fourth number is a duplicate
+            final ArrayList<CollapsibleNumber> template = Lists.newArrayList();
+            for (int i = 0; i < size; i++) {
+                template.add(new CollapsibleNumber(
+                        Integer.toString(mRandom.nextInt(size * 3 / 4 + 1))));
+            }
+            final ArrayList<CollapsibleNumber> list =
+                    new ArrayList<CollapsibleNumber>(size);
+            measure("Collapser.collapseList", size, new Runnable() {
+                public void run() {
+                    list.clear();
+                    list.addAll(template);
+                    Collapser.collapseList(list);
+                }
+            });
+        }
+    }
+
+    private static class CallLogAdapter extends GroupingListAdapter {
+        public CallLogAdapter(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected void addGroups(Cursor cursor) {
+            int count = cursor.getCount();
+            int groupItemCount = 1;
+            cursor.moveToFirst();
+            String currentValue = cursor.getString(CALLS_NUMBER_COLUMN_INDEX);
+            for (int i = 1; i < count; i++) {
+                cursor.moveToNext();
+                String value = cursor.getString(CALLS_NUMBER_COLUMN_INDEX);
+                if (TextUtils.equals(value, currentValue)) {
+                    groupItemCount++;
+                } else {
+                    if (groupItemCount > 1) {
+                        addGroup(i - groupItemCount, groupItemCount, false);
+                    }
+
+                    groupItemCount = 1;
+                    currentValue = value;
+                }
+            }
+            if (groupItemCount > 1) {
+                addGroup(count - groupItemCount, groupItemCount, false);
+            }
+        }
+
+        @Override
+        protected void bindChildView(View view, Context context, Cursor cursor) {
+        }
+
+        @Override
+        protected void bindGroupView(View view, Context context, Cursor cursor, int groupSize,
+                boolean expanded) {
+        }
+
+        @Override
+        protected void bindStandAloneView(View view, Context context, Cursor cursor) {
+        }
+
+        @Override
+        protected View newChildView(Context context, ViewGroup parent) {
+            return null;
+        }
+
+        @Override
+        protected View newGroupView(Context context, ViewGroup parent) {
+            return null;
+        }
+
+        @Override
+        protected View newStandAloneView(Context context, ViewGroup parent) {
+            return null;
+        }
+    }
+
+    /**
+     * Builds a call log where runs of calls from the same number form groups.
+     */
+    private GroupingListAdapter buildCallLogAdapter(int size) {
+        final MatrixCursor cursor = new MatrixCursor(CALL_LOG_PROJECTION);
+        String number = null;
+        for (int i = 0; i < size; i++) {
+            if (number == null || mRandom.nextInt(3) == 0) {
+                number = Integer.toString(mRandom.nextInt(100));
+            }
+            cursor.addRow(new Object[] { i + 1, number, 1000000 - i });
+        }
+
+        final GroupingListAdapter adapter = new CallLogAdapter(getContext());
+        adapter.changeCursor(cursor);
+
+        // Expand every other group header
+        for (int position = 0, expand = 0; position < adapter.getCount(); position++) {
+            if (adapter.getItemViewType(position) == GroupingListAdapter.ITEM_TYPE_GROUP_HEADER
+                    && expand++ % 2 == 0) {
+                adapter.toggleGroup(position);
+            }
+        }
+        return adapter;
+    }
+
+    public void testGroupingListAdapterPositionMetadata() {
+        for (int size : SIZES) {
+            final GroupingListAdapter adapter = buildCallLogAdapter(size);
+            final int count = adapter.getCount();
+            measure("GroupingListAdapter.obtainPositionMetadata", size, new Runnable() {
+                public void run() {
+                    // A fresh metadata object each time to defeat its position cache
+                    for (int position = 0; position < count; position++) {
+                        adapter.obtainPositionMetadata(new PositionMetadata(), position);
+                    }
+                }
+            });
+        }
+    }
+
+    public void testGroupingListAdapterToggleGroup() {
+        for (int size : SIZES) {
+            final GroupingListAdapter adapter = buildCallLogAdapter(size);
+            int header = -1;
+            for (int position = adapter.getCount() - 1; position >= 0; position--) {
+                if (adapter.getItemViewType(position)
+                        == GroupingListAdapter.ITEM_TYPE_GROUP_HEADER) {
+                    header = position;
+                    break;
+                }
+            }
+            if (header == -1) {
+                continue;
+            }
+
+            final int lastHeader = header;
+            measure("GroupingListAdapter.toggleGroup", size, new Runnable() {
+                public void run() {
+                    adapter.toggleGroup(lastHeader);
+                    adapter.getCount();
+                    adapter.toggleGroup(lastHeader);
+                    adapter.getCount();
+                }
+            });
+        }
+    }
+
+    public void testCompositeListAdapterPositionMapping() {
+        for (int size : SIZES) {
+            // Ten partitions of equal size
+            final CompositeListAdapter adapter = new CompositeListAdapter();
+            for (int i = 0; i < 10; i++) {
+                final ArrayList<String> items = Lists.newArrayList();
+                for (int j = 0; j < size / 10; j++) {
+                    items.add(Integer.toString(j));
+                }
+                adapter.addAdapter(new ArrayAdapter<String>(getContext(),
+                        android.R.layout.simple_list_item_1, items));
+            }
+            final int count = adapter.getCount();
+            measure("CompositeListAdapter.getItem", size, new Runnable() {
+                public void run() {
+                    for (int position = 0; position < count; position++) {
+                        adapter.getItemViewType(position);
+                        adapter.getItem(position);
+                    }
+                }
+            });
+        }
+    }
+
+    public void testContactsSectionIndexer() {
+        for (int size : SIZES) {
+            final String[] sections = new String[26];
+            final int[] counts = new int[26];
+            int total = 0;
+            for (int i = 0; i < sections.length; i++) {
+                sections[i] = String.valueOf((char) ('A' + i));
+                counts[i] = mRandom.nextInt(size * 2 / sections.length + 1);
+                total += counts[i];
+            }
+            final ContactsSectionIndexer indexer = new ContactsSectionIndexer(sections, counts);
+            final int count = total;
+            measure("ContactsSectionIndexer.getSectionForPosition", size, new Runnable() {
+                public void run() {
+                    for (int position = 0; position < count; position++) {
+                        indexer.getSectionForPosition(position);
+                    }
+                }
+            });
+        }
+    }
+
+    private static CharArrayBuffer toBuffer(String text) {
+        final CharArrayBuffer buffer = new CharArrayBuffer(text.length());
+        text.getChars(0, text.length(), buffer.data, 0);
+        buffer.sizeCopied = text.length();
+        return buffer;
+    }
+
+    public void testTextHighlightingSetText() {
+        // The animation posts to a handler of the current thread
+        if (Looper.myLooper() == null) {
+            Looper.prepare();
+        }
+        final TextHighlightingAnimation animation = new TextHighlightingAnimation(0) {
+            @Override
+            protected void invalidate() {
+            }
+        };
+
+        for (int size : SIZES) {
+            // Display names followed by their alternative, as bound by the contact list
+            final CharArrayBuffer[] names = new CharArrayBuffer[size];
+            final CharArrayBuffer[] alternativeNames = new CharArrayBuffer[size];
+            for (int i = 0; i < size; i++) {
+                final String first = FIRST_NAMES[mRandom.nextInt(FIRST_NAMES.length)];
+                final String last = LAST_NAMES[mRandom.nextInt(LAST_NAMES.length)];
+                names[i] = toBuffer(first + " " + last);
+                alternativeNames[i] = toBuffer(last + ", " + first);
+            }
+            final TextWithHighlightingImpl text = animation.createTextWithHighlighting();
+            measure("TextWithHighlighting.setText", size, new Runnable() {
+                public void run() {
+                    for (int i = 0; i < names.length; i++) {
+                        text.setText(names[i], alternativeNames[i]);
+                    }
+                }
+            });
+        }
+    }
+}
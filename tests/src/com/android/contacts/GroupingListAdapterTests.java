@@ -26,6 +26,9 @@ import android.text.TextUtils;
 import android.view.View;
 import android.view.ViewGroup;
 
+import java.util.HashSet;
+import java.util.Random;
+
 import static com.android.contacts.GroupingListAdapter.ITEM_TYPE_STANDALONE;
 import static com.android.contacts.GroupingListAdapter.ITEM_TYPE_IN_GROUP;
 import static com.android.contacts.GroupingListAdapter.ITEM_TYPE_GROUP_HEADER;
@@ -303,6 +306,111 @@ public class GroupingListAdapterTests extends AndroidTestCase {
         assertEquals(250, mAdapter.getCount());
     }
 
+    public void testGroupIndexWithExpandedGroups() {
+        buildCursor("1", "2", "2", "3", "4", "4", "4", "5", "5");
+        mAdapter.changeCursor(mCursor);
+        mAdapter.toggleGroup(3);
+        mAdapter.toggleGroup(1);
+
+        // Expanding a group shifts all following positions, including the ones past the
+        // last group
+        assertEquals(10, mAdapter.getCount());
+        assertPositionMetadata(0, ITEM_TYPE_STANDALONE, false, 0);
+        assertPositionMetadata(1, ITEM_TYPE_GROUP_HEADER, true, 1);
+        assertPositionMetadata(2, ITEM_TYPE_IN_GROUP, false, 1);
+        assertPositionMetadata(3, ITEM_TYPE_IN_GROUP, false, 2);
+        assertPositionMetadata(4, ITEM_TYPE_STANDALONE, false, 3);
+        assertPositionMetadata(5, ITEM_TYPE_GROUP_HEADER, true, 4);
+        assertPositionMetadata(6, ITEM_TYPE_IN_GROUP, false, 4);
+        assertPositionMetadata(7, ITEM_TYPE_IN_GROUP, false, 5);
+        assertPositionMetadata(8, ITEM_TYPE_IN_GROUP, false, 6);
+        assertPositionMetadata(9, ITEM_TYPE_GROUP_HEADER, false, 7);
+
+        mAdapter.toggleGroup(5);
+        assertEquals(7, mAdapter.getCount());
+        assertPositionMetadata(5, ITEM_TYPE_GROUP_HEADER, false, 4);
+        assertPositionMetadata(6, ITEM_TYPE_GROUP_HEADER, false, 7);
+    }
+
+    public void testGroupIndexMatchesLinearScan() {
+        // A repeating pattern of stand-alone items and groups of 2, 3 and 4
+        String[] numbers = new String[1000];
+        int value = 0;
+        for (int i = 0; i < numbers.length; value++) {
+            for (int j = 0; j <= value % 4 && i < numbers.length; j++) {
+                numbers[i++] = String.valueOf(value);
+            }
+        }
+
+        buildCursor(numbers);
+        mAdapter.changeCursor(mCursor);
+
+        HashSet<Integer> expandedGroups = new HashSet<Integer>();
+        assertMatchesLinearScan(numbers, expandedGroups);
+
+        // Expand and collapse groups in random order, the index is never rebuilt
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            int groupStart;
+            do {
+                groupStart = random.nextInt(numbers.length - 1);
+            } while (!numbers[groupStart].equals(numbers[groupStart + 1])
+                    || (groupStart > 0 && numbers[groupStart].equals(numbers[groupStart - 1])));
+
+            mAdapter.toggleGroup(getGroupHeaderPosition(numbers, expandedGroups, groupStart));
+            if (!expandedGroups.remove(groupStart)) {
+                expandedGroups.add(groupStart);
+            }
+
+            if (i % 20 == 0) {
+                assertMatchesLinearScan(numbers, expandedGroups);
+            }
+        }
+        assertMatchesLinearScan(numbers, expandedGroups);
+    }
+
+    /**
+     * Walks the numbers the way the list presents them and checks every list position.
+     */
+    private void assertMatchesLinearScan(String[] numbers, HashSet<Integer> expandedGroups) {
+        int position = 0;
+        for (int i = 0; i < numbers.length; ) {
+            int size = getGroupSize(numbers, i);
+            if (size == 1) {
+                assertPositionMetadata(position++, ITEM_TYPE_STANDALONE, false, i);
+            } else {
+                boolean expanded = expandedGroups.contains(i);
+                assertPositionMetadata(position++, ITEM_TYPE_GROUP_HEADER, expanded, i);
+                if (expanded) {
+                    for (int j = 0; j < size; j++) {
+                        assertPositionMetadata(position++, ITEM_TYPE_IN_GROUP, false, i + j);
+                    }
+                }
+            }
+            i += size;
+        }
+        assertEquals(position, mAdapter.getCount());
+    }
+
+    private int getGroupHeaderPosition(String[] numbers, HashSet<Integer> expandedGroups,
+            int groupStart) {
+        int position = 0;
+        for (int i = 0; i < groupStart; ) {
+            int size = getGroupSize(numbers, i);
+            position += (size > 1 && expandedGroups.contains(i)) ? size + 1 : 1;
+            i += size;
+        }
+        return position;
+    }
+
+    private int getGroupSize(String[] numbers, int start) {
+        int size = 1;
+        while (start + size < numbers.length && numbers[start + size].equals(numbers[start])) {
+            size++;
+        }
+        return size;
+    }
+
     private void assertPositionMetadata(int position, int itemType, boolean isExpanded,
             int cursorPosition) {
         GroupingListAdapter.PositionMetadata metadata = new GroupingListAdapter.PositionMetadata();
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts;
+
+import com.android.contacts.util.PerformanceMetrics;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.test.InstrumentationTestCase;
+import android.test.TouchUtils;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Scrolls the contact and call log lists of the device up and down and reports the
+ * frame times, row binding times and photo placeholder times sampled meanwhile, one
+ * status result per list:
+ *
+ *   adb shell am instrument -r -w -e class com.android.contacts.ListScrollPerformanceTest \
+ *     com.android.contacts.tests/android.test.InstrumentationTestRunner
+ */
+@LargeTest
+public class ListScrollPerformanceTest extends InstrumentationTestCase {
+    private static final int DRAG_COUNT = 10;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        PerformanceMetrics.reset();
+        PerformanceMetrics.setEnabled(true);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        PerformanceMetrics.setEnabled(false);
+        super.tearDown();
+    }
+
+    public void testScrollContactList() {
+        scroll(ContactsListActivity.class);
+    }
+
+    public void testScrollCallLog() {
+        scroll(RecentCallsListActivity.class);
+    }
+
+    private <T extends Activity> void scroll(Class<T> activityClass) {
+        final T activity = launchActivity("com.android.contacts", activityClass, null);
+        try {
+            getInstrumentation().waitForIdleSync();
+            for (int i = 0; i < DRAG_COUNT; i++) {
+                TouchUtils.dragQuarterScreenUp(this, activity);
+            }
+            for (int i = 0; i < DRAG_COUNT; i++) {
+                TouchUtils.dragQuarterScreenDown(this, activity);
+            }
+            getInstrumentation().waitForIdleSync();
+        } finally {
+            activity.finish();
+        }
+
+        final StringWriter text = new StringWriter();
+        PerformanceMetrics.dump(new PrintWriter(text));
+        Log.i(PerformanceMetrics.TAG, text.toString());
+
+        final Bundle results = new Bundle();
+        results.putString(activityClass.getSimpleName(), text.toString());
+        getInstrumentation().sendStatus(0, results);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts;
+
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * Base class for micro benchmarks. A benchmark is warmed up first, then run often
+ * enough to take at least {@link #MIN_DURATION_NANOS}, and finally run again for
+ * the same number of iterations with allocation counting turned on, since counting
+ * slows allocations down. Time, allocation count and allocated bytes per iteration
+ * are logged under {@link #TAG}, one line per benchmark and data size.
+ */
+public abstract class MicroBenchmarkTestCase extends AndroidTestCase {
+    public static final String TAG = "ContactsBenchmark";
+
+    /**
+     * Data sizes every benchmark is run with.
+     */
+    protected static final int[] SIZES = { 10, 100, 1000 };
+
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final long MIN_DURATION_NANOS = 200L * 1000 * 1000;
+    private static final int MAX_ITERATIONS = 1 << 20;
+
+    /**
+     * Measurements of one benchmark with one data size.
+     */
+    public static class Result {
+        public String name;
+        public int size;
+        public int iterations;
+        public long nanosPerIteration;
+        public float allocationsPerIteration;
+        public float bytesPerIteration;
+
+        @Override
+        public String toString() {
+            return name + "[" + size + "]: " + nanosPerIteration + " ns/op, "
+                    + allocationsPerIteration + " allocs/op, " + bytesPerIteration
+                    + " bytes/op (" + iterations + " iterations)";
+        }
+    }
+
+    /**
+     * Runs the given body repeatedly and reports its cost per run. Anything the
+     * body needs should be set up beforehand, so that only the code under test is
+     * measured.
+     */
+    protected Result measure(String name, int size, Runnable body) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            body.run();
+        }
+
+        int iterations = 1;
+        long elapsed;
+        while (true) {
+            final long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                body.run();
+            }
+            elapsed = System.nanoTime() - start;
+            if (elapsed >= MIN_DURATION_NANOS || iterations >= MAX_ITERATIONS) {
+                break;
+            }
+            iterations <<= 1;
+        }
+
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        try {
+            for (int i = 0; i < iterations; i++) {
+                body.run();
+            }
+        } finally {
+            Debug.stopAllocCounting();
+        }
+
+        final Result result = new Result();
+        result.name = name;
+        result.size = size;
+        result.iterations = iterations;
+        result.nanosPerIteration = elapsed / iterations;
+        result.allocationsPerIteration = (float) Debug.getThreadAllocCount() / iterations;
+        result.bytesPerIteration = (float) Debug.getThreadAllocSize() / iterations;
+        Log.i(TAG, result.toString());
+        return result;
+    }
+}
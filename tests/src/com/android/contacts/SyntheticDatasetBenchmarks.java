@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts;
+
+import com.android.contacts.list.DefaultContactListAdapter;
+import com.android.contacts.tests.mocks.SyntheticContactsProvider;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.CursorLoader;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Looper;
+import android.provider.CallLog.Calls;
+import android.provider.ContactsContract.PhoneLookup;
+import android.test.mock.MockContentResolver;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import java.util.HashSet;
+
+/**
+ * Benchmarks of the list and call log loading paths against a
+ * {@link SyntheticContactsProvider} with tens of thousands of contacts, so that they
+ * can be measured at that size without any data on the device. Results are logged
+ * like those of {@link ContactsMicroBenchmarks}:
+ *   adb shell am instrument -w -e class com.android.contacts.SyntheticDatasetBenchmarks \
+ *     com.android.contacts.tests/android.test.InstrumentationTestRunner
+ *   adb logcat -s ContactsBenchmark
+ */
+@LargeTest
+public class SyntheticDatasetBenchmarks extends MicroBenchmarkTestCase {
+
+    /**
+     * Number of contacts every benchmark is run with.
+     */
+    private static final int[] CONTACT_COUNTS = { 10000, 50000 };
+
+    private static final int CALL_COUNT = 500;
+
+    private static final String[] CALL_LOG_PROJECTION = new String[] {
+        Calls._ID,
+        Calls.NUMBER,
+    };
+
+    /**
+     * Sends all content resolver operations to the given synthetic provider.
+     */
+    private static class SyntheticContext extends ContextWrapper {
+        private final MockContentResolver mContentResolver = new MockContentResolver();
+
+        public SyntheticContext(Context base, SyntheticContactsProvider provider) {
+            super(base);
+            provider.register(mContentResolver);
+        }
+
+        @Override
+        public ContentResolver getContentResolver() {
+            return mContentResolver;
+        }
+
+        @Override
+        public Context getApplicationContext() {
+            return this;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // CursorLoader registers its content observer with a handler of this thread
+        if (Looper.myLooper() == null) {
+            Looper.prepare();
+        }
+    }
+
+    private Context newSyntheticContext(int contactCount) {
+        final SyntheticContactsProvider provider = new SyntheticContactsProvider(
+                new SyntheticContactsProvider.Dataset()
+                        .withContacts(contactCount)
+                        .withRawContactsPerContact(2)
+                        .withPhotos(96)
+                        .withCalls(CALL_COUNT));
+        return new SyntheticContext(getContext(), provider);
+    }
+
+    /**
+     * Loads the contact list the way the list fragment does, with the query the
+     * adapter configures, and reads the columns of every row the adapter binds.
+     */
+    private void benchmarkContactList(String name, final String queryString) {
+        for (final int contactCount : CONTACT_COUNTS) {
+            final Context context = newSyntheticContext(contactCount);
+            final DefaultContactListAdapter adapter = new DefaultContactListAdapter(context);
+            adapter.setVisibleContactsOnly(true);
+            adapter.setSectionHeaderDisplayEnabled(queryString == null);
+            if (queryString != null) {
+                adapter.setSearchMode(true);
+                adapter.setQueryString(queryString);
+            }
+            final CursorLoader loader = new CursorLoader(context, null, null, null, null, null);
+            adapter.configureLoader(loader);
+
+            measure(name, contactCount, new Runnable() {
+                public void run() {
+                    final Cursor cursor = loader.loadInBackground();
+                    try {
+                        final int columnCount = cursor.getColumnCount();
+                        while (cursor.moveToNext()) {
+                            for (int i = 0; i < columnCount; i++) {
+                                cursor.getString(i);
+                            }
+                        }
+                    } finally {
+                        cursor.close();
+                    }
+                }
+            });
+        }
+    }
+
+    public void testContactListLoad() {
+        benchmarkContactList("ContactList.load", null);
+    }
+
+    public void testContactListFilter() {
+        benchmarkContactList("ContactList.filter", "ma");
+    }
+
+    /**
+     * Reads the call log and looks up the contact of every distinct number, which is
+     * what the call log does while its rows come into view.
+     */
+    public void testCallLogContactLookup() {
+        for (final int contactCount : CONTACT_COUNTS) {
+            final ContentResolver resolver =
+                    newSyntheticContext(contactCount).getContentResolver();
+
+            measure("CallLog.contactLookup", contactCount, new Runnable() {
+                public void run() {
+                    final HashSet<String> numbers = new HashSet<String>();
+                    final Cursor calls = resolver.query(Calls.CONTENT_URI, CALL_LOG_PROJECTION,
+                            null, null, Calls.DEFAULT_SORT_ORDER);
+                    try {
+                        while (calls.moveToNext()) {
+                            final String number = calls.getString(1);
+                            if (!numbers.add(number)) {
+                                continue;
+                            }
+                            final Cursor phones = resolver.query(
+                                    Uri.withAppendedPath(PhoneLookup.CONTENT_FILTER_URI,
+                                            Uri.encode(number)),
+                                    RecentCallsListActivity.PHONES_PROJECTION, null, null, null);
+                            try {
+                                if (phones.moveToFirst()) {
+                                    phones.getString(1);
+                                }
+                            } finally {
+                                phones.close();
+                            }
+                        }
+                    } finally {
+                        calls.close();
+                    }
+                }
+            });
+        }
+    }
+}
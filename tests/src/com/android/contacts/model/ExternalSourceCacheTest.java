@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.model;
+
+import com.google.android.collect.Lists;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link ExternalSourceCache}.
+ */
+@SmallTest
+public class ExternalSourceCacheTest extends AndroidTestCase {
+    private static final String PACKAGE = "com.example.sync";
+    private static final String CONTACTS_SERVICE = "com.example.sync.ContactsSyncAdapter";
+    private static final String CALENDAR_SERVICE = "com.example.sync.CalendarSyncAdapter";
+    private static final String MIMETYPE = "vnd.android.cursor.item/vnd.example.profile";
+
+    private File mFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mFile = new File(getContext().getCacheDir(), "external_sources_test.cache");
+        mFile.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mFile.delete();
+        super.tearDown();
+    }
+
+    private static ArrayList<ExternalSource.ParsedKind> buildKinds() {
+        final ExternalSource.ParsedKind kind = new ExternalSource.ParsedKind();
+        kind.mimeType = MIMETYPE;
+        kind.iconRes = 1;
+        kind.summaryColumn = "data2";
+        kind.detailColumn = "data3";
+        kind.detailSocialSummary = true;
+        return Lists.newArrayList(kind);
+    }
+
+    private static void assertKinds(List<ExternalSource.ParsedKind> kinds) {
+        assertNotNull(kinds);
+        assertEquals(1, kinds.size());
+        final ExternalSource.ParsedKind kind = kinds.get(0);
+        assertEquals(MIMETYPE, kind.mimeType);
+        assertEquals(1, kind.iconRes);
+        assertEquals("data2", kind.summaryColumn);
+        assertEquals("data3", kind.detailColumn);
+        assertTrue(kind.detailSocialSummary);
+    }
+
+    public void testServicesOfOnePackage() throws Exception {
+        final ExternalSourceCache cache = new ExternalSourceCache(mFile);
+        assertNull(cache.get(PACKAGE, CONTACTS_SERVICE, 1));
+
+        // A service without contacts meta-data must not hide the kinds of another one
+        cache.put(PACKAGE, CALENDAR_SERVICE, 1, new ArrayList<ExternalSource.ParsedKind>());
+        assertNull(cache.get(PACKAGE, CONTACTS_SERVICE, 1));
+        cache.put(PACKAGE, CONTACTS_SERVICE, 1, buildKinds());
+
+        assertTrue(cache.get(PACKAGE, CALENDAR_SERVICE, 1).isEmpty());
+        assertKinds(cache.get(PACKAGE, CONTACTS_SERVICE, 1));
+
+        // Both survive a restart
+        cache.waitForPendingWrites();
+        final ExternalSourceCache reloaded = new ExternalSourceCache(mFile);
+        assertTrue(reloaded.get(PACKAGE, CALENDAR_SERVICE, 1).isEmpty());
+        assertKinds(reloaded.get(PACKAGE, CONTACTS_SERVICE, 1));
+    }
+
+    public void testNewVersionDropsOtherServices() throws Exception {
+        final ExternalSourceCache cache = new ExternalSourceCache(mFile);
+        cache.put(PACKAGE, CONTACTS_SERVICE, 1, buildKinds());
+        cache.put(PACKAGE, CALENDAR_SERVICE, 2, new ArrayList<ExternalSource.ParsedKind>());
+
+        assertNull(cache.get(PACKAGE, CONTACTS_SERVICE, 1));
+        assertNull(cache.get(PACKAGE, CONTACTS_SERVICE, 2));
+        assertTrue(cache.get(PACKAGE, CALENDAR_SERVICE, 2).isEmpty());
+    }
+
+    public void testInvalidate() throws Exception {
+        final ExternalSourceCache cache = new ExternalSourceCache(mFile);
+        cache.put(PACKAGE, CONTACTS_SERVICE, 1, buildKinds());
+        cache.put(PACKAGE, CALENDAR_SERVICE, 1, buildKinds());
+        cache.invalidate(PACKAGE);
+
+        assertNull(cache.get(PACKAGE, CONTACTS_SERVICE, 1));
+        assertNull(cache.get(PACKAGE, CALENDAR_SERVICE, 1));
+
+        cache.waitForPendingWrites();
+        assertNull(new ExternalSourceCache(mFile).get(PACKAGE, CONTACTS_SERVICE, 1));
+    }
+}
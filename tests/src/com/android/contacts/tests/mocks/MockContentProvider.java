@@ -25,6 +25,7 @@ import android.text.TextUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedList;
 
 import junit.framework.Assert;
@@ -43,6 +44,7 @@ public class MockContentProvider extends ContentProvider {
         private String[] mSelectionArgs;
         private String mSortOrder;
         private ArrayList<Object[]> mRows = new ArrayList<Object[]>();
+        private boolean mAnyOrder;
 
         public Query(Uri uri) {
             mUri = uri;
@@ -74,6 +76,15 @@ public class MockContentProvider extends ContentProvider {
             return this;
         }
 
+        /**
+         * Lets this query be issued before the expected queries ahead of it that are
+         * also in any order, e.g. because they run in parallel.
+         */
+        public Query withAnyOrder() {
+            mAnyOrder = true;
+            return this;
+        }
+
         public Query returnRow(Object... row) {
             mRows.add(row);
             return this;
@@ -141,27 +152,37 @@ public class MockContentProvider extends ContentProvider {
         return true;
     }
 
-    public Query expectQuery(Uri contentUri) {
+    public synchronized Query expectQuery(Uri contentUri) {
         Query query = new Query(contentUri);
         mExpectedQueries.offer(query);
         return query;
     }
 
     @Override
-    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
-            String sortOrder) {
+    public synchronized Cursor query(Uri uri, String[] projection, String selection,
+            String[] selectionArgs, String sortOrder) {
         if (mExpectedQueries.isEmpty()) {
             Assert.fail("Unexpected query: "
                     + queryToString(uri, projection, selection, selectionArgs, sortOrder));
         }
 
-        Query query = mExpectedQueries.remove();
-        if (!query.equals(uri, projection, selection, selectionArgs, sortOrder)) {
-            Assert.fail("Incorrect query.\n    Expected: " + query + "\n      Actual: " +
-                    queryToString(uri, projection, selection, selectionArgs, sortOrder));
+        // Look past the queries that may come in any order
+        Iterator<Query> iterator = mExpectedQueries.iterator();
+        while (iterator.hasNext()) {
+            Query query = iterator.next();
+            if (query.equals(uri, projection, selection, selectionArgs, sortOrder)) {
+                iterator.remove();
+                return query.getResult();
+            }
+            if (!query.mAnyOrder) {
+                break;
+            }
         }
 
-        return query.getResult();
+        Assert.fail("Incorrect query.\n    Expected: " + mExpectedQueries.getFirst()
+                + "\n      Actual: "
+                + queryToString(uri, projection, selection, selectionArgs, sortOrder));
+        return null;
     }
 
     @Override
@@ -207,7 +228,7 @@ public class MockContentProvider extends ContentProvider {
         return sb.toString();
     }
 
-    public void verify() {
+    public synchronized void verify() {
         Assert.assertTrue("Not all expected queries have been called: " +
                 mExpectedQueries, mExpectedQueries.isEmpty());
     }
@@ -0,0 +1,1245 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.tests.mocks;
+
+import android.content.ContentProvider;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.UriMatcher;
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteException;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.provider.BaseColumns;
+import android.provider.CallLog;
+import android.provider.CallLog.Calls;
+import android.provider.ContactsContract;
+import android.provider.ContactsContract.Contacts;
+import android.provider.ContactsContract.Data;
+import android.provider.ContactsContract.DisplayNameSources;
+import android.provider.ContactsContract.PhoneLookup;
+import android.provider.ContactsContract.ProviderStatus;
+import android.provider.ContactsContract.RawContacts;
+import android.provider.ContactsContract.RawContactsEntity;
+import android.provider.ContactsContract.StatusUpdates;
+import android.provider.ContactsContract.CommonDataKinds.Email;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.provider.ContactsContract.CommonDataKinds.Photo;
+import android.provider.ContactsContract.CommonDataKinds.StructuredName;
+import android.test.mock.MockContentResolver;
+import android.text.TextUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A contacts and call log provider that generates its data instead of storing it, for
+ * benchmarking the list, call log, detail and import paths with tens of thousands of
+ * contacts. The generated data only depends on the {@link Dataset}, so the same dataset
+ * always produces the same rows. Cursors compute each row when it is read, so even
+ * large results are returned quickly and take little memory.
+ * <p>
+ * Every contact has the same number of raw contacts, each with a name, an email
+ * address and, for most contacts, a phone number. The first raw contact of every
+ * third contact also has a photo if photos are enabled. Contacts are numbered in
+ * display name order, which is the order all contact queries return.
+ * <p>
+ * Besides the contacts, raw contacts, data and the call log, the provider answers the
+ * other queries of the list and the call log: the provider status, filtered and
+ * strequent contacts, and phone lookups of the call log's numbers.
+ * <p>
+ * Contacts can be restricted with the conditions the lists use, joined by AND:
+ * {@code in_visible_group=1}, {@code has_phone_number=1}, {@code starred!=0} and
+ * {@code times_contacted>0}. Raw contacts, raw contact entities and data can be
+ * restricted to one contact with {@code contact_id=?}. Other selections are ignored.
+ * Writes are counted but don't change the data, so that import paths can be
+ * benchmarked repeatedly.
+ */
+public class SyntheticContactsProvider extends ContentProvider {
+
+    public static final String ACCOUNT_NAME = "synthetic@example.com";
+    public static final String ACCOUNT_TYPE = "com.android.contacts.tests.synthetic";
+
+    /**
+     * The generated dataset, with fluent setters in the style of
+     * {@link MockContentProvider.Query}.
+     */
+    public static class Dataset {
+        private int mContactCount = 1000;
+        private int mRawContactsPerContact = 1;
+        private int mPhotoSize;
+        private int mCallCount;
+        private float mPresenceChurn;
+        private long mSeed;
+        private long mLatencyMillis;
+
+        public Dataset withContacts(int count) {
+            mContactCount = count;
+            return this;
+        }
+
+        public Dataset withRawContactsPerContact(int count) {
+            mRawContactsPerContact = count;
+            return this;
+        }
+
+        /**
+         * Gives every third contact a square photo with the given edge length in pixels.
+         */
+        public Dataset withPhotos(int size) {
+            mPhotoSize = size;
+            return this;
+        }
+
+        public Dataset withCalls(int count) {
+            mCallCount = count;
+            return this;
+        }
+
+        /**
+         * Sets the fraction of contacts whose presence changes with every call to
+         * {@link SyntheticContactsProvider#churnPresence()}.
+         */
+        public Dataset withPresenceChurn(float fraction) {
+            mPresenceChurn = fraction;
+            return this;
+        }
+
+        public Dataset withSeed(long seed) {
+            mSeed = seed;
+            return this;
+        }
+
+        /**
+         * Delays every query by the given time, to simulate a slow database.
+         */
+        public Dataset withLatency(long millis) {
+            mLatencyMillis = millis;
+            return this;
+        }
+    }
+
+    private static final int CONTACTS = 1;
+    private static final int CONTACTS_ID = 2;
+    private static final int CONTACTS_LOOKUP = 3;
+    private static final int CONTACTS_LOOKUP_ID = 4;
+    private static final int CONTACTS_ID_DATA = 5;
+    private static final int RAW_CONTACTS = 6;
+    private static final int RAW_CONTACTS_ID = 7;
+    private static final int RAW_CONTACT_ENTITIES = 8;
+    private static final int DATA = 9;
+    private static final int DATA_ID = 10;
+    private static final int PHONES = 11;
+    private static final int CALLS = 12;
+    private static final int CONTACTS_FILTER = 13;
+    private static final int CONTACTS_STREQUENT = 14;
+    private static final int CONTACTS_STREQUENT_FILTER = 15;
+    private static final int PHONE_LOOKUP = 16;
+    private static final int PROVIDER_STATUS = 17;
+
+    private static final UriMatcher sUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
+    static {
+        final String authority = ContactsContract.AUTHORITY;
+        sUriMatcher.addURI(authority, "contacts", CONTACTS);
+        sUriMatcher.addURI(authority, "contacts/#", CONTACTS_ID);
+        sUriMatcher.addURI(authority, "contacts/#/data", CONTACTS_ID_DATA);
+        sUriMatcher.addURI(authority, "contacts/lookup/*", CONTACTS_LOOKUP);
+        sUriMatcher.addURI(authority, "contacts/lookup/*/#", CONTACTS_LOOKUP_ID);
+        sUriMatcher.addURI(authority, "contacts/filter", CONTACTS_FILTER);
+        sUriMatcher.addURI(authority, "contacts/filter/*", CONTACTS_FILTER);
+        sUriMatcher.addURI(authority, "contacts/strequent", CONTACTS_STREQUENT);
+        sUriMatcher.addURI(authority, "contacts/strequent/filter/*", CONTACTS_STREQUENT_FILTER);
+        sUriMatcher.addURI(authority, "phone_lookup/*", PHONE_LOOKUP);
+        sUriMatcher.addURI(authority, "provider_status", PROVIDER_STATUS);
+        sUriMatcher.addURI(authority, "raw_contacts", RAW_CONTACTS);
+        sUriMatcher.addURI(authority, "raw_contacts/#", RAW_CONTACTS_ID);
+        sUriMatcher.addURI(authority, "raw_contact_entities", RAW_CONTACT_ENTITIES);
+        sUriMatcher.addURI(authority, "data", DATA);
+        sUriMatcher.addURI(authority, "data/#", DATA_ID);
+        sUriMatcher.addURI(authority, "data/phones", PHONES);
+        sUriMatcher.addURI(CallLog.AUTHORITY, "calls", CALLS);
+    }
+
+    /**
+     * Columns the generator knows, with the values they are mapped to. Columns that
+     * mean different things in different tables, like _id, are told apart by the
+     * table's cursor.
+     */
+    private static final int COLUMN_UNKNOWN = 0;
+    private static final int COLUMN_ID = 1;
+    private static final int COLUMN_CONTACT_ID = 2;
+    private static final int COLUMN_RAW_CONTACT_ID = 3;
+    private static final int COLUMN_DATA_ID = 4;
+    private static final int COLUMN_DISPLAY_NAME = 5;
+    private static final int COLUMN_DISPLAY_NAME_ALTERNATIVE = 6;
+    private static final int COLUMN_DISPLAY_NAME_SOURCE = 7;
+    private static final int COLUMN_NAME_RAW_CONTACT_ID = 8;
+    private static final int COLUMN_LOOKUP_KEY = 9;
+    private static final int COLUMN_PHOTO_ID = 10;
+    private static final int COLUMN_STARRED = 11;
+    private static final int COLUMN_TIMES_CONTACTED = 12;
+    private static final int COLUMN_LAST_TIME_CONTACTED = 13;
+    private static final int COLUMN_HAS_PHONE_NUMBER = 14;
+    private static final int COLUMN_IN_VISIBLE_GROUP = 15;
+    private static final int COLUMN_CONTACT_PRESENCE = 16;
+    private static final int COLUMN_CONTACT_STATUS = 17;
+    private static final int COLUMN_CONTACT_STATUS_TIMESTAMP = 18;
+    private static final int COLUMN_ACCOUNT_NAME = 19;
+    private static final int COLUMN_ACCOUNT_TYPE = 20;
+    private static final int COLUMN_SOURCE_ID = 21;
+    private static final int COLUMN_VERSION = 22;
+    private static final int COLUMN_ZERO = 23;
+    private static final int COLUMN_MIMETYPE = 24;
+    private static final int COLUMN_DATA1 = 25;
+    private static final int COLUMN_DATA2 = 26;
+    private static final int COLUMN_DATA3 = 27;
+    private static final int COLUMN_PHOTO = 28;
+    private static final int COLUMN_PRESENCE = 29;
+    private static final int COLUMN_STATUS = 30;
+    private static final int COLUMN_STATUS_TIMESTAMP = 31;
+    private static final int COLUMN_NUMBER = 32;
+    private static final int COLUMN_DATE = 33;
+    private static final int COLUMN_DURATION = 34;
+    private static final int COLUMN_CALL_TYPE = 35;
+    private static final int COLUMN_NEW = 36;
+    private static final int COLUMN_CACHED_NAME = 37;
+    private static final int COLUMN_CACHED_NUMBER_TYPE = 38;
+
+    private static final HashMap<String, Integer> sColumns = new HashMap<String, Integer>();
+    static {
+        sColumns.put(BaseColumns._ID, COLUMN_ID);
+        sColumns.put(RawContacts.CONTACT_ID, COLUMN_CONTACT_ID);
+        sColumns.put(Data.RAW_CONTACT_ID, COLUMN_RAW_CONTACT_ID);
+        sColumns.put(RawContactsEntity.DATA_ID, COLUMN_DATA_ID);
+        sColumns.put(Contacts.DISPLAY_NAME, COLUMN_DISPLAY_NAME);
+        sColumns.put(Contacts.SORT_KEY_PRIMARY, COLUMN_DISPLAY_NAME);
+        sColumns.put(Contacts.DISPLAY_NAME_ALTERNATIVE, COLUMN_DISPLAY_NAME_ALTERNATIVE);
+        sColumns.put(Contacts.SORT_KEY_ALTERNATIVE, COLUMN_DISPLAY_NAME_ALTERNATIVE);
+        sColumns.put(Contacts.DISPLAY_NAME_SOURCE, COLUMN_DISPLAY_NAME_SOURCE);
+        sColumns.put(Contacts.NAME_RAW_CONTACT_ID, COLUMN_NAME_RAW_CONTACT_ID);
+        sColumns.put(Contacts.LOOKUP_KEY, COLUMN_LOOKUP_KEY);
+        sColumns.put(Contacts.PHOTO_ID, COLUMN_PHOTO_ID);
+        sColumns.put(Contacts.STARRED, COLUMN_STARRED);
+        sColumns.put(Contacts.TIMES_CONTACTED, COLUMN_TIMES_CONTACTED);
+        sColumns.put(Contacts.LAST_TIME_CONTACTED, COLUMN_LAST_TIME_CONTACTED);
+        sColumns.put(Contacts.HAS_PHONE_NUMBER, COLUMN_HAS_PHONE_NUMBER);
+        sColumns.put(Contacts.IN_VISIBLE_GROUP, COLUMN_IN_VISIBLE_GROUP);
+        sColumns.put(Contacts.CONTACT_PRESENCE, COLUMN_CONTACT_PRESENCE);
+        sColumns.put(Contacts.CONTACT_STATUS, COLUMN_CONTACT_STATUS);
+        sColumns.put(Contacts.CONTACT_STATUS_TIMESTAMP, COLUMN_CONTACT_STATUS_TIMESTAMP);
+        sColumns.put(RawContacts.ACCOUNT_NAME, COLUMN_ACCOUNT_NAME);
+        sColumns.put(RawContacts.ACCOUNT_TYPE, COLUMN_ACCOUNT_TYPE);
+        sColumns.put(RawContacts.SOURCE_ID, COLUMN_SOURCE_ID);
+        sColumns.put(RawContacts.VERSION, COLUMN_VERSION);
+        sColumns.put(Data.DATA_VERSION, COLUMN_VERSION);
+        sColumns.put(RawContacts.DIRTY, COLUMN_ZERO);
+        sColumns.put(RawContacts.DELETED, COLUMN_ZERO);
+        sColumns.put(RawContacts.NAME_VERIFIED, COLUMN_ZERO);
+        sColumns.put(RawContacts.AGGREGATION_MODE, COLUMN_ZERO);
+        sColumns.put(Contacts.SEND_TO_VOICEMAIL, COLUMN_ZERO);
+        sColumns.put(Data.IS_PRIMARY, COLUMN_ZERO);
+        sColumns.put(Data.IS_SUPER_PRIMARY, COLUMN_ZERO);
+        sColumns.put(Data.MIMETYPE, COLUMN_MIMETYPE);
+        sColumns.put(Data.DATA1, COLUMN_DATA1);
+        sColumns.put(Data.DATA2, COLUMN_DATA2);
+        sColumns.put(Data.DATA3, COLUMN_DATA3);
+        sColumns.put(Photo.PHOTO, COLUMN_PHOTO);
+        sColumns.put(Data.PRESENCE, COLUMN_PRESENCE);
+        sColumns.put(Data.STATUS, COLUMN_STATUS);
+        sColumns.put(Data.STATUS_TIMESTAMP, COLUMN_STATUS_TIMESTAMP);
+        sColumns.put(Calls.NUMBER, COLUMN_NUMBER);
+        sColumns.put(Calls.DATE, COLUMN_DATE);
+        sColumns.put(Calls.DURATION, COLUMN_DURATION);
+        sColumns.put(Calls.TYPE, COLUMN_CALL_TYPE);
+        sColumns.put(Calls.NEW, COLUMN_NEW);
+        sColumns.put(Calls.CACHED_NAME, COLUMN_CACHED_NAME);
+        sColumns.put(Calls.CACHED_NUMBER_TYPE, COLUMN_CACHED_NUMBER_TYPE);
+    }
+
+    private static final String[] CONTACTS_PROJECTION = new String[] {
+        Contacts._ID, Contacts.DISPLAY_NAME, Contacts.DISPLAY_NAME_ALTERNATIVE,
+        Contacts.SORT_KEY_PRIMARY, Contacts.LOOKUP_KEY, Contacts.PHOTO_ID, Contacts.STARRED,
+        Contacts.TIMES_CONTACTED, Contacts.LAST_TIME_CONTACTED, Contacts.HAS_PHONE_NUMBER,
+        Contacts.CONTACT_PRESENCE, Contacts.CONTACT_STATUS,
+    };
+
+    private static final String[] RAW_CONTACTS_PROJECTION = new String[] {
+        RawContacts._ID, RawContacts.CONTACT_ID, RawContacts.ACCOUNT_NAME,
+        RawContacts.ACCOUNT_TYPE, RawContacts.SOURCE_ID, RawContacts.VERSION,
+        RawContacts.DIRTY, RawContacts.DELETED,
+    };
+
+    private static final String[] DATA_PROJECTION = new String[] {
+        Data._ID, Data.RAW_CONTACT_ID, Data.CONTACT_ID, Data.MIMETYPE, Data.IS_PRIMARY,
+        Data.IS_SUPER_PRIMARY, Data.DATA1, Data.DATA2, Data.DATA3, Data.DATA15,
+        Data.DISPLAY_NAME, Data.LOOKUP_KEY, Data.PHOTO_ID,
+    };
+
+    /**
+     * All columns {@link RawContacts#newEntityIterator} reads.
+     */
+    private static final String[] RAW_CONTACT_ENTITIES_PROJECTION = new String[] {
+        RawContacts._ID, RawContacts.CONTACT_ID, RawContacts.ACCOUNT_NAME,
+        RawContacts.ACCOUNT_TYPE, RawContacts.SOURCE_ID, RawContacts.VERSION,
+        RawContacts.DIRTY, RawContacts.DELETED, RawContacts.STARRED, RawContacts.NAME_VERIFIED,
+        RawContacts.SYNC1, RawContacts.SYNC2, RawContacts.SYNC3, RawContacts.SYNC4,
+        RawContactsEntity.DATA_ID, Data.RES_PACKAGE, Data.MIMETYPE, Data.IS_PRIMARY,
+        Data.IS_SUPER_PRIMARY, Data.DATA_VERSION, Data.DATA1, Data.DATA2, Data.DATA3,
+        Data.DATA4, Data.DATA5, Data.DATA6, Data.DATA7, Data.DATA8, Data.DATA9, Data.DATA10,
+        Data.DATA11, Data.DATA12, Data.DATA13, Data.DATA14, Data.DATA15,
+        Data.SYNC1, Data.SYNC2, Data.SYNC3, Data.SYNC4,
+    };
+
+    private static final String[] PHONE_LOOKUP_PROJECTION = new String[] {
+        PhoneLookup._ID, PhoneLookup.DISPLAY_NAME, PhoneLookup.LOOKUP_KEY, PhoneLookup.TYPE,
+        PhoneLookup.LABEL, PhoneLookup.NUMBER,
+    };
+
+    private static final String[] PROVIDER_STATUS_PROJECTION = new String[] {
+        ProviderStatus.STATUS, ProviderStatus.DATA1,
+    };
+
+    private static final String[] CALLS_PROJECTION = new String[] {
+        Calls._ID, Calls.NUMBER, Calls.DATE, Calls.DURATION, Calls.TYPE, Calls.NEW,
+        Calls.CACHED_NAME, Calls.CACHED_NUMBER_TYPE,
+    };
+
+    private static final String[] FIRST_NAMES = new String[] {
+        "Aaron", "Alice", "Anna", "Ben", "Carla", "Chris", "Dana", "David", "Elena", "Eric",
+        "Fiona", "Frank", "Grace", "Hannah", "Igor", "Jane", "John", "Karen", "Liam", "Maria",
+        "Nina", "Oscar", "Paula", "Quinn", "Rosa", "Sam", "Tara", "Victor", "Wendy", "Yuki",
+    };
+
+    private static final String[] LAST_NAMES = new String[] {
+        "Adams", "Baker", "Chen", "Diaz", "Evans", "Fischer", "Garcia", "Hughes", "Ito",
+        "Jones", "Kim", "Lopez", "Martin", "Nguyen", "Olsen", "Patel", "Quist", "Rossi",
+        "Smith", "Tanaka", "Ueda", "Vargas", "Wagner", "Xu", "Young", "Zhang",
+    };
+
+    private static final int[] PRESENCE_STATES = new int[] {
+        StatusUpdates.OFFLINE, StatusUpdates.INVISIBLE, StatusUpdates.AWAY, StatusUpdates.IDLE,
+        StatusUpdates.DO_NOT_DISTURB, StatusUpdates.AVAILABLE,
+    };
+
+    /**
+     * Data rows of a raw contact, in the order of their ids.
+     */
+    private static final int KIND_NAME = 0;
+    private static final int KIND_PHONE = 1;
+    private static final int KIND_EMAIL = 2;
+    private static final int KIND_PHOTO = 3;
+    private static final int KIND_COUNT = 4;
+
+    private static final int PHOTO_VARIANTS = 8;
+    private static final long CALL_INTERVAL_MILLIS = 37 * 60 * 1000;
+
+    private final int mContactCount;
+    private final int mRawContactsPerContact;
+    private final int mCallCount;
+    private final float mPresenceChurn;
+    private final long mLatencyMillis;
+    private final Random mRandom;
+    private final long mNow;
+
+    /**
+     * Display names by contact id - 1, sorted.
+     */
+    private final String[] mDisplayNames;
+    private final byte[][] mPhotos;
+
+    /**
+     * Presence by contact id - 1, changed by {@link #churnPresence()}.
+     */
+    private final int[] mPresence;
+
+    /**
+     * The contact each call is from, by call id - 1, or 0 for unknown numbers.
+     */
+    private final int[] mCallContacts;
+
+    private int mInsertCount;
+    private int mUpdateCount;
+    private int mDeleteCount;
+    private long mNextInsertId;
+
+    public SyntheticContactsProvider(Dataset dataset) {
+        mContactCount = dataset.mContactCount;
+        mRawContactsPerContact = dataset.mRawContactsPerContact;
+        mCallCount = dataset.mCallCount;
+        mPresenceChurn = dataset.mPresenceChurn;
+        mLatencyMillis = dataset.mLatencyMillis;
+        mRandom = new Random(dataset.mSeed);
+        mNow = System.currentTimeMillis();
+        mNextInsertId = (long) (mContactCount + 1) * mRawContactsPerContact * KIND_COUNT;
+
+        mDisplayNames = new String[mContactCount];
+        for (int i = 0; i < mContactCount; i++) {
+            mDisplayNames[i] = FIRST_NAMES[mRandom.nextInt(FIRST_NAMES.length)] + " "
+                    + LAST_NAMES[mRandom.nextInt(LAST_NAMES.length)];
+        }
+        Arrays.sort(mDisplayNames);
+
+        mPresence = new int[mContactCount];
+        for (int i = 0; i < mContactCount; i++) {
+            mPresence[i] = PRESENCE_STATES[mRandom.nextInt(PRESENCE_STATES.length)];
+        }
+
+        // Calls come in runs from the same number, so that the call log has groups
+        mCallContacts = new int[mCallCount];
+        for (int i = 0; i < mCallCount; i++) {
+            if (i > 0 && mRandom.nextInt(3) == 0) {
+                mCallContacts[i] = mCallContacts[i - 1];
+            } else if (mContactCount > 0 && mRandom.nextInt(4) != 0) {
+                mCallContacts[i] = 1 + mRandom.nextInt(mContactCount);
+            }
+        }
+
+        mPhotos = dataset.mPhotoSize > 0 ? buildPhotos(dataset.mPhotoSize) : null;
+    }
+
+    private static byte[][] buildPhotos(int size) {
+        final byte[][] photos = new byte[PHOTO_VARIANTS][];
+        final Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        for (int i = 0; i < PHOTO_VARIANTS; i++) {
+            final float hue = 360f * i / PHOTO_VARIANTS;
+            bitmap.eraseColor(Color.HSVToColor(new float[] { hue, 0.5f, 0.8f }));
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
+            photos[i] = out.toByteArray();
+        }
+        bitmap.recycle();
+        return photos;
+    }
+
+    /**
+     * Adds this provider to the given resolver as the contacts and the call log
+     * provider.
+     */
+    public void register(MockContentResolver resolver) {
+        resolver.addProvider(ContactsContract.AUTHORITY, this);
+        resolver.addProvider(CallLog.AUTHORITY, this);
+    }
+
+    /**
+     * Changes the presence of the configured fraction of contacts, picked at random,
+     * and notifies observers of the contacts.
+     */
+    public void churnPresence() {
+        final int changes = Math.round(mContactCount * mPresenceChurn);
+        for (int i = 0; i < changes; i++) {
+            mPresence[mRandom.nextInt(mContactCount)] =
+                    PRESENCE_STATES[mRandom.nextInt(PRESENCE_STATES.length)];
+        }
+        if (getContext() != null) {
+            getContext().getContentResolver().notifyChange(Contacts.CONTENT_URI, null);
+        }
+    }
+
+    public int getInsertCount() {
+        return mInsertCount;
+    }
+
+    public int getUpdateCount() {
+        return mUpdateCount;
+    }
+
+    public int getDeleteCount() {
+        return mDeleteCount;
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+            String sortOrder) {
+        if (mLatencyMillis > 0) {
+            SystemClock.sleep(mLatencyMillis);
+        }
+
+        final List<String> segments = uri.getPathSegments();
+        final int match = sUriMatcher.match(uri);
+        switch (match) {
+            case CONTACTS: {
+                final long[] contactIds = selectContacts(selection, null);
+                if (contactIds == null) {
+                    return new ContactsCursor(projection, 1, mContactCount);
+                }
+                if (sortOrder != null && sortOrder.startsWith(Contacts.TIMES_CONTACTED)) {
+                    sortByTimesContacted(contactIds);
+                }
+                return new ContactIdsCursor(projection, contactIds);
+            }
+            case CONTACTS_FILTER: {
+                final String filter = segments.size() > 2 ? segments.get(2) : null;
+                final long[] contactIds = selectContacts(selection, filter);
+                if (contactIds == null) {
+                    return new ContactsCursor(projection, 1, mContactCount);
+                }
+                return new ContactIdsCursor(projection, contactIds);
+            }
+            case CONTACTS_STREQUENT:
+                return new ContactIdsCursor(projection, selectStrequent(null));
+            case CONTACTS_STREQUENT_FILTER:
+                return new ContactIdsCursor(projection, selectStrequent(segments.get(3)));
+            case PHONE_LOOKUP: {
+                final long rawContactId = parsePhoneNumber(segments.get(1));
+                final long[] rawContactIds =
+                        rawContactId != -1 ? new long[] { rawContactId } : new long[0];
+                return new PhoneLookupCursor(projection, rawContactIds);
+            }
+            case PROVIDER_STATUS: {
+                if (projection == null) {
+                    projection = PROVIDER_STATUS_PROJECTION;
+                }
+                final MatrixCursor cursor = new MatrixCursor(projection, 1);
+                final Object[] row = new Object[projection.length];
+                for (int i = 0; i < projection.length; i++) {
+                    if (ProviderStatus.STATUS.equals(projection[i])) {
+                        row[i] = ProviderStatus.STATUS_NORMAL;
+                    }
+                }
+                cursor.addRow(row);
+                return cursor;
+            }
+            case CONTACTS_ID: {
+                final long contactId = ContentUris.parseId(uri);
+                return new ContactsCursor(projection, contactId, isContact(contactId) ? 1 : 0);
+            }
+            case CONTACTS_LOOKUP:
+            case CONTACTS_LOOKUP_ID: {
+                final long contactId = parseLookupKey(segments.get(2));
+                return new ContactsCursor(projection, contactId, isContact(contactId) ? 1 : 0);
+            }
+            case CONTACTS_ID_DATA:
+                return buildDataCursor(projection, Long.parseLong(segments.get(1)), false);
+            case RAW_CONTACTS: {
+                final long contactId = parseContactIdSelection(selection, selectionArgs);
+                if (contactId == -1) {
+                    return new RawContactsCursor(projection, 1,
+                            mContactCount * mRawContactsPerContact);
+                }
+                return new RawContactsCursor(projection,
+                        getFirstRawContactId(contactId),
+                        isContact(contactId) ? mRawContactsPerContact : 0);
+            }
+            case RAW_CONTACTS_ID: {
+                final long rawContactId = ContentUris.parseId(uri);
+                return new RawContactsCursor(projection, rawContactId,
+                        isContact(getContactId(rawContactId)) ? 1 : 0);
+            }
+            case RAW_CONTACT_ENTITIES: {
+                final long contactId = parseContactIdSelection(selection, selectionArgs);
+                if (contactId == -1) {
+                    throw new IllegalArgumentException(
+                            "Raw contact entities need a contact_id=? selection: " + selection);
+                }
+                return buildDataCursor(projection, contactId, true);
+            }
+            case DATA:
+            case PHONES: {
+                final long contactId = parseContactIdSelection(selection, selectionArgs);
+                if (contactId != -1) {
+                    return buildDataCursor(projection, contactId, false);
+                }
+                return buildAllDataCursor(projection, match == PHONES);
+            }
+            case DATA_ID: {
+                final long dataId = ContentUris.parseId(uri);
+                final long[] dataIds = hasData(dataId) ? new long[] { dataId } : new long[0];
+                return new DataCursor(projection, dataIds, false);
+            }
+            case CALLS:
+                return new CallsCursor(projection);
+            default:
+                throw new UnsupportedOperationException("Unsupported query: " + uri);
+        }
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        mInsertCount++;
+        return ContentUris.withAppendedId(uri, mNextInsertId++);
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        mUpdateCount++;
+        return 1;
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        mDeleteCount++;
+        return 1;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        switch (sUriMatcher.match(uri)) {
+            case CONTACTS:
+                return Contacts.CONTENT_TYPE;
+            case CONTACTS_FILTER:
+            case CONTACTS_STREQUENT:
+            case CONTACTS_STREQUENT_FILTER:
+                return Contacts.CONTENT_TYPE;
+            case CONTACTS_ID:
+            case CONTACTS_LOOKUP:
+            case CONTACTS_LOOKUP_ID:
+                return Contacts.CONTENT_ITEM_TYPE;
+            case RAW_CONTACTS:
+                return RawContacts.CONTENT_TYPE;
+            case RAW_CONTACTS_ID:
+                return RawContacts.CONTENT_ITEM_TYPE;
+            case PHONES:
+                return Phone.CONTENT_TYPE;
+            case CALLS:
+                return Calls.CONTENT_TYPE;
+            default:
+                return null;
+        }
+    }
+
+    public static String getLookupKey(long contactId) {
+        return "synthetic" + contactId;
+    }
+
+    private static long parseLookupKey(String lookupKey) {
+        if (lookupKey.startsWith("synthetic")) {
+            try {
+                return Long.parseLong(lookupKey.substring("synthetic".length()));
+            } catch (NumberFormatException e) {
+                // Fall through
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the contact id of a {@code contact_id=?} selection, or -1 for any other
+     * selection.
+     */
+    private static long parseContactIdSelection(String selection, String[] selectionArgs) {
+        if (selection == null || selectionArgs == null || selectionArgs.length != 1) {
+            return -1;
+        }
+        if (!TextUtils.equals(selection.replace(" ", ""), RawContacts.CONTACT_ID + "=?")) {
+            return -1;
+        }
+        return Long.parseLong(selectionArgs[0]);
+    }
+
+    /**
+     * Returns the ids of the contacts matching the given selection and name filter in
+     * display name order, or null if all contacts match.
+     */
+    private long[] selectContacts(String selection, String filter) {
+        boolean phonesOnly = false;
+        boolean starredOnly = false;
+        boolean contactedOnly = false;
+        if (!TextUtils.isEmpty(selection)) {
+            for (String condition : selection.split(" AND ")) {
+                condition = condition.replace(" ", "");
+                if (condition.equals(Contacts.IN_VISIBLE_GROUP + "=1")
+                        || condition.equals(Contacts.IN_VISIBLE_GROUP + "!=0")) {
+                    // All contacts are visible
+                } else if (condition.equals(Contacts.HAS_PHONE_NUMBER + "=1")) {
+                    phonesOnly = true;
+                } else if (condition.equals(Contacts.STARRED + "!=0")
+                        || condition.equals(Contacts.STARRED + "=1")) {
+                    starredOnly = true;
+                } else if (condition.equals(Contacts.TIMES_CONTACTED + ">0")) {
+                    contactedOnly = true;
+                }
+            }
+        }
+        final String prefix = TextUtils.isEmpty(filter)
+                ? null
+                : filter.toLowerCase(Locale.US);
+        if (!phonesOnly && !starredOnly && !contactedOnly && prefix == null) {
+            return null;
+        }
+
+        final long[] contactIds = new long[mContactCount];
+        int count = 0;
+        for (long contactId = 1; contactId <= mContactCount; contactId++) {
+            if (phonesOnly && !hasPhone(contactId)) continue;
+            if (starredOnly && !isStarred(contactId)) continue;
+            if (contactedOnly && getTimesContacted(contactId) == 0) continue;
+            if (prefix != null && !matchesFilter(contactId, prefix)) continue;
+            contactIds[count++] = contactId;
+        }
+        return Arrays.copyOf(contactIds, count);
+    }
+
+    /**
+     * Returns the starred contacts in display name order, followed by the other
+     * contacted ones by descending times contacted, like the strequent Uri.
+     */
+    private long[] selectStrequent(String filter) {
+        final String prefix = TextUtils.isEmpty(filter)
+                ? null
+                : filter.toLowerCase(Locale.US);
+        final long[] starred = new long[mContactCount];
+        final long[] frequent = new long[mContactCount];
+        int starredCount = 0;
+        int frequentCount = 0;
+        for (long contactId = 1; contactId <= mContactCount; contactId++) {
+            if (prefix != null && !matchesFilter(contactId, prefix)) continue;
+            if (isStarred(contactId)) {
+                starred[starredCount++] = contactId;
+            } else if (getTimesContacted(contactId) > 0) {
+                frequent[frequentCount++] = contactId;
+            }
+        }
+        final long[] frequentIds = Arrays.copyOf(frequent, frequentCount);
+        sortByTimesContacted(frequentIds);
+
+        final long[] contactIds = Arrays.copyOf(starred, starredCount + frequentCount);
+        System.arraycopy(frequentIds, 0, contactIds, starredCount, frequentCount);
+        return contactIds;
+    }
+
+    private void sortByTimesContacted(long[] contactIds) {
+        final ArrayList<Long> ids = new ArrayList<Long>(contactIds.length);
+        for (long contactId : contactIds) {
+            ids.add(contactId);
+        }
+        Collections.sort(ids, new Comparator<Long>() {
+            public int compare(Long object1, Long object2) {
+                return getTimesContacted(object2) - getTimesContacted(object1);
+            }
+        });
+        for (int i = 0; i < contactIds.length; i++) {
+            contactIds[i] = ids.get(i);
+        }
+    }
+
+    /**
+     * Matches the way the contacts filter does: any word of the name starting with the
+     * given lower case prefix.
+     */
+    private boolean matchesFilter(long contactId, String prefix) {
+        final String name = getDisplayName(contactId).toLowerCase(Locale.US);
+        if (name.startsWith(prefix)) {
+            return true;
+        }
+        final int space = name.indexOf(' ');
+        return space != -1 && name.startsWith(prefix, space + 1);
+    }
+
+    /**
+     * Returns the raw contact with the given phone number, or -1 if there is none.
+     */
+    private long parsePhoneNumber(String number) {
+        final String digits = number.replaceAll("[^0-9]", "");
+        if (digits.length() == 0 || digits.length() > 18) {
+            return -1;
+        }
+        final long rawContactId = Long.parseLong(digits) - 6505550000L;
+        if (rawContactId < 1) {
+            return -1;
+        }
+        final long contactId = getContactId(rawContactId);
+        return isContact(contactId) && hasPhone(contactId) ? rawContactId : -1;
+    }
+
+    private boolean isStarred(long contactId) {
+        return contactId % 50 == 0;
+    }
+
+    private int getTimesContacted(long contactId) {
+        return (int) (contactId * 7 % 23);
+    }
+
+    private boolean isContact(long contactId) {
+        return contactId >= 1 && contactId <= mContactCount;
+    }
+
+    private long getContactId(long rawContactId) {
+        return (rawContactId - 1) / mRawContactsPerContact + 1;
+    }
+
+    private long getFirstRawContactId(long contactId) {
+        return (contactId - 1) * mRawContactsPerContact + 1;
+    }
+
+    private boolean hasPhone(long contactId) {
+        return contactId % 5 != 0;
+    }
+
+    private boolean hasPhoto(long contactId) {
+        return mPhotos != null && contactId % 3 == 0;
+    }
+
+    private boolean hasData(long dataId) {
+        final long rawContactId = dataId / KIND_COUNT;
+        final long contactId = getContactId(rawContactId);
+        if (rawContactId < 1 || !isContact(contactId)) {
+            return false;
+        }
+        switch ((int) (dataId % KIND_COUNT)) {
+            case KIND_PHONE:
+                return hasPhone(contactId);
+            case KIND_PHOTO:
+                return hasPhoto(contactId)
+                        && rawContactId == getFirstRawContactId(contactId);
+            default:
+                return true;
+        }
+    }
+
+    private DataCursor buildDataCursor(String[] projection, long contactId,
+            boolean entities) {
+        if (!isContact(contactId)) {
+            return new DataCursor(projection, new long[0], entities);
+        }
+        final long firstDataId = getFirstRawContactId(contactId) * KIND_COUNT;
+        final long[] dataIds = new long[mRawContactsPerContact * KIND_COUNT];
+        int count = 0;
+        for (long dataId = firstDataId; dataId < firstDataId + dataIds.length; dataId++) {
+            if (hasData(dataId)) {
+                dataIds[count++] = dataId;
+            }
+        }
+        return new DataCursor(projection, Arrays.copyOf(dataIds, count), entities);
+    }
+
+    private DataCursor buildAllDataCursor(String[] projection, boolean phonesOnly) {
+        final long firstDataId = KIND_COUNT;
+        final long lastDataId = (long) (mContactCount * mRawContactsPerContact + 1) * KIND_COUNT;
+        final long[] dataIds = new long[(int) (lastDataId - firstDataId)];
+        int count = 0;
+        for (long dataId = firstDataId; dataId < lastDataId; dataId++) {
+            if (phonesOnly && dataId % KIND_COUNT != KIND_PHONE) {
+                continue;
+            }
+            if (hasData(dataId)) {
+                dataIds[count++] = dataId;
+            }
+        }
+        return new DataCursor(projection, Arrays.copyOf(dataIds, count), false);
+    }
+
+    private String getDisplayName(long contactId) {
+        return mDisplayNames[(int) contactId - 1];
+    }
+
+    private String getPhoneNumber(long rawContactId) {
+        return String.valueOf(6505550000L + rawContactId);
+    }
+
+    private Object getContactValue(long contactId, int column) {
+        switch (column) {
+            case COLUMN_ID:
+            case COLUMN_CONTACT_ID:
+                return contactId;
+            case COLUMN_DISPLAY_NAME:
+                return getDisplayName(contactId);
+            case COLUMN_DISPLAY_NAME_ALTERNATIVE: {
+                final String name = getDisplayName(contactId);
+                final int space = name.indexOf(' ');
+                return name.substring(space + 1) + ", " + name.substring(0, space);
+            }
+            case COLUMN_DISPLAY_NAME_SOURCE:
+                return DisplayNameSources.STRUCTURED_NAME;
+            case COLUMN_NAME_RAW_CONTACT_ID:
+                return getFirstRawContactId(contactId);
+            case COLUMN_LOOKUP_KEY:
+                return getLookupKey(contactId);
+            case COLUMN_PHOTO_ID:
+                return hasPhoto(contactId)
+                        ? getFirstRawContactId(contactId) * KIND_COUNT + KIND_PHOTO
+                        : null;
+            case COLUMN_STARRED:
+                return isStarred(contactId) ? 1 : 0;
+            case COLUMN_TIMES_CONTACTED:
+                return getTimesContacted(contactId);
+            case COLUMN_LAST_TIME_CONTACTED:
+                return mNow - contactId * 7 % 23 * CALL_INTERVAL_MILLIS;
+            case COLUMN_HAS_PHONE_NUMBER:
+                return hasPhone(contactId) ? 1 : 0;
+            case COLUMN_IN_VISIBLE_GROUP:
+                return 1;
+            case COLUMN_CONTACT_PRESENCE:
+                return mPresence[(int) contactId - 1];
+            case COLUMN_CONTACT_STATUS:
+                return hasStatus(contactId) ? "Status of " + getDisplayName(contactId) : null;
+            case COLUMN_CONTACT_STATUS_TIMESTAMP:
+                return hasStatus(contactId) ? mNow - contactId * CALL_INTERVAL_MILLIS : null;
+            case COLUMN_ZERO:
+                return 0;
+            default:
+                return null;
+        }
+    }
+
+    private boolean hasStatus(long contactId) {
+        return contactId % 4 == 0 && mPresence[(int) contactId - 1] != StatusUpdates.OFFLINE;
+    }
+
+    private Object getRawContactValue(long rawContactId, int column) {
+        switch (column) {
+            case COLUMN_ID:
+                return rawContactId;
+            case COLUMN_ACCOUNT_NAME:
+                return ACCOUNT_NAME;
+            case COLUMN_ACCOUNT_TYPE:
+                return ACCOUNT_TYPE;
+            case COLUMN_SOURCE_ID:
+                return "source" + rawContactId;
+            case COLUMN_VERSION:
+                return 1;
+            default:
+                return getContactValue(getContactId(rawContactId), column);
+        }
+    }
+
+    private Object getDataValue(long dataId, int column, boolean entity) {
+        final long rawContactId = dataId / KIND_COUNT;
+        final int kind = (int) (dataId % KIND_COUNT);
+        switch (column) {
+            case COLUMN_ID:
+                // Raw contact entities are keyed on the raw contact
+                return entity ? rawContactId : dataId;
+            case COLUMN_DATA_ID:
+                return dataId;
+            case COLUMN_RAW_CONTACT_ID:
+                return rawContactId;
+            case COLUMN_MIMETYPE:
+                switch (kind) {
+                    case KIND_NAME: return StructuredName.CONTENT_ITEM_TYPE;
+                    case KIND_PHONE: return Phone.CONTENT_ITEM_TYPE;
+                    case KIND_EMAIL: return Email.CONTENT_ITEM_TYPE;
+                    default: return Photo.CONTENT_ITEM_TYPE;
+                }
+            case COLUMN_DATA1:
+                switch (kind) {
+                    case KIND_NAME: return getDisplayName(getContactId(rawContactId));
+                    case KIND_PHONE: return getPhoneNumber(rawContactId);
+                    case KIND_EMAIL: return "contact" + rawContactId + "@example.com";
+                    default: return null;
+                }
+            case COLUMN_DATA2:
+                switch (kind) {
+                    case KIND_NAME: {
+                        final String name = getDisplayName(getContactId(rawContactId));
+                        return name.substring(0, name.indexOf(' '));
+                    }
+                    case KIND_PHONE:
+                        return rawContactId % 3 == 0 ? Phone.TYPE_HOME : Phone.TYPE_MOBILE;
+                    case KIND_EMAIL:
+                        return Email.TYPE_HOME;
+                    default:
+                        return null;
+                }
+            case COLUMN_DATA3:
+                if (kind == KIND_NAME) {
+                    final String name = getDisplayName(getContactId(rawContactId));
+                    return name.substring(name.indexOf(' ') + 1);
+                }
+                return null;
+            case COLUMN_PHOTO:
+                return kind == KIND_PHOTO
+                        ? mPhotos[(int) (rawContactId % PHOTO_VARIANTS)]
+                        : null;
+            case COLUMN_PRESENCE:
+                return kind == KIND_EMAIL
+                        ? mPresence[(int) getContactId(rawContactId) - 1]
+                        : null;
+            case COLUMN_STATUS:
+                return kind == KIND_EMAIL
+                        ? getContactValue(getContactId(rawContactId), COLUMN_CONTACT_STATUS)
+                        : null;
+            case COLUMN_STATUS_TIMESTAMP:
+                return kind == KIND_EMAIL
+                        ? getContactValue(getContactId(rawContactId),
+                                COLUMN_CONTACT_STATUS_TIMESTAMP)
+                        : null;
+            default:
+                return getRawContactValue(rawContactId, column);
+        }
+    }
+
+    private Object getCallValue(int callId, int column) {
+        final int contactId = mCallContacts[callId - 1];
+        switch (column) {
+            case COLUMN_ID:
+                return callId;
+            case COLUMN_NUMBER:
+                return contactId != 0
+                        ? getPhoneNumber(getFirstRawContactId(contactId))
+                        : String.valueOf(4155550000L + callId * 31 % 10000);
+            case COLUMN_DATE:
+                return mNow - callId * CALL_INTERVAL_MILLIS;
+            case COLUMN_DURATION:
+                return callId * 13 % 600;
+            case COLUMN_CALL_TYPE:
+                return callId % 3 + 1;
+            case COLUMN_NEW:
+                // Only the latest missed calls are new
+                return callId <= 10 && callId % 3 + 1 == Calls.MISSED_TYPE ? 1 : 0;
+            case COLUMN_CACHED_NAME:
+                return contactId != 0 && hasPhone(contactId) ? getDisplayName(contactId) : null;
+            case COLUMN_CACHED_NUMBER_TYPE:
+                return contactId != 0 && hasPhone(contactId) ? Phone.TYPE_MOBILE : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * A cursor over generated rows. Values are computed for each access, the way a
+     * cursor window would be read.
+     */
+    private abstract static class SyntheticCursor extends AbstractCursor {
+        private final String[] mColumnNames;
+        private final int[] mColumns;
+        private final int mCount;
+
+        public SyntheticCursor(String[] projection, String[] defaultProjection, int count) {
+            mColumnNames = projection != null ? projection : defaultProjection;
+            mColumns = new int[mColumnNames.length];
+            for (int i = 0; i < mColumnNames.length; i++) {
+                final Integer column = sColumns.get(mColumnNames[i]);
+                mColumns[i] = column != null ? column : COLUMN_UNKNOWN;
+            }
+            mCount = count;
+        }
+
+        protected abstract Object getValue(int position, int column);
+
+        private Object get(int columnIndex) {
+            checkPosition();
+            return getValue(mPos, mColumns[columnIndex]);
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return mColumnNames;
+        }
+
+        @Override
+        public int getCount() {
+            return mCount;
+        }
+
+        @Override
+        public String getString(int column) {
+            final Object value = get(column);
+            if (value instanceof byte[]) {
+                throw new SQLiteException("Unable to convert BLOB to string");
+            }
+            return value == null ? null : value.toString();
+        }
+
+        @Override
+        public byte[] getBlob(int column) {
+            final Object value = get(column);
+            if (value == null || value instanceof byte[]) {
+                return (byte[]) value;
+            }
+            return value.toString().getBytes();
+        }
+
+        @Override
+        public long getLong(int column) {
+            final Object value = get(column);
+            if (value == null) {
+                return 0;
+            }
+            if (value instanceof Number) {
+                return ((Number) value).longValue();
+            }
+            return Long.parseLong(value.toString());
+        }
+
+        @Override
+        public int getInt(int column) {
+            return (int) getLong(column);
+        }
+
+        @Override
+        public short getShort(int column) {
+            return (short) getLong(column);
+        }
+
+        @Override
+        public double getDouble(int column) {
+            final Object value = get(column);
+            if (value == null) {
+                return 0;
+            }
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            }
+            return Double.parseDouble(value.toString());
+        }
+
+        @Override
+        public float getFloat(int column) {
+            return (float) getDouble(column);
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            return get(column) == null;
+        }
+
+        @Override
+        public int getType(int column) {
+            final Object value = get(column);
+            if (value == null) {
+                return FIELD_TYPE_NULL;
+            } else if (value instanceof byte[]) {
+                return FIELD_TYPE_BLOB;
+            } else if (value instanceof Float || value instanceof Double) {
+                return FIELD_TYPE_FLOAT;
+            } else if (value instanceof Number) {
+                return FIELD_TYPE_INTEGER;
+            }
+            return FIELD_TYPE_STRING;
+        }
+    }
+
+    /**
+     * Contacts with consecutive ids.
+     */
+    private class ContactsCursor extends SyntheticCursor {
+        private final long mFirstContactId;
+
+        public ContactsCursor(String[] projection, long firstContactId, int count) {
+            super(projection, CONTACTS_PROJECTION, count);
+            mFirstContactId = firstContactId;
+        }
+
+        @Override
+        protected Object getValue(int position, int column) {
+            return getContactValue(mFirstContactId + position, column);
+        }
+    }
+
+    /**
+     * Contacts with the given ids, e.g. the result of a filter.
+     */
+    private class ContactIdsCursor extends SyntheticCursor {
+        private final long[] mContactIds;
+
+        public ContactIdsCursor(String[] projection, long[] contactIds) {
+            super(projection, CONTACTS_PROJECTION, contactIds.length);
+            mContactIds = contactIds;
+        }
+
+        @Override
+        protected Object getValue(int position, int column) {
+            return getContactValue(mContactIds[position], column);
+        }
+    }
+
+    /**
+     * Phone lookup rows of the given raw contacts, with the phone number and its type
+     * next to the contact. {@link PhoneLookup#NUMBER} and {@link PhoneLookup#TYPE} share
+     * their names with the call log columns.
+     */
+    private class PhoneLookupCursor extends SyntheticCursor {
+        private final long[] mRawContactIds;
+
+        public PhoneLookupCursor(String[] projection, long[] rawContactIds) {
+            super(projection, PHONE_LOOKUP_PROJECTION, rawContactIds.length);
+            mRawContactIds = rawContactIds;
+        }
+
+        @Override
+        protected Object getValue(int position, int column) {
+            final long rawContactId = mRawContactIds[position];
+            final long dataId = rawContactId * KIND_COUNT + KIND_PHONE;
+            switch (column) {
+                case COLUMN_NUMBER:
+                    return getDataValue(dataId, COLUMN_DATA1, false);
+                case COLUMN_CALL_TYPE:
+                    return getDataValue(dataId, COLUMN_DATA2, false);
+                default:
+                    return getContactValue(getContactId(rawContactId), column);
+            }
+        }
+    }
+
+    /**
+     * Raw contacts with consecutive ids.
+     */
+    private class RawContactsCursor extends SyntheticCursor {
+        private final long mFirstRawContactId;
+
+        public RawContactsCursor(String[] projection, long firstRawContactId, int count) {
+            super(projection, RAW_CONTACTS_PROJECTION, count);
+            mFirstRawContactId = firstRawContactId;
+        }
+
+        @Override
+        protected Object getValue(int position, int column) {
+            return getRawContactValue(mFirstRawContactId + position, column);
+        }
+    }
+
+    /**
+     * Data rows, either on their own or joined with their raw contact as
+     * {@link RawContactsEntity} rows.
+     */
+    private class DataCursor extends SyntheticCursor {
+        private final long[] mDataIds;
+        private final boolean mEntities;
+
+        public DataCursor(String[] projection, long[] dataIds, boolean entities) {
+            super(projection, entities ? RAW_CONTACT_ENTITIES_PROJECTION : DATA_PROJECTION,
+                    dataIds.length);
+            mDataIds = dataIds;
+            mEntities = entities;
+        }
+
+        @Override
+        protected Object getValue(int position, int column) {
+            return getDataValue(mDataIds[position], column, mEntities);
+        }
+    }
+
+    /**
+     * The call log, newest call first.
+     */
+    private class CallsCursor extends SyntheticCursor {
+        public CallsCursor(String[] projection) {
+            super(projection, CALLS_PROJECTION, mCallCount);
+        }
+
+        @Override
+        protected Object getValue(int position, int column) {
+            return getCallValue(position + 1, column);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.tests.mocks;
+
+import android.content.ContentUris;
+import android.content.Entity;
+import android.content.EntityIterator;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.CallLog.Calls;
+import android.provider.ContactsContract.Contacts;
+import android.provider.ContactsContract.PhoneLookup;
+import android.provider.ContactsContract.ProviderStatus;
+import android.provider.ContactsContract.RawContacts;
+import android.provider.ContactsContract.RawContactsEntity;
+import android.provider.ContactsContract.CommonDataKinds.Photo;
+import android.test.AndroidTestCase;
+import android.test.mock.MockContentResolver;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import java.util.ArrayList;
+
+/**
+ * Tests for {@link SyntheticContactsProvider}.
+ */
+@SmallTest
+public class SyntheticContactsProviderTest extends AndroidTestCase {
+
+    private MockContentResolver newResolver(SyntheticContactsProvider provider) {
+        final MockContentResolver resolver = new MockContentResolver();
+        provider.register(resolver);
+        return resolver;
+    }
+
+    private ArrayList<String> queryDisplayNames(SyntheticContactsProvider provider) {
+        final ArrayList<String> names = new ArrayList<String>();
+        final Cursor cursor = newResolver(provider).query(Contacts.CONTENT_URI,
+                new String[] { Contacts._ID, Contacts.DISPLAY_NAME }, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                assertEquals(cursor.getPosition() + 1, cursor.getLong(0));
+                names.add(cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+
+    public void testContactsAreDeterministicAndSorted() {
+        final SyntheticContactsProvider.Dataset dataset =
+                new SyntheticContactsProvider.Dataset().withContacts(500).withSeed(3);
+        final ArrayList<String> names = queryDisplayNames(new SyntheticContactsProvider(dataset));
+        assertEquals(500, names.size());
+        assertEquals(names, queryDisplayNames(new SyntheticContactsProvider(dataset)));
+        for (int i = 1; i < names.size(); i++) {
+            assertTrue(names.get(i - 1).compareTo(names.get(i)) <= 0);
+        }
+    }
+
+    public void testLookupAndRawContactEntities() {
+        final SyntheticContactsProvider provider = new SyntheticContactsProvider(
+                new SyntheticContactsProvider.Dataset()
+                        .withContacts(100).withRawContactsPerContact(3).withPhotos(16));
+        final MockContentResolver resolver = newResolver(provider);
+
+        final long contactId = 42;
+        final String lookupKey = SyntheticContactsProvider.getLookupKey(contactId);
+        final Uri lookupUri = ContentUris.withAppendedId(
+                Uri.withAppendedPath(Contacts.CONTENT_LOOKUP_URI, lookupKey), contactId);
+        Cursor cursor = resolver.query(lookupUri,
+                new String[] { Contacts._ID, Contacts.LOOKUP_KEY, Contacts.PHOTO_ID },
+                null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(contactId, cursor.getLong(0));
+            assertEquals(lookupKey, cursor.getString(1));
+            assertFalse(cursor.isNull(2));
+        } finally {
+            cursor.close();
+        }
+
+        cursor = resolver.query(RawContactsEntity.CONTENT_URI, null,
+                RawContacts.CONTACT_ID + "=?", new String[] { String.valueOf(contactId) }, null);
+        final EntityIterator iterator = RawContacts.newEntityIterator(cursor);
+        int photoCount = 0;
+        int entityCount = 0;
+        try {
+            while (iterator.hasNext()) {
+                final Entity entity = iterator.next();
+                entityCount++;
+                assertEquals(contactId,
+                        (long) entity.getEntityValues().getAsLong(RawContacts.CONTACT_ID));
+                for (Entity.NamedContentValues subValue : entity.getSubValues()) {
+                    if (subValue.values.getAsByteArray(Photo.PHOTO) != null) {
+                        photoCount++;
+                    }
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+        assertEquals(3, entityCount);
+        assertEquals(1, photoCount);
+    }
+
+    public void testCallsAndPresenceChurn() {
+        final SyntheticContactsProvider provider = new SyntheticContactsProvider(
+                new SyntheticContactsProvider.Dataset()
+                        .withContacts(1000).withCalls(250).withPresenceChurn(0.5f));
+        final MockContentResolver resolver = newResolver(provider);
+
+        Cursor cursor = resolver.query(Calls.CONTENT_URI, null, null, null,
+                Calls.DEFAULT_SORT_ORDER);
+        try {
+            assertEquals(250, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+
+        final int[] before = queryPresence(resolver);
+        provider.churnPresence();
+        final int[] after = queryPresence(resolver);
+        int changed = 0;
+        for (int i = 0; i < before.length; i++) {
+            if (before[i] != after[i]) changed++;
+        }
+        assertTrue(changed > 0);
+        assertTrue(changed <= 500);
+    }
+
+    public void testListAndCallLogLookups() {
+        final SyntheticContactsProvider provider = new SyntheticContactsProvider(
+                new SyntheticContactsProvider.Dataset().withContacts(1000).withCalls(100));
+        final MockContentResolver resolver = newResolver(provider);
+
+        Cursor cursor = resolver.query(ProviderStatus.CONTENT_URI,
+                new String[] { ProviderStatus.STATUS, ProviderStatus.DATA1 }, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(ProviderStatus.STATUS_NORMAL, cursor.getInt(0));
+        } finally {
+            cursor.close();
+        }
+
+        cursor = resolver.query(Uri.withAppendedPath(Contacts.CONTENT_FILTER_URI, "ali"),
+                new String[] { Contacts._ID, Contacts.DISPLAY_NAME },
+                Contacts.HAS_PHONE_NUMBER + "=1", null, null);
+        try {
+            assertTrue(cursor.getCount() > 0);
+            assertTrue(cursor.getCount() < 1000);
+            while (cursor.moveToNext()) {
+                assertTrue(cursor.getString(1).startsWith("Alice"));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        cursor = resolver.query(Contacts.CONTENT_STREQUENT_URI,
+                new String[] { Contacts._ID, Contacts.STARRED, Contacts.TIMES_CONTACTED },
+                null, null, null);
+        try {
+            boolean starred = true;
+            int timesContacted = Integer.MAX_VALUE;
+            while (cursor.moveToNext()) {
+                if (cursor.getInt(1) == 0) {
+                    starred = false;
+                    assertTrue(cursor.getInt(2) > 0);
+                    assertTrue(cursor.getInt(2) <= timesContacted);
+                    timesContacted = cursor.getInt(2);
+                } else {
+                    assertTrue("starred after frequent", starred);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        // Every caller with a number of a contact is found by phone lookup
+        cursor = resolver.query(Calls.CONTENT_URI,
+                new String[] { Calls.NUMBER, Calls.CACHED_NAME }, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                final Cursor lookup = resolver.query(Uri.withAppendedPath(
+                        PhoneLookup.CONTENT_FILTER_URI, Uri.encode(cursor.getString(0))),
+                        new String[] { PhoneLookup._ID, PhoneLookup.DISPLAY_NAME,
+                                PhoneLookup.NUMBER },
+                        null, null, null);
+                try {
+                    if (cursor.isNull(1)) {
+                        assertEquals(0, lookup.getCount());
+                    } else {
+                        assertTrue(lookup.moveToFirst());
+                        assertEquals(cursor.getString(1), lookup.getString(1));
+                        assertEquals(cursor.getString(0), lookup.getString(2));
+                    }
+                } finally {
+                    lookup.close();
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private int[] queryPresence(MockContentResolver resolver) {
+        final Cursor cursor = resolver.query(Contacts.CONTENT_URI,
+                new String[] { Contacts.CONTACT_PRESENCE }, null, null, null);
+        try {
+            final int[] presence = new int[cursor.getCount()];
+            while (cursor.moveToNext()) {
+                presence[cursor.getPosition()] = cursor.getInt(0);
+            }
+            return presence;
+        } finally {
+            cursor.close();
+        }
+    }
+}
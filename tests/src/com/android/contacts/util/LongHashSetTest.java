@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.util;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Tests for {@link LongHashSet}.
+ */
+@SmallTest
+public class LongHashSetTest extends AndroidTestCase {
+
+    public void testAddContainsRemove() {
+        LongHashSet set = new LongHashSet();
+        assertTrue(set.isEmpty());
+
+        assertTrue(set.add(5));
+        assertFalse(set.add(5));
+        assertTrue(set.add(-1));
+        assertTrue(set.add(Long.MAX_VALUE));
+        assertEquals(3, set.size());
+
+        assertTrue(set.contains(5));
+        assertTrue(set.contains(-1));
+        assertTrue(set.contains(Long.MAX_VALUE));
+        assertFalse(set.contains(0));
+
+        assertTrue(set.remove(5));
+        assertFalse(set.remove(5));
+        assertFalse(set.contains(5));
+        assertEquals(2, set.size());
+
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(-1));
+    }
+
+    public void testGrowth() {
+        LongHashSet set = new LongHashSet();
+        for (long id = 0; id < 10000; id++) {
+            assertTrue(set.add(id * 31));
+        }
+        assertEquals(10000, set.size());
+        for (long id = 0; id < 10000; id++) {
+            assertTrue(set.contains(id * 31));
+            assertFalse(set.contains(id * 31 + 1));
+        }
+
+        long[] values = set.toArray();
+        Arrays.sort(values);
+        assertEquals(10000, values.length);
+        assertEquals(0, values[0]);
+        assertEquals(9999 * 31, values[9999]);
+    }
+
+    public void testRemoveKeepsProbeRunsIntact() {
+        // A small range in a small table collides a lot
+        LongHashSet set = new LongHashSet();
+        HashSet<Long> expected = new HashSet<Long>();
+        Random random = new Random(7);
+        for (int i = 0; i < 20000; i++) {
+            long value = random.nextInt(64);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(value), set.add(value));
+            } else {
+                assertEquals(expected.remove(value), set.remove(value));
+            }
+            assertEquals(expected.size(), set.size());
+        }
+        for (long value = 0; value < 64; value++) {
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+    }
+
+    public void testEnsureCapacity() {
+        LongHashSet set = new LongHashSet();
+        set.add(1);
+        set.add(2);
+        set.ensureCapacity(1000);
+        assertTrue(set.contains(1));
+        assertTrue(set.contains(2));
+        assertEquals(2, set.size());
+    }
+}